@@ -0,0 +1,25 @@
+package vu.software_project.sdp.DTOs.item;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import vu.software_project.sdp.entities.TaxRate;
+
+import java.util.List;
+
+@Data
+@Builder
+public class CatalogChangesDTO {
+    private long version; // pass as "since" on the next call
+    private boolean resync; // feed cannot bridge the gap; reload the full catalog from GET /api/items
+    private List<ItemResponseDTO> items;
+    private List<TaxRate> taxRates;
+    private List<Tombstone> deleted;
+
+    @Data
+    @AllArgsConstructor
+    public static class Tombstone {
+        private String type; // PRODUCT, SERVICE or TAX_RATE
+        private String id;
+    }
+}
@@ -0,0 +1,24 @@
+package vu.software_project.sdp.DTOs.item;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class CatalogImportResultDTO {
+    private long rowsRead;
+    private long productsCreated;
+    private long servicesCreated;
+    private long variationsCreated;
+    private long errorCount;
+    private List<RowError> errors = new ArrayList<>(); // first errors only, see errorCount for the total
+
+    @Data
+    @AllArgsConstructor
+    public static class RowError {
+        private long line;
+        private String message;
+    }
+}
@@ -13,4 +13,7 @@ public class ItemCreateRequestDTO {
     private BigDecimal price;
     private String type; // "PRODUCT" or "SERVICE"
     private String taxRateId;
+    private Integer durationMinutes; // services only
+    private String sku; // products only
+    private String barcode; // products only
 }
@@ -16,4 +16,7 @@ public class ItemResponseDTO {
     private String type; // "PRODUCT" or "SERVICE"
     private String taxRateId;
     private List<ProductVariationResponseDTO> variations;
+    private Integer durationMinutes; // services only
+    private String sku; // products only
+    private String barcode; // products only
 }
@@ -0,0 +1,20 @@
+package vu.software_project.sdp.DTOs.item;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ItemSearchResultDTO {
+    private String type; // "PRODUCT", "VARIATION" or "SERVICE_ITEM"
+    private Long id;
+    private Long productId; // variations only
+    private String name;
+    private BigDecimal price; // price offset for variations
+}
@@ -12,4 +12,7 @@ public class ItemUpdateRequestDTO {
     private String name;
     private BigDecimal price;
     private String taxRateId;
+    private Integer durationMinutes; // services only
+    private String sku; // products only; left out keeps the current code, blank clears it
+    private String barcode; // products only; left out keeps the current code, blank clears it
 }
@@ -11,4 +11,6 @@ import java.math.BigDecimal;
 public class ProductVariationCreateRequestDTO {
     private String name;
     private BigDecimal priceOffset;
+    private String sku; // on update, left out keeps the current code and blank clears it
+    private String barcode; // on update, left out keeps the current code and blank clears it
 }
@@ -12,5 +12,7 @@ public class ProductVariationResponseDTO {
     private Long id;
     private String name;
     private BigDecimal priceOffset;
+    private String sku;
+    private String barcode;
 }
 
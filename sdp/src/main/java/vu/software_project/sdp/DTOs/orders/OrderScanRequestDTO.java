@@ -0,0 +1,10 @@
+package vu.software_project.sdp.DTOs.orders;
+
+import lombok.Data;
+
+@Data
+public class OrderScanRequestDTO {
+
+    private String code; // barcode or SKU of a product or variation
+    private Long quantity; // defaults to 1
+}
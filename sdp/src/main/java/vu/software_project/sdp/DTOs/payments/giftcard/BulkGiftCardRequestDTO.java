@@ -0,0 +1,13 @@
+package vu.software_project.sdp.DTOs.payments.giftcard;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+@Data
+public class BulkGiftCardRequestDTO {
+    private Integer count;
+    private BigDecimal amount;
+    private OffsetDateTime expiryDate;
+}
@@ -0,0 +1,13 @@
+package vu.software_project.sdp.DTOs.payments.giftcard;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+@AllArgsConstructor
+public class GiftCardRedemptionDTO {
+    private BigDecimal charged;
+    private BigDecimal remainingBalance;
+}
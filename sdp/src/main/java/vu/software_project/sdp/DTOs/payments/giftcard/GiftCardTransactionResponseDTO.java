@@ -0,0 +1,17 @@
+package vu.software_project.sdp.DTOs.payments.giftcard;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+@Data
+@Builder
+public class GiftCardTransactionResponseDTO {
+    private Long id;
+    private String type;
+    private BigDecimal amount;
+    private Long orderId;
+    private OffsetDateTime createdAt;
+}
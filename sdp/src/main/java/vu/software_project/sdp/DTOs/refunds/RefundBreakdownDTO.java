@@ -13,5 +13,6 @@ public class RefundBreakdownDTO {
     private BigDecimal amount;
     private String refundStatus;
     private String stripeRefundId;
+    private String failureReason;
 }
 
@@ -16,6 +16,7 @@ public class RefundResponseDTO {
     private BigDecimal totalAmount;
     private String status;
     private OffsetDateTime createdAt;
+    private OffsetDateTime completedAt;
 
     private List<RefundBreakdownDTO> refundBreakdown;
 }
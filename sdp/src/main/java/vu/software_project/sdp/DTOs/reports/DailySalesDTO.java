@@ -0,0 +1,43 @@
+package vu.software_project.sdp.DTOs.reports;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@Builder
+public class DailySalesDTO {
+    private LocalDate day;
+    private int ordersPaid;
+    private int ordersCancelled;
+    private int ordersRefunded;
+    private BigDecimal grossSales;
+    private BigDecimal discounts;
+    private BigDecimal tax;
+    private BigDecimal tips;
+    private BigDecimal refunds;
+    private BigDecimal netSales; // gross - discounts - refunds
+    private List<TenderTotal> tenders;
+    private List<TaxTotal> taxes;
+
+    @Data
+    @AllArgsConstructor
+    public static class TenderTotal {
+        private String paymentType;
+        private int paymentCount;
+        private BigDecimal amount;
+        private BigDecimal tips;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class TaxTotal {
+        private String taxRateId;
+        private String name;
+        private BigDecimal tax;
+    }
+}
@@ -0,0 +1,46 @@
+package vu.software_project.sdp.DTOs.reports;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+@Data
+@Builder
+public class PlatformOverviewDTO {
+    private LocalDate from;
+    private LocalDate to;
+    private OffsetDateTime generatedAt;
+    private int merchantCount;
+    private int incompleteMerchants; // aggregations that failed or timed out, left out of the totals
+    private long ordersPaid;
+    private long ordersRefunded;
+    private BigDecimal grossSales;
+    private BigDecimal netSales; // gross - discounts - refunds
+    private BigDecimal refunds;
+    private long paymentAttempts;
+    private long paymentFailures;
+    private BigDecimal paymentFailureRate; // failures / attempts
+    private BigDecimal refundRate; // refunded orders / paid orders
+    private List<MerchantSummary> merchants; // largest gross sales first
+
+    @Data
+    @Builder
+    public static class MerchantSummary {
+        private Long merchantId;
+        private String name;
+        private long ordersPaid;
+        private long ordersCancelled;
+        private long ordersRefunded;
+        private BigDecimal grossSales;
+        private BigDecimal netSales;
+        private BigDecimal refunds;
+        private long paymentAttempts;
+        private long paymentFailures;
+        private BigDecimal paymentFailureRate;
+        private BigDecimal refundRate;
+    }
+}
@@ -0,0 +1,13 @@
+package vu.software_project.sdp.DTOs.reports;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class TopItemDTO {
+    private Long itemId;
+    private String name;
+    private long quantity;    // upper bound; exact once the day was reconciled
+    private long minQuantity; // guaranteed lower bound
+}
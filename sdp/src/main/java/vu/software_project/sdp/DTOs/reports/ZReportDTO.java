@@ -0,0 +1,51 @@
+package vu.software_project.sdp.DTOs.reports;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+@Data
+@Builder
+public class ZReportDTO {
+    private Long id;
+    private Long merchantId;
+    private LocalDate businessDay;
+    private OffsetDateTime periodStart;
+    private OffsetDateTime periodEnd;
+    private Long closedBy;
+    private int ordersPaid;
+    private BigDecimal grossSales;
+    private BigDecimal discounts;
+    private BigDecimal netSales; // gross - discounts
+    private BigDecimal tax;
+    private BigDecimal tips;
+    private int cashPayments;
+    private BigDecimal cashReceived;
+    private BigDecimal changeGiven;
+    private BigDecimal cashTips;
+    private BigDecimal cashRefunds;
+    private BigDecimal cashExpected; // cashReceived - changeGiven - cashRefunds
+    private int cardPayments;
+    private BigDecimal cardTotal;
+    private BigDecimal cardTips;
+    private int giftCardPayments;
+    private BigDecimal giftCardRedemptions;
+    private int refundsCount;
+    private BigDecimal refunds;
+    private List<TaxLiability> taxes;
+
+    @Data
+    @AllArgsConstructor
+    public static class TaxLiability {
+        private String taxRateId;
+        private String name;
+        private BigDecimal rate;
+        private BigDecimal taxable;
+        private BigDecimal tax;
+    }
+}
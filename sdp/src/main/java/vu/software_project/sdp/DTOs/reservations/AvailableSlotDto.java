@@ -0,0 +1,14 @@
+package vu.software_project.sdp.DTOs.reservations;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class AvailableSlotDto {
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private Long employeeId;
+}
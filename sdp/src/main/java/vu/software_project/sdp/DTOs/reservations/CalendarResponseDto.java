@@ -0,0 +1,49 @@
+package vu.software_project.sdp.DTOs.reservations;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+// Kept compact for week/month views: times are local to their day and nulls are left out
+@Data
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CalendarResponseDto {
+    private LocalDate from;
+    private LocalDate to;
+    private List<Day> days;
+
+    @Data
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Day {
+        private LocalDate date;
+        private List<EmployeeColumn> employees;
+    }
+
+    @Data
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class EmployeeColumn {
+        private Long employeeId;
+        private String employeeName;
+        private List<Entry> reservations;
+    }
+
+    @Data
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Entry {
+        private Long id;
+        private Long serviceId;
+        private String serviceName;
+        private String customerName;
+        private LocalTime start;
+        private LocalTime end;
+        private String status; // only set when not CONFIRMED
+    }
+}
@@ -14,6 +14,7 @@ public class ReservationResponseDto {
     private String customerName;
     private String customerContact;
     private java.time.LocalDateTime appointmentTime;
+    private java.time.LocalDateTime endTime;
     private java.time.LocalDateTime bookedAt;
     private String status;
 }
\ No newline at end of file
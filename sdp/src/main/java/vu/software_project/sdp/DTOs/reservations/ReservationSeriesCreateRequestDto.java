@@ -0,0 +1,19 @@
+package vu.software_project.sdp.DTOs.reservations;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Data
+public class ReservationSeriesCreateRequestDto {
+    private Long merchantId;
+    private Long serviceId;
+    private Long employeeId;
+    private String customerName;
+    private String customerContact;
+    private LocalDateTime appointmentTime; // first occurrence
+    private String frequency; // "WEEKLY" or "BIWEEKLY"
+    private Integer count; // either count or until
+    private LocalDate until;
+}
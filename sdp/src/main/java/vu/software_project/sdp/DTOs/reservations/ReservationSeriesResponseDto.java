@@ -0,0 +1,16 @@
+package vu.software_project.sdp.DTOs.reservations;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+public class ReservationSeriesResponseDto {
+    private Long seriesId;
+    private String frequency;
+    private List<LocalDateTime> booked;
+    private List<LocalDateTime> skipped; // occurrences that clashed with existing reservations
+}
@@ -0,0 +1,80 @@
+package vu.software_project.sdp.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class ExecutorConfig {
+
+    // Gateway refund calls; bounded so a large multi-tender refund cannot flood Stripe. A full queue
+    // rejects the leg rather than running it on the dispatching thread, which may still be bound to
+    // the committed transaction that requested the refund; the leg is picked up again later
+    @Bean
+    public ThreadPoolTaskExecutor refundExecutor(
+            @Value("${refunds.executor.threads:4}") int threads,
+            @Value("${refunds.executor.queue-capacity:500}") int queueCapacity
+    ) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("refund-");
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    // Background rebuilds of the per-merchant search indexes; a full queue just means the
+    // database fallback answers a little longer
+    @Bean
+    public ThreadPoolTaskExecutor searchIndexExecutor(
+            @Value("${catalog.search.executor.threads:2}") int threads,
+            @Value("${catalog.search.executor.queue-capacity:100}") int queueCapacity
+    ) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("search-index-");
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+
+    // Redemption leases for discount limits; checkouts wait on these instead of opening a second
+    // transaction of their own, so the thread count caps the connections leasing can hold
+    @Bean
+    public ThreadPoolTaskExecutor redemptionLeaseExecutor(
+            @Value("${discounts.redemptions.executor.threads:2}") int threads,
+            @Value("${discounts.redemptions.executor.queue-capacity:1000}") int queueCapacity
+    ) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("redemption-lease-");
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+
+    // Per-merchant aggregations of the platform overview; the thread count is the number of
+    // database connections the dashboard may hold at once. A full queue rejects the merchant, which
+    // the overview then reports as incomplete
+    @Bean
+    public ThreadPoolTaskExecutor overviewExecutor(
+            @Value("${admin.overview.db-connections:4}") int threads,
+            @Value("${admin.overview.queue-capacity:10000}") int queueCapacity
+    ) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("overview-");
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+}
@@ -54,6 +54,7 @@ public class SecurityConfig {
                     // Example URL-based role restrictions (adjust as you add endpoints)
                     .requestMatchers("/api/admin/**").hasRole("SUPER_ADMIN")
                     .requestMatchers("/api/owner/**").hasAnyRole("BUSINESS_OWNER", "SUPER_ADMIN")
+                    .requestMatchers("/actuator/**").hasRole("SUPER_ADMIN")
                     .requestMatchers("/api/orders/**").permitAll()
                     .requestMatchers("/api/items/**").permitAll()
                     .requestMatchers("/api/gift-cards/**").permitAll()
@@ -5,6 +5,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import vu.software_project.sdp.entities.Discount;
 import vu.software_project.sdp.repositories.DiscountRepository;
+import vu.software_project.sdp.services.CodeLookupFilter;
+import vu.software_project.sdp.services.DiscountEngine;
 
 import java.util.List;
 
@@ -13,6 +15,8 @@ import java.util.List;
 @RequiredArgsConstructor
 public class DiscountController {
     private final DiscountRepository discountRepository;
+    private final CodeLookupFilter codeFilter;
+    private final DiscountEngine discountEngine;
 
     @GetMapping
     public ResponseEntity<List<Discount>> getDiscounts(@RequestParam Long merchantId) {
@@ -21,12 +25,19 @@ public class DiscountController {
 
     @PostMapping
     public ResponseEntity<Discount> createDiscount(@RequestBody Discount discount) {
-        return ResponseEntity.ok(discountRepository.save(discount));
+        codeFilter.add(CodeLookupFilter.Kind.DISCOUNT, discount.getMerchantId(), discount.getCode());
+        Discount saved = discountRepository.save(discount);
+        discountEngine.evict(saved.getMerchantId());
+        return ResponseEntity.ok(saved);
     }
 
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteDiscount(@PathVariable String id) {
-        discountRepository.deleteById(id);
+        discountRepository.findById(id).ifPresent(discount -> {
+            discountRepository.delete(discount);
+            discountEngine.evict(discount.getMerchantId());
+            codeFilter.remove(CodeLookupFilter.Kind.DISCOUNT, discount.getMerchantId(), discount.getCode());
+        });
         return ResponseEntity.noContent().build();
     }
 }
\ No newline at end of file
@@ -1,15 +1,32 @@
 package vu.software_project.sdp.controllers;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import vu.software_project.sdp.DTOs.payments.giftcard.BulkGiftCardRequestDTO;
 import vu.software_project.sdp.DTOs.payments.giftcard.CreateGiftCardRequestDTO;
 import vu.software_project.sdp.DTOs.payments.giftcard.GiftCardResponseDTO;
+import vu.software_project.sdp.DTOs.payments.giftcard.GiftCardTransactionResponseDTO;
+import vu.software_project.sdp.config.security.CustomUserDetails;
 import vu.software_project.sdp.entities.GiftCard;
 import vu.software_project.sdp.services.GiftCardService;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 @RestController
 @RequestMapping("/api/gift-cards")
@@ -22,9 +39,10 @@ public class GiftCardController {
     public ResponseEntity<List<GiftCardResponseDTO>> listAll(
             @RequestParam Long merchantId
     ) {
+        Map<String, BigDecimal> pendingCredits = giftCardService.getPendingCredits(merchantId);
         var data = giftCardService.getAll(merchantId)
                 .stream()
-                .map(this::toDto)
+                .map(gc -> toDto(gc, pendingCredits.getOrDefault(gc.getCode(), BigDecimal.ZERO)))
                 .toList();
 
         return ResponseEntity.ok(data);
@@ -36,7 +54,49 @@ public class GiftCardController {
             @RequestBody CreateGiftCardRequestDTO request
     ) {
         GiftCard gc = giftCardService.createGiftCard(merchantId, request.getAmount());
-        return ResponseEntity.status(HttpStatus.CREATED).body(toDto(gc));
+        return ResponseEntity.status(HttpStatus.CREATED).body(toDto(gc, BigDecimal.ZERO));
+    }
+
+    /**
+     * Issues a batch of identical cards and streams their codes back as CSV while they are
+     * being inserted. Codes already streamed are committed even if a later chunk fails.
+     * Access: BUSINESS_OWNER (own merchant only), SUPER_ADMIN (all)
+     */
+    @PostMapping(value = "/bulk", produces = "text/csv")
+    @PreAuthorize("hasAnyRole('SUPER_ADMIN', 'BUSINESS_OWNER')")
+    public ResponseEntity<?> createBulk(
+            @RequestParam Long merchantId,
+            @RequestBody BulkGiftCardRequestDTO request,
+            Authentication authentication
+    ) {
+        if (!canAccess(authentication, merchantId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Access denied to merchant gift cards");
+        }
+        giftCardService.validateBulkRequest(request.getCount(), request.getAmount());
+
+        String amount = request.getAmount().toPlainString();
+        String expiry = request.getExpiryDate() != null ? request.getExpiryDate().toString() : "";
+
+        StreamingResponseBody body = out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writer.write("code,amount,expiry_date\n");
+            giftCardService.issueBulk(merchantId, request.getCount(), request.getAmount(), request.getExpiryDate(), codes -> {
+                try {
+                    for (String code : codes) {
+                        writer.write(code + "," + amount + "," + expiry + "\n");
+                    }
+                    writer.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+        };
+
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"gift-cards.csv\"")
+                .contentType(MediaType.parseMediaType("text/csv"))
+                .body(body);
     }
 
     @DeleteMapping("/{code}")
@@ -48,11 +108,38 @@ public class GiftCardController {
         return ResponseEntity.noContent().build();
     }
 
-    private GiftCardResponseDTO toDto(GiftCard gc) {
+    @GetMapping("/{code}/transactions")
+    public ResponseEntity<List<GiftCardTransactionResponseDTO>> listTransactions(
+            @PathVariable String code,
+            @RequestParam Long merchantId
+    ) {
+        var data = giftCardService.getTransactions(merchantId, code)
+                .stream()
+                .map(t -> GiftCardTransactionResponseDTO.builder()
+                        .id(t.getId())
+                        .type(t.getType().name())
+                        .amount(t.getAmount())
+                        .orderId(t.getOrderId())
+                        .createdAt(t.getCreatedAt())
+                        .build())
+                .toList();
+
+        return ResponseEntity.ok(data);
+    }
+
+    private boolean canAccess(Authentication authentication, Long merchantId) {
+        CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+        boolean superAdmin = authentication.getAuthorities().stream()
+                .anyMatch(a -> "ROLE_SUPER_ADMIN".equals(a.getAuthority()));
+        return superAdmin || Objects.equals(userDetails.getMerchantId(), merchantId);
+    }
+
+    // Balance shown is the snapshot plus refund credits that have not been compacted yet
+    private GiftCardResponseDTO toDto(GiftCard gc, BigDecimal pendingCredit) {
         return GiftCardResponseDTO.builder()
                 .code(gc.getCode())
                 .initialBalance(gc.getInitialBalance())
-                .currentBalance(gc.getCurrentBalance())
+                .currentBalance(gc.getCurrentBalance().add(pendingCredit))
                 .active(gc.getActive())
                 .createdAt(gc.getCreatedAt())
                 .expiryDate(gc.getExpiryDate())
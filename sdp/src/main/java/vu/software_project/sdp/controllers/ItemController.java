@@ -1,19 +1,36 @@
 package vu.software_project.sdp.controllers;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import vu.software_project.sdp.DTOs.item.*;
-import vu.software_project.sdp.entities.Product;
-import vu.software_project.sdp.entities.ProductVariation;
-import vu.software_project.sdp.repositories.ProductRepository;
-import vu.software_project.sdp.repositories.ProductVariationRepository;
+import vu.software_project.sdp.config.security.CustomUserDetails;
+import vu.software_project.sdp.services.BarcodeIndex;
+import vu.software_project.sdp.services.CatalogFeedService;
+import vu.software_project.sdp.services.CatalogImportService;
+import vu.software_project.sdp.services.CatalogSearchService;
+import vu.software_project.sdp.services.CatalogSnapshotService;
+import vu.software_project.sdp.services.ExportFormat;
+import vu.software_project.sdp.services.ItemService;
 import vu.software_project.sdp.services.ProductService;
 import vu.software_project.sdp.services.ServiceItemService;
-import java.util.ArrayList;
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Objects;
 
 @RestController
 @RequestMapping("/api/items")
@@ -21,8 +38,12 @@ import java.util.stream.Collectors;
 public class ItemController {
     private final ProductService productService;
     private final ServiceItemService serviceItemService;
-    private final ProductVariationRepository variationRepository;
-    private final ProductRepository productRepository;
+    private final ItemService itemService;
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final CatalogFeedService catalogFeedService;
+    private final CatalogImportService catalogImportService;
+    private final CatalogSearchService catalogSearchService;
+    private final BarcodeIndex barcodeIndex;
 
     @PostMapping
     public ResponseEntity<ItemResponseDTO> createItem(
@@ -39,15 +60,83 @@ public class ItemController {
         throw new IllegalArgumentException("Invalid item type. Use 'PRODUCT' or 'SERVICE_ITEM'");
     }
 
+    // Served from the cached catalog snapshot; an unchanged catalog costs no database work at all
     @GetMapping
-    public ResponseEntity<List<ItemResponseDTO>> getAllItems(@RequestParam Long merchantId) {
-        List<ItemResponseDTO> products = productService.getProductsByMerchant(merchantId);
-        List<ItemResponseDTO> services = serviceItemService.getServiceItemsByMerchant(merchantId);
+    public ResponseEntity<byte[]> getAllItems(@RequestParam Long merchantId, WebRequest webRequest) {
+        CatalogSnapshotService.CatalogSnapshot snapshot = catalogSnapshotService.getSnapshot(merchantId);
+        if (webRequest.checkNotModified(snapshot.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(snapshot.etag()).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(snapshot.etag())
+                .cacheControl(CacheControl.noCache())
+                .header("X-Catalog-Version", Long.toString(snapshot.version()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(snapshot.json());
+    }
 
-        List<ItemResponseDTO> allItems = new ArrayList<>(products);
-        allItems.addAll(services);
+    @GetMapping("/changes")
+    public ResponseEntity<CatalogChangesDTO> getChanges(
+            @RequestParam Long merchantId,
+            @RequestParam(defaultValue = "0") long since) {
+        return ResponseEntity.ok(catalogFeedService.getChangesSince(merchantId, since));
+    }
+
+    // Price check by barcode or SKU; a variation's code returns its product
+    @GetMapping("/by-code")
+    public ResponseEntity<ItemResponseDTO> getItemByCode(
+            @RequestParam Long merchantId,
+            @RequestParam String code) {
+        BarcodeIndex.ScanTarget target = barcodeIndex.lookup(merchantId, code)
+                .orElseThrow(() -> new IllegalArgumentException("No product with this barcode or SKU"));
+        return ResponseEntity.ok(productService.getProductById(target.productId(), merchantId));
+    }
 
-        return ResponseEntity.ok(allItems);
+    // Type-ahead for the register: prefix, substring and typo-tolerant matches on item names
+    @GetMapping("/search")
+    public ResponseEntity<List<ItemSearchResultDTO>> search(
+            @RequestParam Long merchantId,
+            @RequestParam String q,
+            @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(catalogSearchService.search(merchantId, q, limit));
+    }
+
+    /**
+     * Imports items from a CSV or JSON-lines request body. Rows are validated and written as they
+     * are read; invalid rows are listed in the result instead of failing the upload.
+     * Access: BUSINESS_OWNER (own merchant only), SUPER_ADMIN (all)
+     */
+    @PostMapping("/import")
+    @PreAuthorize("hasAnyRole('SUPER_ADMIN', 'BUSINESS_OWNER')")
+    public ResponseEntity<?> importItems(
+            @RequestParam Long merchantId,
+            @RequestParam(defaultValue = "csv") String format,
+            HttpServletRequest request,
+            Authentication authentication) throws IOException {
+        if (!canAccess(authentication, merchantId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Access denied to merchant catalog");
+        }
+        ExportFormat parsed = ExportFormat.parse(format);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8))) {
+            return ResponseEntity.ok(catalogImportService.importCatalog(merchantId, parsed, reader));
+        }
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportItems(
+            @RequestParam Long merchantId,
+            @RequestParam(defaultValue = "csv") String format) {
+        ExportFormat parsed = ExportFormat.parse(format);
+        boolean csv = parsed == ExportFormat.CSV;
+
+        StreamingResponseBody body = out -> catalogImportService.exportCatalog(merchantId, parsed,
+                new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"catalog-" + merchantId + (csv ? ".csv" : ".ndjson") + "\"")
+                .contentType(csv ? MediaType.parseMediaType("text/csv") : MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
     }
 
     @GetMapping("/products")
@@ -56,47 +145,38 @@ public class ItemController {
         return ResponseEntity.ok(products);
     }
      
+    // type is only needed for ids created before products and services shared a sequence
     @GetMapping("/{id}")
     public ResponseEntity<ItemResponseDTO> getItem(
             @PathVariable Long id,
-            @RequestParam Long merchantId) {
-        
-        try {
-            ItemResponseDTO response = productService.getProductById(id, merchantId);
-            return ResponseEntity.ok(response);
-        } catch (IllegalArgumentException e) {
-            ItemResponseDTO response = serviceItemService.getServiceItemById(id, merchantId);
-            return ResponseEntity.ok(response);
-        }
+            @RequestParam Long merchantId,
+            @RequestParam(required = false) String type) {
+        return ResponseEntity.ok(itemService.getItem(id, merchantId, type));
     }
 
     @PutMapping("/{id}")
     public ResponseEntity<ItemResponseDTO> updateItem(
             @PathVariable Long id,
             @RequestBody ItemUpdateRequestDTO request,
-            @RequestParam Long merchantId) {
-        
-        try {
-            ItemResponseDTO response = productService.updateProduct(id, request, merchantId);
-            return ResponseEntity.ok(response);
-        } catch (IllegalArgumentException e) {
-            ItemResponseDTO response = serviceItemService.updateServiceItem(id, request, merchantId);
-            return ResponseEntity.ok(response);
-        }
+            @RequestParam Long merchantId,
+            @RequestParam(required = false) String type) {
+        ItemResponseDTO response = switch (itemService.resolveType(id, merchantId, type)) {
+            case PRODUCT -> productService.updateProduct(id, request, merchantId);
+            case SERVICE_ITEM -> serviceItemService.updateServiceItem(id, request, merchantId);
+        };
+        return ResponseEntity.ok(response);
     }
 
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteItem(
             @PathVariable Long id,
-            @RequestParam Long merchantId) {
-        
-        try {
-            productService.deleteProduct(id, merchantId);
-            return ResponseEntity.noContent().build();
-        } catch (IllegalArgumentException e) {
-            serviceItemService.deleteServiceItem(id, merchantId);
-            return ResponseEntity.noContent().build();
+            @RequestParam Long merchantId,
+            @RequestParam(required = false) String type) {
+        switch (itemService.resolveType(id, merchantId, type)) {
+            case PRODUCT -> productService.deleteProduct(id, merchantId);
+            case SERVICE_ITEM -> serviceItemService.deleteServiceItem(id, merchantId);
         }
+        return ResponseEntity.noContent().build();
     }
 
     // ========== PRODUCT VARIATION ENDPOINTS ==========
@@ -106,24 +186,7 @@ public class ItemController {
             @PathVariable Long itemId,
             @RequestBody ProductVariationCreateRequestDTO request,
             @RequestParam Long merchantId) {
-        
-        // Authorization check
-        Product product = productRepository.findByIdAndMerchantId(itemId, merchantId)
-            .orElseThrow(() -> new IllegalArgumentException(
-                "Product not found or access denied"));
-        
-        ProductVariation variation = new ProductVariation();
-        variation.setProductId(itemId);
-        variation.setName(request.getName());
-        variation.setPriceOffset(request.getPriceOffset());
-
-        ProductVariation saved = variationRepository.save(variation);
-        ProductVariationResponseDTO response = new ProductVariationResponseDTO(
-            saved.getId(),
-            saved.getName(),
-            saved.getPriceOffset()
-        );
-
+        ProductVariationResponseDTO response = productService.createVariation(itemId, request, merchantId);
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
@@ -131,18 +194,7 @@ public class ItemController {
     public ResponseEntity<List<ProductVariationResponseDTO>> getVariations(
             @PathVariable Long itemId,
             @RequestParam Long merchantId) {
-        
-        // Authorization check
-        Product product = productRepository.findByIdAndMerchantId(itemId, merchantId)
-            .orElseThrow(() -> new IllegalArgumentException(
-                "Product not found or access denied"));
-        
-        List<ProductVariationResponseDTO> variations = variationRepository.findByProductId(itemId)
-            .stream()
-            .map(v -> new ProductVariationResponseDTO(v.getId(), v.getName(), v.getPriceOffset()))
-            .collect(Collectors.toList());
-
-        return ResponseEntity.ok(variations);
+        return ResponseEntity.ok(productService.getVariations(itemId, merchantId));
     }
 
     @PutMapping("/{itemId}/variations/{variationId}")
@@ -151,30 +203,7 @@ public class ItemController {
             @PathVariable Long variationId,
             @RequestBody ProductVariationCreateRequestDTO request,
             @RequestParam Long merchantId) {
-        
-        // Authorization check
-        Product product = productRepository.findByIdAndMerchantId(itemId, merchantId)
-            .orElseThrow(() -> new IllegalArgumentException(
-                "Product not found or access denied"));
-        
-        ProductVariation variation = variationRepository.findById(variationId)
-            .orElseThrow(() -> new IllegalArgumentException("Variation not found"));
-
-        if (!variation.getProductId().equals(itemId)) {
-            throw new IllegalArgumentException("Variation does not belong to this product");
-        }
-
-        variation.setName(request.getName());
-        variation.setPriceOffset(request.getPriceOffset());
-
-        ProductVariation updated = variationRepository.save(variation);
-        ProductVariationResponseDTO response = new ProductVariationResponseDTO(
-            updated.getId(),
-            updated.getName(),
-            updated.getPriceOffset()
-        );
-
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok(productService.updateVariation(itemId, variationId, request, merchantId));
     }
 
     @DeleteMapping("/{itemId}/variations/{variationId}")
@@ -182,19 +211,14 @@ public class ItemController {
             @PathVariable Long itemId,
             @PathVariable Long variationId,
             @RequestParam Long merchantId) {
-        // Authorization check
-        Product product = productRepository.findByIdAndMerchantId(itemId, merchantId)
-            .orElseThrow(() -> new IllegalArgumentException(
-                "Product not found or access denied"));
-        
-        ProductVariation variation = variationRepository.findById(variationId)
-            .orElseThrow(() -> new IllegalArgumentException("Variation not found"));
-
-        if (!variation.getProductId().equals(itemId)) {
-            throw new IllegalArgumentException("Variation does not belong to this product");
-        }
-
-        variationRepository.deleteById(variationId);
+        productService.deleteVariation(itemId, variationId, merchantId);
         return ResponseEntity.noContent().build();
     }
+
+    private boolean canAccess(Authentication authentication, Long merchantId) {
+        CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+        boolean superAdmin = authentication.getAuthorities().stream()
+                .anyMatch(a -> "ROLE_SUPER_ADMIN".equals(a.getAuthority()));
+        return superAdmin || Objects.equals(userDetails.getMerchantId(), merchantId);
+    }
 }
@@ -24,6 +24,7 @@ import vu.software_project.sdp.DTOs.orders.OrderInfoDTO;
 import vu.software_project.sdp.config.security.CustomUserDetails;
 import vu.software_project.sdp.entities.Order;
 import vu.software_project.sdp.DTOs.orders.OrderAddItemRequestDTO;
+import vu.software_project.sdp.DTOs.orders.OrderScanRequestDTO;
 import vu.software_project.sdp.services.OrderService;
 
 @RestController
@@ -98,6 +99,19 @@ public class OrderController {
         }
     }
 
+    // Scanner checkout: barcode or SKU in, updated order out, in one request
+    @PostMapping("/{orderId}/scan")
+    public ResponseEntity<?> scanItem(@PathVariable Long orderId, @RequestBody OrderScanRequestDTO request, Authentication authentication) {
+        try {
+            CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+
+            OrderDTO updatedOrder = orderService.scanItem(orderId, request, userDetails.getId(), userDetails.getMerchantId());
+            return ResponseEntity.status(HttpStatus.OK).body(updatedOrder);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ex.getMessage());
+        }
+    }
+
     @GetMapping("/{orderId}")
     public ResponseEntity<?> getOrderById(@PathVariable Long orderId) {
         try {
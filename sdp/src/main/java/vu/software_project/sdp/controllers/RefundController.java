@@ -14,12 +14,28 @@ public class RefundController {
 
     private final RefundService refundService;
 
+    // The legs are processed in the background; poll the refund for its final status
     @PostMapping("/orders/{orderId}/refund")
     public ResponseEntity<RefundResponseDTO> createRefund(
             @PathVariable Long orderId,
             @RequestBody CreateRefundRequestDTO request) {
         RefundResponseDTO response = refundService.createFullRefund(orderId, request.getReason());
 
-        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+
+    @GetMapping("/orders/{orderId}/refund")
+    public ResponseEntity<RefundResponseDTO> getRefundForOrder(@PathVariable Long orderId) {
+        return ResponseEntity.ok(refundService.getRefundForOrder(orderId));
+    }
+
+    @GetMapping("/refunds/{refundId}")
+    public ResponseEntity<RefundResponseDTO> getRefund(@PathVariable Long refundId) {
+        return ResponseEntity.ok(refundService.getRefund(refundId));
+    }
+
+    @PostMapping("/refunds/{refundId}/retry")
+    public ResponseEntity<RefundResponseDTO> retryRefund(@PathVariable Long refundId) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(refundService.retryFailedLegs(refundId));
     }
 }
@@ -0,0 +1,206 @@
+package vu.software_project.sdp.controllers;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import vu.software_project.sdp.DTOs.reports.ZReportDTO;
+import vu.software_project.sdp.config.security.CustomUserDetails;
+import vu.software_project.sdp.services.AccountingExportService;
+import vu.software_project.sdp.services.ExportFormat;
+import vu.software_project.sdp.services.SalesRollupService;
+import vu.software_project.sdp.services.TopItemsService;
+import vu.software_project.sdp.services.ZReportService;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.Objects;
+
+@RestController
+@RequestMapping("/api/reports")
+@RequiredArgsConstructor
+public class ReportController {
+
+    private final SalesRollupService salesRollupService;
+    private final TopItemsService topItemsService;
+    private final ZReportService zReportService;
+    private final AccountingExportService accountingExportService;
+
+    /**
+     * Daily sales for a merchant, one entry per day with activity
+     * Access: BUSINESS_OWNER (own merchant only), SUPER_ADMIN (all)
+     */
+    @GetMapping("/daily-sales")
+    @PreAuthorize("hasAnyRole('SUPER_ADMIN', 'BUSINESS_OWNER')")
+    public ResponseEntity<?> getDailySales(
+            @RequestParam Long merchantId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            Authentication authentication
+    ) {
+        if (!canAccess(authentication, merchantId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Access denied to merchant reports");
+        }
+        try {
+            return ResponseEntity.ok(salesRollupService.getDailySales(merchantId, from, to));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(ex.getMessage());
+        }
+    }
+
+    /**
+     * Best-selling items of a merchant today or over the last seven days, largest quantity first.
+     * Quantities come from a live summary; minQuantity is the guaranteed lower bound.
+     * Access: BUSINESS_OWNER (own merchant only), SUPER_ADMIN (all)
+     */
+    @GetMapping("/top-items")
+    @PreAuthorize("hasAnyRole('SUPER_ADMIN', 'BUSINESS_OWNER')")
+    public ResponseEntity<?> getTopItems(
+            @RequestParam Long merchantId,
+            @RequestParam(defaultValue = "TODAY") String period,
+            @RequestParam(defaultValue = "20") int limit,
+            Authentication authentication
+    ) {
+        if (!canAccess(authentication, merchantId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Access denied to merchant reports");
+        }
+        try {
+            TopItemsService.Period parsed = TopItemsService.Period.valueOf(period.toUpperCase(Locale.ROOT));
+            return ResponseEntity.ok(topItemsService.getTopItems(merchantId, parsed, limit));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(ex.getMessage());
+        }
+    }
+
+    /**
+     * Recompute the rollups of all merchants for a range of days from the orders
+     * Access: SUPER_ADMIN
+     */
+    @PostMapping("/daily-sales/rebuild")
+    @PreAuthorize("hasRole('SUPER_ADMIN')")
+    public ResponseEntity<?> rebuildDailySales(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        if (from.isAfter(to) || from.plusDays(SalesRollupService.MAX_REPORT_DAYS).isBefore(to)) {
+            return ResponseEntity.badRequest().body("Rebuild at most " + SalesRollupService.MAX_REPORT_DAYS + " days at once");
+        }
+        salesRollupService.rebuild(from, to);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Close out the merchant's shift or day since the previous close-out into a Z-report
+     * Access: EMPLOYEE, BUSINESS_OWNER (own merchant only), SUPER_ADMIN (all)
+     */
+    @PostMapping("/z-reports")
+    @PreAuthorize("hasAnyRole('SUPER_ADMIN', 'BUSINESS_OWNER', 'EMPLOYEE')")
+    public ResponseEntity<?> closeOut(@RequestParam Long merchantId, Authentication authentication) {
+        if (!canAccess(authentication, merchantId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Access denied to merchant reports");
+        }
+        CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(zReportService.closeOut(merchantId, userDetails.getId()));
+        } catch (IllegalStateException ex) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage());
+        }
+    }
+
+    /**
+     * Z-reports of a merchant by business day, oldest first
+     * Access: BUSINESS_OWNER (own merchant only), SUPER_ADMIN (all)
+     */
+    @GetMapping("/z-reports")
+    @PreAuthorize("hasAnyRole('SUPER_ADMIN', 'BUSINESS_OWNER')")
+    public ResponseEntity<?> getZReports(
+            @RequestParam Long merchantId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            Authentication authentication
+    ) {
+        if (!canAccess(authentication, merchantId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Access denied to merchant reports");
+        }
+        try {
+            return ResponseEntity.ok(zReportService.getReports(merchantId, from, to));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(ex.getMessage());
+        }
+    }
+
+    /**
+     * Access: BUSINESS_OWNER (own merchant only), SUPER_ADMIN (all)
+     */
+    @GetMapping("/z-reports/{id}")
+    @PreAuthorize("hasAnyRole('SUPER_ADMIN', 'BUSINESS_OWNER')")
+    public ResponseEntity<?> getZReport(@PathVariable Long id, Authentication authentication) {
+        ZReportDTO report;
+        try {
+            report = zReportService.getReport(id);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ex.getMessage());
+        }
+        if (!canAccess(authentication, report.getMerchantId())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Access denied to merchant reports");
+        }
+        return ResponseEntity.ok(report);
+    }
+
+    /**
+     * Journal export of a merchant's sales, payments and refunds for a range of days, streamed as
+     * CSV or JSON lines. Pass the last checkpoint received to continue an interrupted export.
+     * Access: BUSINESS_OWNER (own merchant only), SUPER_ADMIN (all)
+     */
+    @GetMapping("/accounting-export")
+    @PreAuthorize("hasAnyRole('SUPER_ADMIN', 'BUSINESS_OWNER')")
+    public ResponseEntity<?> exportJournal(
+            @RequestParam Long merchantId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) String checkpoint,
+            Authentication authentication
+    ) {
+        if (!canAccess(authentication, merchantId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Access denied to merchant reports");
+        }
+        ExportFormat parsed;
+        AccountingExportService.Request request;
+        try {
+            parsed = ExportFormat.parse(format);
+            request = accountingExportService.prepare(merchantId, from, to, checkpoint);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(ex.getMessage());
+        }
+        boolean csv = parsed == ExportFormat.CSV;
+
+        StreamingResponseBody body = out -> accountingExportService.export(request, parsed,
+                new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"journal-" + merchantId + "-" + from + "-" + to + (csv ? ".csv" : ".ndjson") + "\"")
+                .contentType(csv ? MediaType.parseMediaType("text/csv") : MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
+    private boolean canAccess(Authentication authentication, Long merchantId) {
+        CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+        return isSuperAdmin(authentication) || Objects.equals(userDetails.getMerchantId(), merchantId);
+    }
+
+    private boolean isSuperAdmin(Authentication authentication) {
+        return authentication.getAuthorities().stream()
+                .anyMatch(a -> "ROLE_SUPER_ADMIN".equals(a.getAuthority()));
+    }
+}
@@ -2,17 +2,22 @@ package vu.software_project.sdp.controllers;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType; // Import needed for TEXT_PLAIN
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import vu.software_project.sdp.DTOs.reservations.ReservationCreateRequestDto;
 import vu.software_project.sdp.DTOs.reservations.ReservationResponseDto;
+import vu.software_project.sdp.DTOs.reservations.ReservationSeriesCreateRequestDto;
 import vu.software_project.sdp.config.security.CustomUserDetails;
 import vu.software_project.sdp.services.ReservationService;
 
+import java.time.DayOfWeek;
 import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
 import java.util.List;
 
 @RestController
@@ -38,6 +43,22 @@ public class ReservationController {
         }
     }
 
+    @PostMapping("/series")
+    public ResponseEntity<?> createSeries(
+            @RequestBody ReservationSeriesCreateRequestDto request,
+            Authentication authentication
+    ) {
+        try {
+            CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .body(reservationService.createSeries(request, userDetails.getId(), request.getMerchantId()));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(ex.getMessage());
+        }
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<?> updateReservation(
             @PathVariable Long id,
@@ -62,6 +83,66 @@ public class ReservationController {
         return ResponseEntity.ok(reservationService.getAllReservations(merchantId, date));
     }
 
+    // view is "week" (Monday to Sunday around date) or "month" (the month of date)
+    @GetMapping("/calendar")
+    public ResponseEntity<?> getCalendar(
+            @RequestParam Long merchantId,
+            @RequestParam(defaultValue = "week") String view,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(required = false) Long employeeId,
+            @RequestParam(required = false) Long serviceId,
+            WebRequest webRequest
+    ) {
+        LocalDate from;
+        LocalDate to;
+        switch (view.toLowerCase()) {
+            case "week" -> {
+                from = date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                to = from.plusDays(6);
+            }
+            case "month" -> {
+                from = date.withDayOfMonth(1);
+                to = date.with(TemporalAdjusters.lastDayOfMonth());
+            }
+            default -> {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .contentType(MediaType.TEXT_PLAIN)
+                        .body("view must be week or month");
+            }
+        }
+
+        String etag = reservationService.getCalendarEtag(merchantId);
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        try {
+            return ResponseEntity.ok()
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .body(reservationService.getCalendar(merchantId, from, to, employeeId, serviceId));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(ex.getMessage());
+        }
+    }
+
+    @GetMapping("/availability")
+    public ResponseEntity<?> getAvailability(
+            @RequestParam Long merchantId,
+            @RequestParam Long serviceId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(required = false) Long employeeId
+    ) {
+        try {
+            return ResponseEntity.ok(reservationService.getAvailability(merchantId, serviceId, date, employeeId));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body(ex.getMessage());
+        }
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<?> cancelReservation(
             @PathVariable Long id,
@@ -4,38 +4,35 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import vu.software_project.sdp.entities.TaxRate;
-import vu.software_project.sdp.repositories.TaxRateRepository;
+import vu.software_project.sdp.services.TaxRateService;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/tax-rates")
 @RequiredArgsConstructor
 public class TaxRateController {
-    private final TaxRateRepository taxRateRepository;
+    private final TaxRateService taxRateService;
 
     @GetMapping
     public ResponseEntity<List<TaxRate>> getTaxRates(@RequestParam Long merchantId) {
-        return ResponseEntity.ok(taxRateRepository.findByMerchantId(merchantId));
+        return ResponseEntity.ok(taxRateService.getByMerchant(merchantId));
     }
 
     @PostMapping
     public ResponseEntity<TaxRate> createTaxRate(@RequestBody TaxRate taxRate) {
-        return ResponseEntity.ok(taxRateRepository.save(taxRate));
+        return ResponseEntity.ok(taxRateService.create(taxRate));
     }
 
     @PutMapping("/{id}")
     public ResponseEntity<TaxRate> updateTaxRate(@PathVariable String id, @RequestBody TaxRate taxRate) {
-        if (!taxRateRepository.existsById(id)) return ResponseEntity.notFound().build();
-        taxRate.setId(id);
-        return ResponseEntity.ok(taxRateRepository.save(taxRate));
+        return taxRateService.update(id, taxRate)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteTaxRate(@PathVariable String id) {
-        taxRateRepository.findById(id).ifPresent(taxRate -> {
-            taxRate.setActive(false);
-            taxRateRepository.save(taxRate);
-        });
+        taxRateService.deactivate(id);
         return ResponseEntity.noContent().build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,56 @@
+package vu.software_project.sdp.entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.OffsetDateTime;
+
+/**
+ * One entry of a merchant's catalog change feed. {@code version} is the merchant's catalog version
+ * after the change; a deleted entity leaves a tombstone ({@code deleted = true}).
+ * Variation changes are logged against their product, since terminals receive products with variations.
+ */
+@Entity
+@Table(
+        name = "catalog_changes",
+        indexes = {
+                @Index(name = "idx_catalog_changes_merchant_version", columnList = "merchant_id, version"),
+                @Index(name = "idx_catalog_changes_entity", columnList = "merchant_id, entity_type, entity_id, version")
+        }
+)
+@Data
+@NoArgsConstructor
+public class CatalogChange {
+
+    @Id
+    @SequenceGenerator(name = "catalog_changes_seq", sequenceName = "catalog_changes_seq", allocationSize = 50)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "catalog_changes_seq")
+    private Long id;
+
+    @Column(name = "merchant_id", nullable = false)
+    private Long merchantId;
+
+    @Column(nullable = false)
+    private Long version;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "entity_type", nullable = false, length = 20)
+    private EntityType entityType;
+
+    // Tax rate ids are UUID strings
+    @Column(name = "entity_id", nullable = false, length = 64)
+    private String entityId;
+
+    @Column(nullable = false)
+    private boolean deleted;
+
+    @Column(nullable = false)
+    private OffsetDateTime changedAt;
+
+    public enum EntityType {
+        PRODUCT,
+        SERVICE,
+        TAX_RATE
+    }
+}
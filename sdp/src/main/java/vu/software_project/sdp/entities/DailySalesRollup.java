@@ -0,0 +1,62 @@
+package vu.software_project.sdp.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * One merchant's sales on one day. Sales count on the day the order was paid, cancellations and
+ * refunds on the day they happened. Kept up to date by {@code SalesRollupService} as orders
+ * change state; {@link DailyTenderRollup} and {@link DailyTaxRollup} split the same day further.
+ */
+@Entity
+@Table(name = "daily_sales_rollups")
+@IdClass(DailySalesRollup.Key.class)
+@Data
+@NoArgsConstructor
+public class DailySalesRollup {
+
+    @Id
+    @Column(name = "merchant_id")
+    private Long merchantId;
+
+    @Id
+    private LocalDate day;
+
+    @Column(nullable = false)
+    private int ordersPaid;
+
+    @Column(nullable = false)
+    private int ordersCancelled;
+
+    @Column(nullable = false)
+    private int ordersRefunded;
+
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal grossSales = BigDecimal.ZERO;
+
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal discounts = BigDecimal.ZERO;
+
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal tax = BigDecimal.ZERO;
+
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal tips = BigDecimal.ZERO;
+
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal refunds = BigDecimal.ZERO;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long merchantId;
+        private LocalDate day;
+    }
+}
@@ -0,0 +1,45 @@
+package vu.software_project.sdp.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Tax collected on the orders paid on one day, per tax rate. Each order's tax per rate is
+ * rounded to cents before it is added.
+ */
+@Entity
+@Table(name = "daily_tax_rollups")
+@IdClass(DailyTaxRollup.Key.class)
+@Data
+@NoArgsConstructor
+public class DailyTaxRollup {
+
+    @Id
+    @Column(name = "merchant_id")
+    private Long merchantId;
+
+    @Id
+    private LocalDate day;
+
+    @Id
+    @Column(name = "tax_rate_id", length = 64)
+    private String taxRateId;
+
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal tax = BigDecimal.ZERO;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long merchantId;
+        private LocalDate day;
+        private String taxRateId;
+    }
+}
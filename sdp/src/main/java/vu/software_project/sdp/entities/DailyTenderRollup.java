@@ -0,0 +1,51 @@
+package vu.software_project.sdp.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Payments of the orders paid on one day, per tender type.
+ */
+@Entity
+@Table(name = "daily_tender_rollups")
+@IdClass(DailyTenderRollup.Key.class)
+@Data
+@NoArgsConstructor
+public class DailyTenderRollup {
+
+    @Id
+    @Column(name = "merchant_id")
+    private Long merchantId;
+
+    @Id
+    private LocalDate day;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = "payment_type", length = 20)
+    private Payment.PaymentType paymentType;
+
+    @Column(nullable = false)
+    private int paymentCount;
+
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal amount = BigDecimal.ZERO;
+
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal tips = BigDecimal.ZERO;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long merchantId;
+        private LocalDate day;
+        private Payment.PaymentType paymentType;
+    }
+}
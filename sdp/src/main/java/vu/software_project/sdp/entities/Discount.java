@@ -3,6 +3,7 @@ package vu.software_project.sdp.entities;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.ColumnDefault;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
@@ -36,6 +37,15 @@ public class Discount {
     private LocalDateTime validFrom;
     private LocalDateTime validTo;
 
+    // Applied by itself to every order it fits, without the cashier entering the code
+    @ColumnDefault("false")
+    @Column(nullable = false)
+    private boolean automatic;
+
+    // Redemptions allowed in total and per calendar day; null means no limit
+    private Integer maxRedemptions;
+    private Integer maxRedemptionsPerDay;
+
     public enum Type { PERCENTAGE, FIXED_AMOUNT }
     public enum Scope { ORDER, PRODUCT }
 
@@ -0,0 +1,39 @@
+package vu.software_project.sdp.entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Redemptions of one discount, in total ({@code day} null) or on one day. Application nodes
+ * lease blocks of redemptions from {@code leased} and redeem them from memory, so checkouts do
+ * not queue on this row; {@code leased} never exceeds {@code cap}. {@code redeemed} trails the
+ * nodes by one reconciliation.
+ */
+@Entity
+@Table(name = "discount_redemption_counters")
+@Data
+@NoArgsConstructor
+public class DiscountRedemptionCounter {
+
+    // Discount id, then ":total" or ":" and the day
+    @Id
+    @Column(length = 64)
+    private String id;
+
+    @Column(name = "discount_id", nullable = false)
+    private String discountId;
+
+    private LocalDate day;
+
+    @Column(nullable = false)
+    private int cap;
+
+    @Column(nullable = false)
+    private int leased;
+
+    @Column(nullable = false)
+    private int redeemed;
+}
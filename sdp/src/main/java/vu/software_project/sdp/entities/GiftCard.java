@@ -33,4 +33,7 @@ public class GiftCard {
 
     @Column(nullable = false)
     private Long merchantId;
+
+    // Last REFUND ledger entry already folded into currentBalance; later ones are pending credits
+    private Long creditedThroughId;
 }
@@ -0,0 +1,55 @@
+package vu.software_project.sdp.entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+/**
+ * Append-only ledger entry for a gift card. Amounts are signed, so the sum of all
+ * entries of a card always equals its balance.
+ */
+@Entity
+@Immutable
+@Table(
+        name = "gift_card_transactions",
+        indexes = @Index(name = "idx_gift_card_transactions_code_id", columnList = "gift_card_code, id")
+)
+@Data
+@NoArgsConstructor
+public class GiftCardTransaction {
+
+    // allocationSize = 1 so ids follow nextval order; credit compaction uses the id as its cursor
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "gift_card_transactions_seq")
+    @SequenceGenerator(name = "gift_card_transactions_seq", sequenceName = "gift_card_transactions_seq", allocationSize = 1)
+    private Long id;
+
+    @Column(name = "gift_card_code", nullable = false, length = 40)
+    private String giftCardCode;
+
+    @Column(nullable = false)
+    private Long merchantId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Type type;
+
+    @Column(nullable = false, precision = 10, scale = 2)
+    private BigDecimal amount;
+
+    private Long orderId;
+
+    @Column(nullable = false)
+    private OffsetDateTime createdAt = OffsetDateTime.now();
+
+    public enum Type {
+        ISSUE,
+        REDEEM,
+        REFUND,
+        EXPIRE
+    }
+}
@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 
 @Entity
 @Table(name = "merchants")
@@ -25,5 +26,15 @@ public class Merchant {
 
     @Column(nullable = false)
     private Long ownerId; // foreign key to User
+
+    // Only ever bumped in SQL by catalog writes (see CatalogService); never written back from here
+    @ColumnDefault("0")
+    @Column(nullable = false, updatable = false)
+    private Long catalogVersion = 0L;
+
+    // Oldest version the change feed can still bring a terminal forward from, see CatalogChangeRepository
+    @ColumnDefault("0")
+    @Column(nullable = false, updatable = false)
+    private Long catalogFeedFloor = 0L;
 }
 
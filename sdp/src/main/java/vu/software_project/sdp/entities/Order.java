@@ -3,26 +3,36 @@ package vu.software_project.sdp.entities;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.math.BigDecimal;
 
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Entity
-@Table(name = "orders")
+@Table(
+        name = "orders",
+        indexes = {
+                @Index(name = "idx_orders_paid_at", columnList = "paid_at"),
+                @Index(name = "idx_orders_cancelled_at", columnList = "cancelled_at")
+        }
+)
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 public class Order {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SequenceGenerator(name = "orders_seq", sequenceName = "orders_seq", allocationSize = 50)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orders_seq")
     private Long id;
 
     @Column(nullable = false)
@@ -35,6 +45,9 @@ public class Order {
     @Column(name = "discount_id")
     private String discountId;
 
+    @Column(name = "applied_discount_id")
+    private String appliedDiscountId;
+
     @Column(precision = 10, scale = 2)
     private BigDecimal appliedDiscountAmount = BigDecimal.ZERO;
 
@@ -44,6 +57,20 @@ public class Order {
     @OneToMany(mappedBy = "orderId", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Payment> payments = new ArrayList<>();
 
+    // Limited discounts already counted against their redemption limits for this order
+    @ElementCollection
+    @CollectionTable(name = "order_redeemed_discounts", joinColumns = @JoinColumn(name = "order_id"))
+    @Column(name = "discount_id")
+    @JsonIgnore
+    private Set<String> redeemedDiscountIds = new HashSet<>();
+
+    // When the order became PAID and CANCELLED; daily sales rollups count it on these days
+    @Column(name = "paid_at")
+    private OffsetDateTime paidAt;
+
+    @Column(name = "cancelled_at")
+    private OffsetDateTime cancelledAt;
+
     @CreationTimestamp
     @Column(nullable = false, updatable = false)
     private OffsetDateTime createdAt;
@@ -24,7 +24,8 @@ import lombok.NoArgsConstructor;
 public class OrderItem {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SequenceGenerator(name = "order_items_seq", sequenceName = "order_items_seq", allocationSize = 50)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_items_seq")
     private Long id;
 
     @ManyToOne
@@ -43,6 +44,9 @@ public class OrderItem {
 
     private String discountId;
 
+    // The discount behind appliedDiscountAmount: the code above or an automatic one
+    private String appliedDiscountId;
+
     @Column(precision = 10, scale = 2)
     private BigDecimal appliedDiscountAmount = BigDecimal.ZERO;
 
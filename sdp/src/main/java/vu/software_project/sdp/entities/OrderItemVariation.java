@@ -21,7 +21,8 @@ import lombok.NoArgsConstructor;
 public class OrderItemVariation {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SequenceGenerator(name = "order_item_variations_seq", sequenceName = "order_item_variations_seq", allocationSize = 50)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_item_variations_seq")
     private Long id;
 
     @ManyToOne
@@ -9,14 +9,21 @@ import java.math.BigDecimal;
 import java.time.OffsetDateTime;
 
 @Entity
-@Table(name = "payments")
+@Table(
+        name = "payments",
+        indexes = {
+                @Index(name = "idx_payments_created_at", columnList = "created_at"),
+                @Index(name = "idx_payments_succeeded_at", columnList = "succeeded_at")
+        }
+)
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 public class Payment {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SequenceGenerator(name = "payments_seq", sequenceName = "payments_seq", allocationSize = 50)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payments_seq")
     private Long id;
 
     @Column(nullable = false)
@@ -38,16 +45,23 @@ public class Payment {
     @Column(nullable = false, precision = 12, scale = 2)
     private BigDecimal tip;
 
+    @Column(length = 40)
+    private String giftCardCode; //For gift card
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private Status status;
 
-    @Column(nullable = false)
+    @Column(name = "created_at", nullable = false)
     private OffsetDateTime createdAt;
 
     @Column(nullable = false)
     private OffsetDateTime updatedAt;
 
+    // When the money was taken; a card payment succeeds some time after it was created
+    @Column(name = "succeeded_at")
+    private OffsetDateTime succeededAt;
+
     public enum PaymentType {
         CASH,
         GIFT_CARD,
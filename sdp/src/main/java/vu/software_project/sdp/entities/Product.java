@@ -8,13 +8,16 @@ import java.math.BigDecimal;
 import java.util.List;
 
 @Entity
+// Per-merchant unique SKU and barcode indexes are created in schema.sql
 @Table(name = "products")
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 public class Product {
+    // Shares item_id_seq with ServiceItem, so an item id is unique across both tables
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SequenceGenerator(name = "item_id_seq", sequenceName = "item_id_seq", allocationSize = 50)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "item_id_seq")
     private Long id;
 
     @Column(nullable = false)
@@ -28,6 +31,13 @@ public class Product {
 
     private String taxRateId; // NOJUS STUFF
 
+    // Both unique per merchant across products and variations, see ProductService
+    @Column(length = 64)
+    private String sku;
+
+    @Column(length = 64)
+    private String barcode;
+
     @OneToMany(mappedBy = "productId", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<ProductVariation> variations;
 }
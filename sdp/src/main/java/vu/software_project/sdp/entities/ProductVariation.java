@@ -7,13 +7,20 @@ import lombok.NoArgsConstructor;
 import java.math.BigDecimal;
 
 @Entity
-@Table(name = "product_variations")
+@Table(
+        name = "product_variations",
+        indexes = {
+                @Index(name = "idx_product_variations_barcode", columnList = "barcode"),
+                @Index(name = "idx_product_variations_sku", columnList = "sku")
+        }
+)
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 public class ProductVariation {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SequenceGenerator(name = "product_variations_seq", sequenceName = "product_variations_seq", allocationSize = 50)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_variations_seq")
     private Long id;
 
     @Column(nullable = false)
@@ -23,4 +30,10 @@ public class ProductVariation {
 
     @Column(nullable = false)
     private Long productId; // foreign key to Product
+
+    @Column(length = 64)
+    private String sku;
+
+    @Column(length = 64)
+    private String barcode;
 }
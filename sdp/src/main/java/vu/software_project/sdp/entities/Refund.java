@@ -7,12 +7,13 @@ import java.math.BigDecimal;
 import java.time.OffsetDateTime;
 
 @Entity
-@Table(name = "refunds")
+@Table(name = "refunds", indexes = @Index(name = "idx_refunds_completed_at", columnList = "completed_at"))
 @Data
 public class Refund {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SequenceGenerator(name = "refunds_seq", sequenceName = "refunds_seq", allocationSize = 50)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "refunds_seq")
     private Long id;
 
     @Column(nullable = false)
@@ -31,6 +32,9 @@ public class Refund {
     @Column(nullable = false)
     private OffsetDateTime createdAt;
 
+    @Column(name = "completed_at")
+    private OffsetDateTime completedAt;
+
     public enum RefundStatus {
         PROCESSING,
         COMPLETED,
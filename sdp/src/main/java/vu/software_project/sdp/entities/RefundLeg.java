@@ -0,0 +1,68 @@
+package vu.software_project.sdp.entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+/**
+ * One payment being paid back as part of a {@link Refund}.
+ */
+@Entity
+@Table(
+        name = "refund_legs",
+        indexes = @Index(name = "idx_refund_legs_refund_id", columnList = "refund_id")
+)
+@Data
+@NoArgsConstructor
+public class RefundLeg {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    private Long id;
+
+    @Column(name = "refund_id", nullable = false)
+    private Long refundId;
+
+    @Column(nullable = false)
+    private Long paymentId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Payment.PaymentType paymentType;
+
+    @Column(nullable = false, precision = 12, scale = 2)
+    private BigDecimal amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+
+    private String stripeRefundId;
+
+    @Column(length = 500)
+    private String failureReason;
+
+    // Part of the gateway idempotency key; bumped when a failed leg is retried, see RefundProcessor
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Integer attempt = 0;
+
+    // When a processor last queued this leg; while recent, no other dispatch picks it up
+    private OffsetDateTime dispatchedAt;
+
+    @Column(nullable = false)
+    private OffsetDateTime createdAt;
+
+    @Column(nullable = false)
+    private OffsetDateTime updatedAt;
+
+    public enum Status {
+        PENDING,
+        COMPLETED,
+        FAILED
+    }
+}
@@ -7,13 +7,21 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "reservations")
+@Table(
+        name = "reservations",
+        indexes = {
+                @Index(name = "idx_reservations_merchant_time", columnList = "merchant_id, appointment_time"),
+                @Index(name = "idx_reservations_employee_time_status", columnList = "employee_id, appointment_time, status"),
+                @Index(name = "idx_reservations_merchant_updated", columnList = "merchant_id, updated_at")
+        }
+)
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 public class Reservation {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SequenceGenerator(name = "reservations_seq", sequenceName = "reservations_seq", allocationSize = 50)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "reservations_seq")
     private Long id;
 
     @Column(nullable = false)
@@ -33,9 +41,19 @@ public class Reservation {
     @Column(nullable = false)
     private LocalDateTime appointmentTime;
 
+    // Exclusive; overlapping CONFIRMED ranges of one employee are rejected by the database (see schema.sql).
+    // Left nullable here so the column can be added to existing rows; schema.sql backfills it and sets NOT NULL
+    private LocalDateTime endTime;
+
     @Column(nullable = false)
     private LocalDateTime createdAt;
 
+    // Set when the reservation is an occurrence of a ReservationSeries
+    private Long seriesId;
+
+    // Bumped on every change; drives the calendar ETag
+    private LocalDateTime updatedAt;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private Status status;
@@ -0,0 +1,65 @@
+package vu.software_project.sdp.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// A recurring booking; its occurrences are ordinary reservations pointing back via seriesId
+@Entity
+@Table(name = "reservation_series")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReservationSeries {
+    @Id
+    @SequenceGenerator(name = "reservation_series_seq", sequenceName = "reservation_series_seq", allocationSize = 50)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "reservation_series_seq")
+    private Long id;
+
+    @Column(nullable = false)
+    private Long merchantId;
+
+    @Column(nullable = false)
+    private Long serviceId;
+
+    @Column(nullable = false)
+    private Long employeeId;
+
+    @Column(nullable = false)
+    private String customerName;
+
+    private String customerContact;
+
+    @Column(nullable = false)
+    private LocalDateTime firstAppointmentTime;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Frequency frequency;
+
+    private Integer occurrenceCount;
+
+    private LocalDate untilDate;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    public enum Frequency {
+        WEEKLY(1),
+        BIWEEKLY(2);
+
+        private final int weeks;
+
+        Frequency(int weeks) {
+            this.weeks = weeks;
+        }
+
+        public int getWeeks() {
+            return weeks;
+        }
+    }
+}
@@ -5,6 +5,7 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 import java.math.BigDecimal;
 
 @Entity
@@ -13,8 +14,10 @@ import java.math.BigDecimal;
 @AllArgsConstructor
 @NoArgsConstructor
 public class ServiceItem {
+    // Shares item_id_seq with Product, so an item id is unique across both tables
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SequenceGenerator(name = "item_id_seq", sequenceName = "item_id_seq", allocationSize = 50)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "item_id_seq")
     private Long id;
 
     @Column(nullable = false)
@@ -27,4 +30,11 @@ public class ServiceItem {
     private Long merchantId; // foreign key to Merchant
 
     private String taxRateId; // NOJUS STUFF
+
+    // Length of a reservation for this service
+    @ColumnDefault("60")
+    @Column(nullable = false)
+    private Integer durationMinutes = DEFAULT_DURATION_MINUTES;
+
+    public static final int DEFAULT_DURATION_MINUTES = 60;
 }
@@ -0,0 +1,43 @@
+package vu.software_project.sdp.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+
+/**
+ * Last saved state of a merchant's in-memory top items summary for one day, as a JSON array of
+ * {@code [itemId, name, count, error]}. Restored on startup so a restart keeps the day's board.
+ */
+@Entity
+@Table(name = "top_item_checkpoints")
+@IdClass(TopItemCheckpoint.Key.class)
+@Data
+@NoArgsConstructor
+public class TopItemCheckpoint {
+
+    @Id
+    @Column(name = "merchant_id")
+    private Long merchantId;
+
+    @Id
+    private LocalDate day;
+
+    @Column(nullable = false, columnDefinition = "text")
+    private String items;
+
+    @Column(nullable = false)
+    private OffsetDateTime savedAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long merchantId;
+        private LocalDate day;
+    }
+}
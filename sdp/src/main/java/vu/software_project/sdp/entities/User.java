@@ -2,9 +2,11 @@ package vu.software_project.sdp.entities;
 
 import jakarta.persistence.*;
 import lombok.*;
+import vu.software_project.sdp.services.StaffChangeListener;
 
 @Entity
 @Table(name = "users")
+@EntityListeners(StaffChangeListener.class)
 @Getter
 @Setter
 @AllArgsConstructor
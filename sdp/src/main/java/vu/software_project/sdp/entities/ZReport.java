@@ -0,0 +1,134 @@
+package vu.software_project.sdp.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * End-of-day close-out of one merchant. Each report covers the time since the previous one, so a
+ * shift or a day is closed exactly once; the figures are a snapshot and never change afterwards,
+ * even if orders in the period are refunded or corrected later.
+ */
+@Entity
+@Immutable
+@Table(
+        name = "z_reports",
+        uniqueConstraints = @UniqueConstraint(name = "uk_z_reports_merchant_period_start", columnNames = {"merchant_id", "period_start"}),
+        indexes = @Index(name = "idx_z_reports_merchant_day", columnList = "merchant_id, business_day")
+)
+@Data
+@NoArgsConstructor
+public class ZReport {
+
+    @Id
+    @SequenceGenerator(name = "z_reports_seq", sequenceName = "z_reports_seq", allocationSize = 50)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "z_reports_seq")
+    private Long id;
+
+    @Column(name = "merchant_id", nullable = false)
+    private Long merchantId;
+
+    // Day of periodEnd in the reporting zone
+    @Column(name = "business_day", nullable = false)
+    private LocalDate businessDay;
+
+    @Column(name = "period_start", nullable = false)
+    private OffsetDateTime periodStart;
+
+    @Column(name = "period_end", nullable = false)
+    private OffsetDateTime periodEnd;
+
+    private Long closedBy;
+
+    // Orders paid in the period
+    @Column(nullable = false)
+    private int ordersPaid;
+
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal grossSales;
+
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal discounts;
+
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal tax;
+
+    // Payments taken in the period, by tender
+    @Column(nullable = false)
+    private int cashPayments;
+
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal cashReceived;
+
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal changeGiven;
+
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal cashTips;
+
+    @Column(nullable = false)
+    private int cardPayments;
+
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal cardTotal;
+
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal cardTips;
+
+    @Column(nullable = false)
+    private int giftCardPayments;
+
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal giftCardRedemptions;
+
+    // Refunds completed in the period, and the part of them paid out in cash
+    @Column(nullable = false)
+    private int refundsCount;
+
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal refunds;
+
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal cashRefunds;
+
+    // cashReceived - changeGiven - cashRefunds
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal cashExpected;
+
+    @ElementCollection
+    @CollectionTable(name = "z_report_taxes", joinColumns = @JoinColumn(name = "z_report_id"))
+    @OrderBy("taxRateId")
+    private List<TaxLine> taxes = new ArrayList<>();
+
+    @Column(nullable = false)
+    private OffsetDateTime createdAt;
+
+    @Embeddable
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class TaxLine {
+        @Column(name = "tax_rate_id", nullable = false)
+        private String taxRateId;
+
+        @Column(nullable = false)
+        private String name;
+
+        @Column(nullable = false, precision = 10, scale = 4)
+        private BigDecimal rate;
+
+        @Column(nullable = false, precision = 14, scale = 2)
+        private BigDecimal taxable;
+
+        @Column(nullable = false, precision = 14, scale = 2)
+        private BigDecimal tax;
+    }
+}
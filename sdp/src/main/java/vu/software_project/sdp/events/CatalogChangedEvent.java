@@ -0,0 +1,12 @@
+package vu.software_project.sdp.events;
+
+import lombok.Value;
+
+/**
+ * Published inside a catalog write; {@code version} is the merchant's catalog version after that write.
+ */
+@Value
+public class CatalogChangedEvent {
+    Long merchantId;
+    long version;
+}
@@ -0,0 +1,11 @@
+package vu.software_project.sdp.events;
+
+import lombok.Value;
+
+/**
+ * Published when a refund and its legs have been recorded and are ready to be sent to the gateways.
+ */
+@Value
+public class RefundRequestedEvent {
+    Long refundId;
+}
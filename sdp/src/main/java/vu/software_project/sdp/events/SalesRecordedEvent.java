@@ -0,0 +1,48 @@
+package vu.software_project.sdp.events;
+
+import lombok.Builder;
+import lombok.Value;
+import vu.software_project.sdp.entities.Payment;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Published inside the transaction that paid, cancelled or refunded an order; carries what that
+ * adds to the merchant's daily sales rollup for {@code day}.
+ */
+@Value
+@Builder
+public class SalesRecordedEvent {
+    Long merchantId;
+    LocalDate day;
+    int ordersPaid;
+    int ordersCancelled;
+    int ordersRefunded;
+    @Builder.Default BigDecimal grossSales = BigDecimal.ZERO;
+    @Builder.Default BigDecimal discounts = BigDecimal.ZERO;
+    @Builder.Default BigDecimal tax = BigDecimal.ZERO;
+    @Builder.Default BigDecimal tips = BigDecimal.ZERO;
+    @Builder.Default BigDecimal refunds = BigDecimal.ZERO;
+    @Builder.Default Map<String, BigDecimal> taxByRate = Map.of();
+    @Builder.Default List<Tender> tenders = List.of();
+    // Quantities per catalog item on a paid order
+    @Builder.Default List<ItemSold> items = List.of();
+
+    @Value
+    public static class Tender {
+        Payment.PaymentType paymentType;
+        int count;
+        BigDecimal amount;
+        BigDecimal tips;
+    }
+
+    @Value
+    public static class ItemSold {
+        Long itemId;
+        String name;
+        long quantity;
+    }
+}
@@ -0,0 +1,47 @@
+package vu.software_project.sdp.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import vu.software_project.sdp.entities.CatalogChange;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+@Repository
+public interface CatalogChangeRepository extends JpaRepository<CatalogChange, Long> {
+
+    List<CatalogChange> findByMerchantIdAndVersionGreaterThanAndVersionLessThanEqualOrderByVersionAsc(
+            Long merchantId, Long since, Long upTo);
+
+    // Only the newest entry per entity matters to a terminal catching up, older ones can go
+    @Modifying
+    @Query(value = """
+            DELETE FROM catalog_changes c
+            WHERE EXISTS (
+                SELECT 1 FROM catalog_changes n
+                WHERE n.merchant_id = c.merchant_id
+                  AND n.entity_type = c.entity_type
+                  AND n.entity_id = c.entity_id
+                  AND n.version > c.version
+            )
+            """, nativeQuery = true)
+    int deleteSuperseded();
+
+    // Terminals that last synced before a purged tombstone could miss that delete, so they must resync
+    @Modifying
+    @Query(value = """
+            WITH purged AS (
+                DELETE FROM catalog_changes
+                WHERE deleted AND changed_at < :cutoff
+                RETURNING merchant_id, version
+            )
+            UPDATE merchants m
+            SET catalog_feed_floor = GREATEST(m.catalog_feed_floor, p.version)
+            FROM (SELECT merchant_id, max(version) AS version FROM purged GROUP BY merchant_id) p
+            WHERE m.id = p.merchant_id
+            """, nativeQuery = true)
+    int purgeTombstonesBefore(@Param("cutoff") OffsetDateTime cutoff);
+}
@@ -0,0 +1,11 @@
+package vu.software_project.sdp.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import vu.software_project.sdp.entities.DailySalesRollup;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface DailySalesRollupRepository extends JpaRepository<DailySalesRollup, DailySalesRollup.Key> {
+    List<DailySalesRollup> findByMerchantIdAndDayBetweenOrderByDayAsc(Long merchantId, LocalDate from, LocalDate to);
+}
@@ -0,0 +1,11 @@
+package vu.software_project.sdp.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import vu.software_project.sdp.entities.DailyTaxRollup;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface DailyTaxRollupRepository extends JpaRepository<DailyTaxRollup, DailyTaxRollup.Key> {
+    List<DailyTaxRollup> findByMerchantIdAndDayBetweenOrderByDayAsc(Long merchantId, LocalDate from, LocalDate to);
+}
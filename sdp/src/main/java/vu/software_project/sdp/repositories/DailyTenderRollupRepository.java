@@ -0,0 +1,11 @@
+package vu.software_project.sdp.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import vu.software_project.sdp.entities.DailyTenderRollup;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface DailyTenderRollupRepository extends JpaRepository<DailyTenderRollup, DailyTenderRollup.Key> {
+    List<DailyTenderRollup> findByMerchantIdAndDayBetweenOrderByDayAsc(Long merchantId, LocalDate from, LocalDate to);
+}
@@ -1,8 +1,11 @@
 package vu.software_project.sdp.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import vu.software_project.sdp.entities.GiftCard;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,4 +16,112 @@ public interface GiftCardRepository extends JpaRepository<GiftCard, String> {
     Optional<GiftCard> findByCodeAndMerchantId(String code, Long merchantId);
 
     boolean existsByCodeAndMerchantId(String code, Long merchantId);
+
+    // Result of an atomic redemption: the amount taken off the card and what is left on it
+    interface Redemption {
+        BigDecimal getCharged();
+        BigDecimal getBalance();
+    }
+
+    // Deducts exactly :amount, or touches nothing if the card cannot cover it
+    @Query(value = """
+            UPDATE gift_cards
+            SET current_balance = current_balance - :amount,
+                active = current_balance - :amount > 0
+            WHERE code = :code
+              AND merchant_id = :merchantId
+              AND active
+              AND (expiry_date IS NULL OR expiry_date > now())
+              AND current_balance >= :amount
+            RETURNING :amount AS charged, current_balance AS balance
+            """, nativeQuery = true)
+    Optional<Redemption> deductIfSufficient(
+            @Param("merchantId") Long merchantId,
+            @Param("code") String code,
+            @Param("amount") BigDecimal amount
+    );
+
+    // Deducts min(balance, :maxAmount). The row lock in the CTE makes the balance we read the one we update;
+    // it is the same no-key lock the UPDATE takes, so it does not wait for credits holding a key-share lock.
+    @Query(value = """
+            WITH locked AS (
+                SELECT code, current_balance
+                FROM gift_cards
+                WHERE code = :code
+                  AND merchant_id = :merchantId
+                  AND active
+                  AND (expiry_date IS NULL OR expiry_date > now())
+                  AND current_balance > 0
+                FOR NO KEY UPDATE
+            )
+            UPDATE gift_cards g
+            SET current_balance = g.current_balance - LEAST(locked.current_balance, :maxAmount),
+                active = locked.current_balance > :maxAmount
+            FROM locked
+            WHERE g.code = locked.code
+            RETURNING LEAST(locked.current_balance, :maxAmount) AS charged, g.current_balance AS balance
+            """, nativeQuery = true)
+    Optional<Redemption> deductUpTo(
+            @Param("merchantId") Long merchantId,
+            @Param("code") String code,
+            @Param("maxAmount") BigDecimal maxAmount
+    );
+
+    // Key-share lock: blocks compaction of this card until the credit commits, but not redemptions
+    @Query(value = "SELECT code FROM gift_cards WHERE code = :code AND merchant_id = :merchantId FOR KEY SHARE",
+            nativeQuery = true)
+    Optional<String> lockForCredit(@Param("merchantId") Long merchantId, @Param("code") String code);
+
+    // Waits for in-flight credits on this card to commit
+    @Query(value = "SELECT code FROM gift_cards WHERE code = :code FOR UPDATE", nativeQuery = true)
+    Optional<String> lockForCompaction(@Param("code") String code);
+
+    // Credits folded by one call; voided when the card expired before they could be used
+    interface FoldedCredits {
+        Long getMerchantId();
+        BigDecimal getAmount();
+        boolean isVoided();
+    }
+
+    @Query(value = """
+            WITH pending AS (
+                SELECT SUM(t.amount) AS total, MAX(t.id) AS last_id,
+                       bool_or(c.expiry_date IS NOT NULL AND c.expiry_date <= now()) AS expired
+                FROM gift_card_transactions t
+                JOIN gift_cards c ON c.code = t.gift_card_code
+                WHERE t.gift_card_code = :code
+                  AND t.type = 'REFUND'
+                  AND t.id > COALESCE(c.credited_through_id, 0)
+            )
+            UPDATE gift_cards g
+            SET current_balance = CASE WHEN p.expired THEN g.current_balance ELSE g.current_balance + p.total END,
+                credited_through_id = p.last_id,
+                active = NOT p.expired AND g.current_balance + p.total > 0
+            FROM pending p
+            WHERE g.code = :code AND p.last_id IS NOT NULL
+            RETURNING g.merchant_id AS "merchantId", p.total AS amount, p.expired AS voided
+            """, nativeQuery = true)
+    Optional<FoldedCredits> foldPendingCredits(@Param("code") String code);
+
+    interface Expiry {
+        String getCode();
+        Long getMerchantId();
+        BigDecimal getAmount();
+    }
+
+    @Query(value = """
+            WITH due AS (
+                SELECT code, current_balance
+                FROM gift_cards
+                WHERE active AND expiry_date <= now()
+                FOR UPDATE SKIP LOCKED
+            )
+            UPDATE gift_cards g
+            SET current_balance = 0,
+                active = false
+            FROM due
+            WHERE g.code = due.code
+            RETURNING g.code AS code, g.merchant_id AS "merchantId", due.current_balance AS amount
+            """, nativeQuery = true)
+    List<Expiry> expireDueCards();
 }
@@ -0,0 +1,41 @@
+package vu.software_project.sdp.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import vu.software_project.sdp.entities.GiftCardTransaction;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public interface GiftCardTransactionRepository extends JpaRepository<GiftCardTransaction, Long> {
+
+    List<GiftCardTransaction> findByGiftCardCodeAndMerchantIdOrderByIdAsc(String giftCardCode, Long merchantId);
+
+    interface PendingCredit {
+        String getCode();
+        BigDecimal getAmount();
+    }
+
+    // Refund credits not yet folded into gift_cards.current_balance; those on expired cards will be voided
+    @Query(value = """
+            SELECT t.gift_card_code AS code, SUM(t.amount) AS amount
+            FROM gift_card_transactions t
+            JOIN gift_cards g ON g.code = t.gift_card_code
+            WHERE g.merchant_id = :merchantId
+              AND t.type = 'REFUND'
+              AND t.id > COALESCE(g.credited_through_id, 0)
+              AND (g.expiry_date IS NULL OR g.expiry_date > now())
+            GROUP BY t.gift_card_code
+            """, nativeQuery = true)
+    List<PendingCredit> findPendingCreditsByMerchantId(@Param("merchantId") Long merchantId);
+
+    @Query(value = """
+            SELECT DISTINCT t.gift_card_code
+            FROM gift_card_transactions t
+            JOIN gift_cards g ON g.code = t.gift_card_code
+            WHERE t.type = 'REFUND'
+              AND t.id > COALESCE(g.credited_through_id, 0)
+            """, nativeQuery = true)
+    List<String> findCodesWithPendingCredits();
+}
@@ -1,9 +1,33 @@
 package vu.software_project.sdp.repositories;
 
-import vu.software_project.sdp.entities.Merchant;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import vu.software_project.sdp.entities.Merchant;
+
+import java.util.Optional;
 
 @Repository
 public interface MerchantRepository extends JpaRepository<Merchant, Long> {
+
+    interface CatalogState {
+        long getVersion();
+        long getFeedFloor();
+    }
+
+    // Row lock held until commit, so versions are handed out in commit order
+    @Query(value = "UPDATE merchants SET catalog_version = catalog_version + 1 WHERE id = :merchantId RETURNING catalog_version",
+            nativeQuery = true)
+    Optional<Long> bumpCatalogVersion(@Param("merchantId") Long merchantId);
+
+    // The row lock bumpCatalogVersion takes, held until commit; serializes a merchant's SKU and barcode checks
+    @Query(value = "SELECT id FROM merchants WHERE id = :merchantId FOR NO KEY UPDATE", nativeQuery = true)
+    Optional<Long> lockForCatalogWrite(@Param("merchantId") Long merchantId);
+
+    @Query("SELECT m.catalogVersion FROM Merchant m WHERE m.id = :merchantId")
+    Optional<Long> findCatalogVersion(@Param("merchantId") Long merchantId);
+
+    @Query("SELECT m.catalogVersion AS version, m.catalogFeedFloor AS feedFloor FROM Merchant m WHERE m.id = :merchantId")
+    Optional<CatalogState> findCatalogState(@Param("merchantId") Long merchantId);
 }
@@ -2,7 +2,11 @@ package vu.software_project.sdp.repositories;
 
 import vu.software_project.sdp.entities.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,4 +19,61 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     
     //  Check if product exists for the specified merchant
     boolean existsByIdAndMerchantId(Long id, Long merchantId);
+
+    interface ItemRow {
+        String getType();
+        Long getId();
+        String getName();
+        BigDecimal getPrice();
+        String getTaxRateId();
+        Integer getDurationMinutes(); // null for products
+        String getSku(); // null for service items
+        String getBarcode(); // null for service items
+    }
+
+    // The item with this id in either of the two item tables of the merchant, as one round trip over both primary keys
+    @Query(value = """
+            SELECT 'PRODUCT' AS "type", p.id, p.name, p.price, p.tax_rate_id AS "taxRateId",
+                   CAST(NULL AS integer) AS "durationMinutes", p.sku, p.barcode
+            FROM products p WHERE p.id = :id AND p.merchant_id = :merchantId
+            UNION ALL
+            SELECT 'SERVICE_ITEM', s.id, s.name, s.price, s.tax_rate_id, s.duration_minutes, NULL, NULL
+            FROM services s WHERE s.id = :id AND s.merchant_id = :merchantId
+            """, nativeQuery = true)
+    List<ItemRow> findItems(@Param("id") Long id, @Param("merchantId") Long merchantId);
+
+    interface CodeOwner {
+        Long getProductId();
+        Long getVariationId(); // null for the product itself
+        String getSku();
+        String getBarcode();
+    }
+
+    // Every SKU and barcode of the merchant, on products and variations alike, products before their variations
+    @Query(value = """
+            SELECT p.id AS "productId", CAST(NULL AS bigint) AS "variationId", p.sku, p.barcode
+            FROM products p
+            WHERE p.merchant_id = :merchantId AND (p.sku IS NOT NULL OR p.barcode IS NOT NULL)
+            UNION ALL
+            SELECT v.product_id, v.id, v.sku, v.barcode
+            FROM product_variations v JOIN products p ON p.id = v.product_id
+            WHERE p.merchant_id = :merchantId AND (v.sku IS NOT NULL OR v.barcode IS NOT NULL)
+            ORDER BY 1, 2 NULLS FIRST
+            """, nativeQuery = true)
+    List<CodeOwner> findCodes(@Param("merchantId") Long merchantId);
+
+    @Query(value = """
+            SELECT p.id AS "productId", CAST(NULL AS bigint) AS "variationId", p.sku, p.barcode
+            FROM products p
+            WHERE p.merchant_id = :merchantId
+              AND (p.sku = CAST(:sku AS varchar) OR p.barcode = CAST(:barcode AS varchar))
+            UNION ALL
+            SELECT v.product_id, v.id, v.sku, v.barcode
+            FROM product_variations v JOIN products p ON p.id = v.product_id
+            WHERE p.merchant_id = :merchantId
+              AND (v.sku = CAST(:sku AS varchar) OR v.barcode = CAST(:barcode AS varchar))
+            """, nativeQuery = true)
+    List<CodeOwner> findCodeOwners(@Param("merchantId") Long merchantId,
+                                   @Param("sku") String sku,
+                                   @Param("barcode") String barcode);
 }
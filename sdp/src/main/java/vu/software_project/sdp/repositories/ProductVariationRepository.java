@@ -3,9 +3,12 @@ package vu.software_project.sdp.repositories;
 import vu.software_project.sdp.entities.ProductVariation;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface ProductVariationRepository extends JpaRepository<ProductVariation, Long> {
     List<ProductVariation> findByProductId(Long productId);
+
+    List<ProductVariation> findByProductIdIn(Collection<Long> productIds);
 }
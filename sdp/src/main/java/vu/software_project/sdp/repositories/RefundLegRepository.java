@@ -0,0 +1,25 @@
+package vu.software_project.sdp.repositories;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import vu.software_project.sdp.entities.RefundLeg;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface RefundLegRepository extends JpaRepository<RefundLeg, Long> {
+    List<RefundLeg> findByRefundIdOrderByIdAsc(Long refundId);
+    List<RefundLeg> findByRefundIdAndStatus(Long refundId, RefundLeg.Status status);
+
+    // A second dispatch of the same leg waits here and then sees it is no longer PENDING
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT l FROM RefundLeg l WHERE l.id = :id")
+    Optional<RefundLeg> findByIdForUpdate(@Param("id") Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT l FROM RefundLeg l WHERE l.refundId = :refundId AND l.status = :status ORDER BY l.id")
+    List<RefundLeg> findByRefundIdAndStatusForUpdate(@Param("refundId") Long refundId, @Param("status") RefundLeg.Status status);
+}
@@ -1,10 +1,22 @@
 package vu.software_project.sdp.repositories;
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import vu.software_project.sdp.entities.Refund;
 
+import java.time.OffsetDateTime;
+import java.util.List;
 import java.util.Optional;
 
 public interface RefundRepository extends JpaRepository<Refund, Long> {
     Optional<Refund> findByOrderId(Long orderId);
+    List<Refund> findByStatus(Refund.RefundStatus status);
+    List<Refund> findByStatusAndCreatedAtBefore(Refund.RefundStatus status, OffsetDateTime createdAt);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM Refund r WHERE r.id = :id")
+    Optional<Refund> findByIdForUpdate(@Param("id") Long id);
 }
@@ -1,14 +1,42 @@
 package vu.software_project.sdp.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import vu.software_project.sdp.entities.Reservation;
 import vu.software_project.sdp.entities.Reservation.Status;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface ReservationRepository extends JpaRepository<Reservation, Long> {
+
+    interface ChangeMarker {
+        long getLastChange(); // microseconds since the epoch, 0 without reservations
+        long getCount();
+        long getCatalogVersion();
+        long getStaffNames(); // hash over the ids and names of the merchant's users
+    }
+
+    interface ListingRow {
+        Long getId();
+        Long getServiceId();
+        String getServiceName();
+        Long getEmployeeId();
+        String getEmployeeName();
+        String getCustomerName();
+        String getCustomerContact();
+        LocalDateTime getAppointmentTime();
+        LocalDateTime getEndTime();
+        LocalDateTime getBookedAt();
+        Status getStatus();
+    }
+
     List<Reservation> findByMerchantIdOrderByAppointmentTimeAsc(Long merchantId);
 
     List<Reservation> findByMerchantIdAndAppointmentTimeBetweenOrderByAppointmentTimeAsc(
@@ -17,6 +45,61 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
             LocalDateTime end
     );
 
+    @Query("""
+            SELECT r.id AS id, r.serviceId AS serviceId, s.name AS serviceName,
+                   r.employeeId AS employeeId, u.name AS employeeName,
+                   r.customerName AS customerName, r.customerContact AS customerContact,
+                   r.appointmentTime AS appointmentTime, r.endTime AS endTime,
+                   r.createdAt AS bookedAt, r.status AS status
+            FROM Reservation r
+            LEFT JOIN ServiceItem s ON s.id = r.serviceId
+            LEFT JOIN User u ON u.id = r.employeeId
+            WHERE r.merchantId = :merchantId AND r.appointmentTime BETWEEN :start AND :end
+            ORDER BY r.appointmentTime
+            """)
+    List<ListingRow> findListingByMerchantIdAndAppointmentTimeBetween(
+            @Param("merchantId") Long merchantId,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end
+    );
+
+    // Everything the calendar shows: the reservations, and the service and employee names joined to them.
+    // Services bump the catalog version when they change; users have no change marker, so their names are hashed
+    @Query(value = """
+            SELECT (SELECT COALESCE(CAST(EXTRACT(EPOCH FROM max(r.updated_at)) * 1000000 AS bigint), 0)
+                    FROM reservations r WHERE r.merchant_id = :merchantId) AS "lastChange",
+                   (SELECT count(*) FROM reservations r WHERE r.merchant_id = :merchantId) AS "count",
+                   (SELECT COALESCE(max(m.catalog_version), 0) FROM merchants m WHERE m.id = :merchantId) AS "catalogVersion",
+                   (SELECT COALESCE(sum(hashtext(u.id || ':' || COALESCE(u.name, ''))), 0)
+                    FROM users u WHERE u.merchant_id = :merchantId) AS "staffNames"
+            """, nativeQuery = true)
+    ChangeMarker findChangeMarker(@Param("merchantId") Long merchantId);
+
+    // Range is [start, end); employee and service filters are optional
+    @Query("""
+            SELECT r.id AS id, r.serviceId AS serviceId, s.name AS serviceName,
+                   r.employeeId AS employeeId, u.name AS employeeName,
+                   r.customerName AS customerName, r.customerContact AS customerContact,
+                   r.appointmentTime AS appointmentTime, r.endTime AS endTime,
+                   r.createdAt AS bookedAt, r.status AS status
+            FROM Reservation r
+            LEFT JOIN ServiceItem s ON s.id = r.serviceId
+            LEFT JOIN User u ON u.id = r.employeeId
+            WHERE r.merchantId = :merchantId
+              AND r.appointmentTime >= :start AND r.appointmentTime < :end
+              AND (:employeeId IS NULL OR r.employeeId = :employeeId)
+              AND (:serviceId IS NULL OR r.serviceId = :serviceId)
+            ORDER BY r.appointmentTime, r.employeeId
+            """)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<ListingRow> streamCalendar(
+            @Param("merchantId") Long merchantId,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end,
+            @Param("employeeId") Long employeeId,
+            @Param("serviceId") Long serviceId
+    );
+
     List<Reservation> findByEmployeeIdAndAppointmentTimeAndStatus(
             Long employeeId,
             LocalDateTime appointmentTime,
@@ -29,4 +112,19 @@ public interface ReservationRepository extends JpaRepository<Reservation, Long>
             LocalDateTime end,
             Status status
     );
+
+    List<Reservation> findByEmployeeIdAndStatusAndAppointmentTimeLessThanAndEndTimeGreaterThanOrderByAppointmentTimeAsc(
+            Long employeeId,
+            Status status,
+            LocalDateTime end,
+            LocalDateTime start
+    );
+
+    // Reservations overlapping [start, end)
+    List<Reservation> findByMerchantIdAndStatusAndAppointmentTimeLessThanAndEndTimeGreaterThan(
+            Long merchantId,
+            Status status,
+            LocalDateTime end,
+            LocalDateTime start
+    );
 }
\ No newline at end of file
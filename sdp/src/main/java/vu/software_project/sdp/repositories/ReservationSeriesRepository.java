@@ -0,0 +1,9 @@
+package vu.software_project.sdp.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import vu.software_project.sdp.entities.ReservationSeries;
+
+@Repository
+public interface ReservationSeriesRepository extends JpaRepository<ReservationSeries, Long> {
+}
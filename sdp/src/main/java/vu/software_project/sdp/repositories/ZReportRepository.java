@@ -0,0 +1,14 @@
+package vu.software_project.sdp.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import vu.software_project.sdp.entities.ZReport;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+public interface ZReportRepository extends JpaRepository<ZReport, Long> {
+    Optional<ZReport> findFirstByMerchantIdOrderByPeriodEndDesc(Long merchantId);
+
+    List<ZReport> findByMerchantIdAndBusinessDayBetweenOrderByPeriodStartAsc(Long merchantId, LocalDate from, LocalDate to);
+}
@@ -0,0 +1,307 @@
+package vu.software_project.sdp.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Journal-style export of a merchant's sales, payments and refunds for a period, as CSV or JSON
+ * lines with one debit or credit per row. Every paid order, payment and refund is a document
+ * whose rows balance:
+ * <ul>
+ *   <li>SALE (on the day the order was paid): SALES credited and DISCOUNTS debited per line, the
+ *   order discount, TAX_PAYABLE credited per tax rate and RECEIVABLE debited with the total. Tax is
+ *   rounded once per order, as when the order is charged and in the sales rollups</li>
+ *   <li>PAYMENT (when the money was taken, whatever later happened to it): the tender account
+ *   debited, RECEIVABLE and TIPS_PAYABLE credited</li>
+ *   <li>REFUND (on completion): REFUNDS debited and the tender account credited per leg</li>
+ * </ul>
+ * Rows are read through one server-side cursor in (time, kind, document) order, so memory holds
+ * only the document being written. The last row of each document carries a checkpoint token;
+ * passing it back resumes the export after that document.
+ */
+@Service
+@RequiredArgsConstructor
+public class AccountingExportService {
+
+    private static final int FETCH_SIZE = 1_000;
+    private static final List<String> CSV_COLUMNS = List.of(
+            "date", "time", "document", "order_id", "account", "debit", "credit", "description", "tax_rate_id", "checkpoint");
+
+    // Document kinds, as numbered in the kind column of JOURNAL
+    private static final int SALE = 1;
+    private static final int PAYMENT = 2;
+    private static final int REFUND = 3;
+    private static final String[] DOCUMENT_TYPES = {null, "SALE", "PAYMENT", "REFUND"};
+
+    // Each branch takes: merchant, lower time bound, the keyset (time, kind, document) to continue
+    // after, and the upper time bound
+    private static final String JOURNAL = """
+            SELECT o.paid_at AS ts, 1 AS kind, o.id AS doc_id, oi.id AS line_id, o.id AS order_id,
+                   oi.name AS description, oi.tax_rate_id,
+                   (oi.price + COALESCE(v.offsets, 0)) * oi.quantity AS gross,
+                   COALESCE(oi.applied_discount_amount, 0) AS discount,
+                   COALESCE(oi.applied_tax_rate, 0) AS rate,
+                   COALESCE(o.applied_discount_amount, 0) AS order_discount,
+                   CAST(NULL AS varchar) AS payment_type, CAST(NULL AS numeric) AS amount, CAST(NULL AS numeric) AS tip
+            FROM orders o
+            LEFT JOIN order_items oi ON oi.order_id = o.id
+            LEFT JOIN LATERAL (
+                SELECT SUM(price_offset) AS offsets FROM order_item_variations WHERE order_item_id = oi.id
+            ) v ON true
+            WHERE o.merchant_id = ? AND o.paid_at >= ? AND (o.paid_at, 1, o.id) > (?, ?, ?) AND o.paid_at < ?
+            UNION ALL
+            SELECT p.succeeded_at, 2, p.id, NULL, p.order_id,
+                   NULL, NULL, NULL, NULL, NULL, NULL,
+                   p.payment_type, p.amount, p.tip
+            FROM payments p
+            JOIN orders o ON o.id = p.order_id
+            WHERE o.merchant_id = ? AND p.succeeded_at >= ? AND (p.succeeded_at, 2, p.id) > (?, ?, ?) AND p.succeeded_at < ?
+            UNION ALL
+            SELECT r.completed_at, 3, r.id, l.id, r.order_id,
+                   r.reason, NULL, NULL, NULL, NULL, NULL,
+                   l.payment_type, l.amount, NULL
+            FROM refunds r
+            JOIN orders o ON o.id = r.order_id
+            JOIN refund_legs l ON l.refund_id = r.id
+            WHERE o.merchant_id = ? AND r.completed_at >= ? AND (r.completed_at, 3, r.id) > (?, ?, ?) AND r.completed_at < ?
+              AND r.status = 'COMPLETED' AND l.status = 'COMPLETED'
+            ORDER BY ts, kind, doc_id, line_id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final SalesRollupService salesRollupService;
+
+    /**
+     * A validated export: the period and the document to continue after, which is the start of
+     * the period when there is no checkpoint.
+     */
+    public record Request(Long merchantId, LocalDate from, LocalDate to,
+                          OffsetDateTime afterTime, int afterKind, long afterDocument) {
+    }
+
+    public Request prepare(Long merchantId, LocalDate from, LocalDate to, String checkpoint) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        if (from.plusDays(SalesRollupService.MAX_REPORT_DAYS).isBefore(to)) {
+            throw new IllegalArgumentException("At most " + SalesRollupService.MAX_REPORT_DAYS + " days can be exported at once");
+        }
+        if (checkpoint == null || checkpoint.isBlank()) {
+            return new Request(merchantId, from, to, startOf(from), 0, 0);
+        }
+
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(checkpoint.trim()), StandardCharsets.UTF_8).split(":");
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid checkpoint");
+        }
+        if (parts.length != 6 || !parts[0].equals(merchantId.toString())
+                || !parts[1].equals(from.toString()) || !parts[2].equals(to.toString())) {
+            throw new IllegalArgumentException("Checkpoint does not belong to this export");
+        }
+        try {
+            long micros = Long.parseLong(parts[3]);
+            OffsetDateTime time = Instant.EPOCH.plus(micros, ChronoUnit.MICROS).atOffset(ZoneOffset.UTC);
+            return new Request(merchantId, from, to, time, Integer.parseInt(parts[4]), Long.parseLong(parts[5]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid checkpoint");
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public void export(Request request, ExportFormat format, Writer writer) throws IOException {
+        if (format == ExportFormat.CSV) {
+            writer.write(String.join(",", CSV_COLUMNS) + "\n");
+        }
+
+        OffsetDateTime fromTs = startOf(request.from());
+        OffsetDateTime toTs = startOf(request.to().plusDays(1));
+        Document[] current = {null};
+
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(JOURNAL);
+            ps.setFetchSize(FETCH_SIZE);
+            int i = 1;
+            for (int branch = 0; branch < 3; branch++) {
+                ps.setLong(i++, request.merchantId());
+                ps.setObject(i++, fromTs);
+                ps.setObject(i++, request.afterTime());
+                ps.setInt(i++, request.afterKind());
+                ps.setLong(i++, request.afterDocument());
+                ps.setObject(i++, toTs);
+            }
+            return ps;
+        }, rs -> {
+            int kind = rs.getInt("kind");
+            long docId = rs.getLong("doc_id");
+            Document document = current[0];
+            if (document == null || document.kind != kind || document.id != docId) {
+                if (document != null) finish(request, document, format, writer);
+                document = new Document(kind, docId, rs.getLong("order_id"), rs.getObject("ts", OffsetDateTime.class));
+                current[0] = document;
+            }
+            addRows(document, rs);
+        });
+        if (current[0] != null) finish(request, current[0], format, writer);
+
+        writer.flush();
+    }
+
+    private void addRows(Document doc, ResultSet rs) throws SQLException {
+        switch (doc.kind) {
+            case SALE -> {
+                doc.orderDiscount = cents(rs.getBigDecimal("order_discount"));
+                // A paid order without lines still gets its document
+                if (rs.getObject("line_id") == null) return;
+                String name = rs.getString("description");
+                BigDecimal gross = cents(rs.getBigDecimal("gross"));
+                BigDecimal discount = cents(rs.getBigDecimal("discount"));
+                doc.credit("SALES", gross, name, null);
+                doc.debit("DISCOUNTS", discount, name, null);
+                doc.tax.merge(rs.getString("tax_rate_id"), gross.subtract(discount).multiply(rs.getBigDecimal("rate")), BigDecimal::add);
+            }
+            case PAYMENT -> {
+                String tender = rs.getString("payment_type");
+                BigDecimal amount = rs.getBigDecimal("amount");
+                BigDecimal tip = rs.getBigDecimal("tip");
+                doc.debit(tender, amount.add(tip), null, null);
+                doc.credit("RECEIVABLE", amount, null, null);
+                doc.credit("TIPS_PAYABLE", tip, null, null);
+            }
+            case REFUND -> {
+                String reason = rs.getString("description");
+                BigDecimal amount = rs.getBigDecimal("amount");
+                doc.debit("REFUNDS", amount, reason, null);
+                doc.credit(rs.getString("payment_type"), amount, reason, null);
+            }
+            default -> throw new IllegalStateException("Unknown journal document kind " + doc.kind);
+        }
+    }
+
+    // The tax and receivable of a sale depend on all its lines, so they are written once all are read
+    private void finish(Request request, Document doc, ExportFormat format, Writer writer) {
+        if (doc.kind == SALE) {
+            doc.debit("DISCOUNTS", doc.orderDiscount, null, null);
+            creditTax(doc);
+            doc.debit("RECEIVABLE", doc.credits.subtract(doc.debits), null, null);
+        }
+        String checkpoint = checkpoint(request, doc);
+        for (int i = 0; i < doc.rows.size(); i++) {
+            writeRow(writer, format, doc, doc.rows.get(i), i == doc.rows.size() - 1 ? checkpoint : null);
+        }
+    }
+
+    private void writeRow(Writer writer, ExportFormat format, Document doc, Row row, String checkpoint) {
+        OffsetDateTime time = doc.time.atZoneSameInstant(salesRollupService.getZone()).toOffsetDateTime();
+        String document = DOCUMENT_TYPES[doc.kind] + "-" + doc.id;
+        try {
+            if (format == ExportFormat.CSV) {
+                writer.write(time.toLocalDate() + "," + time + "," + document + "," + doc.orderId + "," + row.account() + ","
+                        + (row.debit() ? row.amount().toPlainString() : "") + ","
+                        + (row.debit() ? "" : row.amount().toPlainString()) + ","
+                        + ExportFormat.csvValue(row.description()) + "," + ExportFormat.csvValue(row.taxRateId()) + ","
+                        + (checkpoint != null ? checkpoint : "") + "\n");
+            } else {
+                Map<String, Object> json = new LinkedHashMap<>();
+                json.put("date", time.toLocalDate().toString());
+                json.put("time", time.toString());
+                json.put("document", document);
+                json.put("orderId", doc.orderId);
+                json.put("account", row.account());
+                json.put(row.debit() ? "debit" : "credit", row.amount());
+                if (row.description() != null) json.put("description", row.description());
+                if (row.taxRateId() != null) json.put("taxRateId", row.taxRateId());
+                if (checkpoint != null) json.put("checkpoint", checkpoint);
+                writer.write(objectMapper.writeValueAsString(json) + "\n");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // The order's tax is rounded as a whole; the cents lost rounding each rate on its own go to the largest rate
+    private void creditTax(Document doc) {
+        BigDecimal total = cents(doc.tax.values().stream().reduce(BigDecimal.ZERO, BigDecimal::add));
+        Map<String, BigDecimal> perRate = new LinkedHashMap<>();
+        Map.Entry<String, BigDecimal> largest = null;
+        for (Map.Entry<String, BigDecimal> rate : doc.tax.entrySet()) {
+            perRate.put(rate.getKey(), cents(rate.getValue()));
+            if (largest == null || rate.getValue().compareTo(largest.getValue()) > 0) largest = rate;
+        }
+        BigDecimal rounded = perRate.values().stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+        if (largest != null) perRate.merge(largest.getKey(), total.subtract(rounded), BigDecimal::add);
+        perRate.forEach((taxRateId, amount) -> doc.credit("TAX_PAYABLE", amount, null, taxRateId));
+    }
+
+    private String checkpoint(Request request, Document doc) {
+        long micros = ChronoUnit.MICROS.between(Instant.EPOCH, doc.time.toInstant());
+        String value = request.merchantId() + ":" + request.from() + ":" + request.to() + ":"
+                + micros + ":" + doc.kind + ":" + doc.id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private OffsetDateTime startOf(LocalDate day) {
+        return day.atStartOfDay(salesRollupService.getZone()).toOffsetDateTime();
+    }
+
+    private static BigDecimal cents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private record Row(String account, boolean debit, BigDecimal amount, String description, String taxRateId) {
+    }
+
+    private static final class Document {
+        final int kind;
+        final long id;
+        final long orderId;
+        final OffsetDateTime time;
+        final List<Row> rows = new ArrayList<>();
+        BigDecimal debits = BigDecimal.ZERO;
+        BigDecimal credits = BigDecimal.ZERO;
+        BigDecimal orderDiscount = BigDecimal.ZERO;
+        // Unrounded tax of a sale per tax rate id, in line order
+        final Map<String, BigDecimal> tax = new LinkedHashMap<>();
+
+        Document(int kind, long id, long orderId, OffsetDateTime time) {
+            this.kind = kind;
+            this.id = id;
+            this.orderId = orderId;
+            this.time = time;
+        }
+
+        // Zero amounts are left out
+        void debit(String account, BigDecimal amount, String description, String taxRateId) {
+            if (amount.signum() == 0) return;
+            rows.add(new Row(account, true, amount, description, taxRateId));
+            debits = debits.add(amount);
+        }
+
+        void credit(String account, BigDecimal amount, String description, String taxRateId) {
+            if (amount.signum() == 0) return;
+            rows.add(new Row(account, false, amount, description, taxRateId));
+            credits = credits.add(amount);
+        }
+    }
+}
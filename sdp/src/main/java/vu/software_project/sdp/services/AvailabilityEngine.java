@@ -0,0 +1,228 @@
+package vu.software_project.sdp.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import vu.software_project.sdp.DTOs.reservations.AvailableSlotDto;
+import vu.software_project.sdp.entities.Reservation;
+import vu.software_project.sdp.entities.User;
+import vu.software_project.sdp.repositories.ReservationRepository;
+import vu.software_project.sdp.repositories.UserRepository;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps CONFIRMED reservations as per-employee occupancy bitmaps, one per merchant and day,
+ * in {@value #UNIT_MINUTES}-minute units. A day is loaded from the database the first time
+ * it is asked for and is then kept current by the reservation writes, after they commit.
+ * <p>
+ * Days are built outside the map, so a build never blocks other days. Every committed change
+ * bumps the merchant's version first; a build is only cached if the version did not move while
+ * it ran, since a change that landed meanwhile found no day to apply to.
+ */
+@Component
+public class AvailabilityEngine {
+
+    static final int UNIT_MINUTES = 5;
+    private static final int UNITS_PER_DAY = 24 * 60 / UNIT_MINUTES;
+
+    private final ReservationRepository reservationRepository;
+    private final UserRepository userRepository;
+    private final ConcurrentHashMap<DayKey, DayOccupancy> days = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Long> versions = new ConcurrentHashMap<>();
+
+    private final int openingUnit;
+    private final int closingUnit;
+    private final int stepUnits;
+    private final int maxCachedDays;
+
+    public AvailabilityEngine(
+            ReservationRepository reservationRepository,
+            UserRepository userRepository,
+            @Value("${reservations.opening-time:09:00}") LocalTime openingTime,
+            @Value("${reservations.closing-time:18:00}") LocalTime closingTime,
+            @Value("${reservations.slot-step-minutes:15}") int slotStepMinutes,
+            @Value("${reservations.availability.max-cached-days:5000}") int maxCachedDays
+    ) {
+        this.reservationRepository = reservationRepository;
+        this.userRepository = userRepository;
+        this.openingUnit = unitOf(openingTime);
+        this.closingUnit = closingTime.equals(LocalTime.MIDNIGHT) ? UNITS_PER_DAY : unitOf(closingTime);
+        this.stepUnits = Math.max(1, slotStepMinutes / UNIT_MINUTES);
+        this.maxCachedDays = maxCachedDays;
+    }
+
+    /**
+     * Free start times on {@code date} for an appointment of {@code durationMinutes}, for every
+     * bookable employee of the merchant (or only {@code employeeId}), ordered by time.
+     */
+    public List<AvailableSlotDto> findFreeSlots(Long merchantId, LocalDate date, int durationMinutes, Long employeeId) {
+        DayOccupancy day = load(merchantId, date);
+        int length = Math.max(1, ceilDiv(durationMinutes, UNIT_MINUTES));
+
+        int first = openingUnit;
+        LocalDateTime now = LocalDateTime.now();
+        if (date.equals(now.toLocalDate())) {
+            first = Math.max(first, ceilDiv(now.getHour() * 60 + now.getMinute() + 1, UNIT_MINUTES));
+        } else if (date.isBefore(now.toLocalDate())) {
+            return List.of();
+        }
+        // Keep the slot grid anchored at opening time
+        first = openingUnit + ceilDiv(first - openingUnit, stepUnits) * stepUnits;
+
+        List<AvailableSlotDto> slots = new ArrayList<>();
+        for (Map.Entry<Long, long[]> entry : day.snapshot().entrySet()) {
+            if (employeeId != null && !employeeId.equals(entry.getKey())) continue;
+            long[] bits = entry.getValue();
+            for (int start = first; start + length <= closingUnit; start += stepUnits) {
+                if (isFree(bits, start, start + length)) {
+                    LocalDateTime startTime = date.atStartOfDay().plusMinutes((long) start * UNIT_MINUTES);
+                    slots.add(new AvailableSlotDto(startTime, startTime.plusMinutes(durationMinutes), entry.getKey()));
+                }
+            }
+        }
+        slots.sort(Comparator.comparing(AvailableSlotDto::getStartTime).thenComparing(AvailableSlotDto::getEmployeeId));
+        return slots;
+    }
+
+    /**
+     * Marks {@code [start, end)} as taken for the employee once the current transaction commits.
+     */
+    public void reserved(Long merchantId, Long employeeId, LocalDateTime start, LocalDateTime end) {
+        afterCommit(() -> apply(merchantId, employeeId, start, end, true));
+    }
+
+    /**
+     * Frees {@code [start, end)} for the employee once the current transaction commits.
+     */
+    public void released(Long merchantId, Long employeeId, LocalDateTime start, LocalDateTime end) {
+        afterCommit(() -> apply(merchantId, employeeId, start, end, false));
+    }
+
+    // Staff changed; cached days of the merchant are rebuilt on next use
+    public void evictMerchant(Long merchantId) {
+        afterCommit(() -> {
+            versions.merge(merchantId, 1L, Long::sum);
+            days.keySet().removeIf(key -> key.merchantId().equals(merchantId));
+        });
+    }
+
+    private DayOccupancy load(Long merchantId, LocalDate date) {
+        DayKey key = new DayKey(merchantId, date);
+        DayOccupancy day = days.get(key);
+        if (day != null) return day;
+
+        if (days.size() >= maxCachedDays) {
+            days.keySet().removeIf(k -> k.date().isBefore(LocalDate.now()));
+            if (days.size() >= maxCachedDays) days.clear();
+        }
+        long version = versions.getOrDefault(merchantId, 0L);
+        DayOccupancy built = build(merchantId, date);
+        // Checked under the key's lock, which apply also takes after bumping the version
+        DayOccupancy cached = days.compute(key, (k, existing) -> {
+            if (existing != null) return existing;
+            return versions.getOrDefault(merchantId, 0L) == version ? built : null;
+        });
+        return cached != null ? cached : built;
+    }
+
+    private DayOccupancy build(Long merchantId, LocalDate date) {
+        DayOccupancy day = new DayOccupancy();
+        for (User user : userRepository.findByMerchantId(merchantId)) {
+            if (user.getRole() == User.Role.EMPLOYEE || user.getRole() == User.Role.BUSINESS_OWNER) {
+                day.addEmployee(user.getId());
+            }
+        }
+
+        LocalDateTime dayStart = date.atStartOfDay();
+        // Includes reservations from the previous evening that run past midnight
+        List<Reservation> reservations = reservationRepository.findByMerchantIdAndStatusAndAppointmentTimeLessThanAndEndTimeGreaterThan(
+                merchantId, Reservation.Status.CONFIRMED, dayStart.plusDays(1), dayStart);
+        for (Reservation r : reservations) {
+            day.mark(r.getEmployeeId(), dayStart, r.getAppointmentTime(), r.getEndTime(), true);
+        }
+        return day;
+    }
+
+    private void apply(Long merchantId, Long employeeId, LocalDateTime start, LocalDateTime end, boolean taken) {
+        versions.merge(merchantId, 1L, Long::sum);
+        for (LocalDate date = start.toLocalDate(); date.atStartOfDay().isBefore(end); date = date.plusDays(1)) {
+            LocalDateTime dayStart = date.atStartOfDay();
+            days.computeIfPresent(new DayKey(merchantId, date), (k, day) -> {
+                day.mark(employeeId, dayStart, start, end, taken);
+                return day;
+            });
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static boolean isFree(long[] bits, int from, int to) {
+        for (int word = from >>> 6; word <= (to - 1) >>> 6; word++) {
+            long mask = -1L;
+            if (word == from >>> 6) mask &= -1L << (from & 63);
+            if (word == (to - 1) >>> 6) mask &= -1L >>> (63 - ((to - 1) & 63));
+            if ((bits[word] & mask) != 0) return false;
+        }
+        return true;
+    }
+
+    private static int unitOf(LocalTime time) {
+        return (time.getHour() * 60 + time.getMinute()) / UNIT_MINUTES;
+    }
+
+    private static int ceilDiv(int a, int b) {
+        return -Math.floorDiv(-a, b);
+    }
+
+    private record DayKey(Long merchantId, LocalDate date) {
+    }
+
+    private static final class DayOccupancy {
+
+        private final Map<Long, long[]> byEmployee = new HashMap<>();
+
+        synchronized void addEmployee(Long employeeId) {
+            byEmployee.computeIfAbsent(employeeId, id -> new long[(UNITS_PER_DAY + 63) / 64]);
+        }
+
+        // Partly covered units are set when taking but left alone when freeing, since a neighbouring
+        // reservation may share them; misaligned times can only make a day look busier, never freer
+        synchronized void mark(Long employeeId, LocalDateTime dayStart, LocalDateTime start, LocalDateTime end, boolean taken) {
+            long fromMinute = Math.max(0, Duration.between(dayStart, start).toMinutes());
+            long toMinute = Math.min(24 * 60, Duration.between(dayStart, end).toMinutes());
+            if (toMinute <= fromMinute) return;
+
+            long[] bits = byEmployee.computeIfAbsent(employeeId, id -> new long[(UNITS_PER_DAY + 63) / 64]);
+            int from = taken ? (int) fromMinute / UNIT_MINUTES : ceilDiv((int) fromMinute, UNIT_MINUTES);
+            int to = taken ? ceilDiv((int) toMinute, UNIT_MINUTES) : (int) toMinute / UNIT_MINUTES;
+            for (int unit = from; unit < to; unit++) {
+                if (taken) bits[unit >>> 6] |= 1L << unit;
+                else bits[unit >>> 6] &= ~(1L << unit);
+            }
+        }
+
+        synchronized Map<Long, long[]> snapshot() {
+            Map<Long, long[]> copy = new HashMap<>(byEmployee.size() * 2);
+            byEmployee.forEach((id, bits) -> copy.put(id, bits.clone()));
+            return copy;
+        }
+    }
+}
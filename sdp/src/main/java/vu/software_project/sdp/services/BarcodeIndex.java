@@ -0,0 +1,89 @@
+package vu.software_project.sdp.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import vu.software_project.sdp.events.CatalogChangedEvent;
+import vu.software_project.sdp.repositories.ProductRepository;
+import vu.software_project.sdp.repositories.ProductRepository.CodeOwner;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Barcodes and SKUs of every product and variation, per merchant, as two hash maps. A merchant's
+ * maps are tagged with the catalog version they were loaded at and reloaded in one query once a
+ * newer catalog change has committed, so a scan never needs more than a map lookup.
+ */
+@Component
+public class BarcodeIndex {
+
+    private final CatalogService catalogService;
+    private final ProductRepository productRepository;
+    private final int maxCachedMerchants;
+
+    private final ConcurrentHashMap<Long, Codes> codes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Long> committedVersions = new ConcurrentHashMap<>();
+
+    public BarcodeIndex(
+            CatalogService catalogService,
+            ProductRepository productRepository,
+            @Value("${catalog.barcode.max-cached-merchants:1000}") int maxCachedMerchants
+    ) {
+        this.catalogService = catalogService;
+        this.productRepository = productRepository;
+        this.maxCachedMerchants = maxCachedMerchants;
+    }
+
+    public record ScanTarget(Long productId, Long variationId) {
+    }
+
+    private record Codes(long version, Map<String, ScanTarget> barcodes, Map<String, ScanTarget> skus) {
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        committedVersions.merge(event.getMerchantId(), event.getVersion(), Math::max);
+    }
+
+    // Barcodes win over SKUs, since scanners send barcodes and SKUs are typed in
+    public Optional<ScanTarget> lookup(Long merchantId, String code) {
+        if (code == null || code.isBlank()) return Optional.empty();
+        String key = code.trim();
+        Codes current = load(merchantId);
+        ScanTarget target = current.barcodes().get(key);
+        return Optional.ofNullable(target != null ? target : current.skus().get(key));
+    }
+
+    private Codes load(Long merchantId) {
+        Codes cached = codes.get(merchantId);
+        if (cached != null && cached.version() >= committedVersions.getOrDefault(merchantId, 0L)) {
+            return cached;
+        }
+        Codes built = build(merchantId);
+        if (codes.size() >= maxCachedMerchants && !codes.containsKey(merchantId)) {
+            codes.clear();
+        }
+        return codes.merge(merchantId, built, (old, fresh) -> fresh.version() >= old.version() ? fresh : old);
+    }
+
+    // The version is read before the codes, so the maps are at least as new as the version says
+    private Codes build(Long merchantId) {
+        long version = catalogService.getVersion(merchantId);
+        Map<String, ScanTarget> barcodes = new HashMap<>();
+        Map<String, ScanTarget> skus = new HashMap<>();
+        for (CodeOwner owner : productRepository.findCodes(merchantId)) {
+            ScanTarget target = new ScanTarget(owner.getProductId(), owner.getVariationId());
+            if (owner.getBarcode() != null && barcodes.putIfAbsent(owner.getBarcode(), target) != null) {
+                System.err.println("Barcode " + owner.getBarcode() + " is used twice by merchant " + merchantId + ", scans resolve to the first");
+            }
+            if (owner.getSku() != null && skus.putIfAbsent(owner.getSku(), target) != null) {
+                System.err.println("SKU " + owner.getSku() + " is used twice by merchant " + merchantId + ", scans resolve to the first");
+            }
+        }
+        return new Codes(version, Map.copyOf(barcodes), Map.copyOf(skus));
+    }
+}
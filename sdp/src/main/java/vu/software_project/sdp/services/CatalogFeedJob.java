@@ -0,0 +1,28 @@
+package vu.software_project.sdp.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodic compaction of the catalog change feed.
+ */
+@Component
+@RequiredArgsConstructor
+public class CatalogFeedJob {
+
+    private final CatalogFeedService catalogFeedService;
+
+    @Value("${catalog.feed.tombstone-retention-days:30}")
+    private int tombstoneRetentionDays;
+
+    @Scheduled(cron = "${catalog.feed.compaction-cron:0 30 3 * * *}")
+    public void compact() {
+        try {
+            catalogFeedService.compact(tombstoneRetentionDays);
+        } catch (Exception e) {
+            System.err.println("Catalog feed compaction failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package vu.software_project.sdp.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import vu.software_project.sdp.DTOs.item.CatalogChangesDTO;
+import vu.software_project.sdp.DTOs.item.ItemResponseDTO;
+import vu.software_project.sdp.entities.CatalogChange;
+import vu.software_project.sdp.repositories.CatalogChangeRepository;
+import vu.software_project.sdp.repositories.MerchantRepository;
+
+import java.time.OffsetDateTime;
+import java.util.*;
+
+/**
+ * Delta sync for terminals: everything that changed in a merchant's catalog after a given version.
+ */
+@Service
+@RequiredArgsConstructor
+public class CatalogFeedService {
+
+    private final CatalogChangeRepository changeRepository;
+    private final MerchantRepository merchantRepository;
+    private final ProductService productService;
+    private final ServiceItemService serviceItemService;
+    private final TaxRateService taxRateService;
+
+    @Transactional(readOnly = true)
+    public CatalogChangesDTO getChangesSince(Long merchantId, long since) {
+        MerchantRepository.CatalogState state = merchantRepository.findCatalogState(merchantId)
+                .orElseThrow(() -> new IllegalArgumentException("Merchant not found"));
+        long version = state.getVersion();
+
+        // 0 means the terminal has never synced; a version from the future means its state is not ours
+        if (since <= 0 || since < state.getFeedFloor() || since > version) {
+            return CatalogChangesDTO.builder().version(version).resync(true)
+                    .items(List.of()).taxRates(List.of()).deleted(List.of()).build();
+        }
+
+        // Capped at the version read above; anything committed later is picked up by the next call
+        Map<String, CatalogChange> latest = new LinkedHashMap<>();
+        for (CatalogChange change : changeRepository
+                .findByMerchantIdAndVersionGreaterThanAndVersionLessThanEqualOrderByVersionAsc(merchantId, since, version)) {
+            latest.put(change.getEntityType() + ":" + change.getEntityId(), change);
+        }
+
+        List<Long> productIds = new ArrayList<>();
+        List<Long> serviceIds = new ArrayList<>();
+        List<String> taxRateIds = new ArrayList<>();
+        List<CatalogChangesDTO.Tombstone> deleted = new ArrayList<>();
+        for (CatalogChange change : latest.values()) {
+            if (change.isDeleted()) {
+                deleted.add(new CatalogChangesDTO.Tombstone(change.getEntityType().name(), change.getEntityId()));
+                continue;
+            }
+            switch (change.getEntityType()) {
+                case PRODUCT -> productIds.add(Long.valueOf(change.getEntityId()));
+                case SERVICE -> serviceIds.add(Long.valueOf(change.getEntityId()));
+                case TAX_RATE -> taxRateIds.add(change.getEntityId());
+            }
+        }
+
+        List<ItemResponseDTO> items = new ArrayList<>();
+        if (!productIds.isEmpty()) items.addAll(productService.getProductsByIds(productIds, merchantId));
+        if (!serviceIds.isEmpty()) items.addAll(serviceItemService.getServiceItemsByIds(serviceIds, merchantId));
+
+        return CatalogChangesDTO.builder()
+                .version(version)
+                .resync(false)
+                .items(items)
+                .taxRates(taxRateIds.isEmpty() ? List.of() : taxRateService.getByIds(taxRateIds, merchantId))
+                .deleted(deleted)
+                .build();
+    }
+
+    /**
+     * Keeps the feed bounded: drops entries superseded by a newer one for the same entity and
+     * tombstones older than {@code tombstoneRetentionDays}, raising the resync floor past them.
+     */
+    @Transactional
+    public int compact(int tombstoneRetentionDays) {
+        int removed = changeRepository.deleteSuperseded();
+        changeRepository.purgeTombstonesBefore(OffsetDateTime.now().minusDays(tombstoneRetentionDays));
+        return removed;
+    }
+}
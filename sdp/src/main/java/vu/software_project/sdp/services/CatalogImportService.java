@@ -0,0 +1,572 @@
+package vu.software_project.sdp.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import vu.software_project.sdp.DTOs.item.CatalogImportResultDTO;
+import vu.software_project.sdp.entities.CatalogChange;
+import vu.software_project.sdp.entities.ServiceItem;
+import vu.software_project.sdp.entities.TaxRate;
+import vu.software_project.sdp.repositories.MerchantRepository;
+import vu.software_project.sdp.repositories.ProductRepository;
+import vu.software_project.sdp.repositories.TaxRateRepository;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk import and export of a merchant's catalog as CSV or JSON lines, one item per row:
+ * {@code type,name,price,tax_rate_id,duration_minutes,sku,barcode}. A VARIATION row belongs to the
+ * closest PRODUCT row above it and its price is the offset. SKUs and barcodes must be unique within
+ * the merchant, as in {@link ProductService}.
+ * <p>
+ * Both directions stream: the import validates rows as they are read and writes them in chunks of
+ * {@value #CHUNK_SIZE} with JDBC batches, each chunk in its own transaction; the export reads
+ * through a database cursor. A bad row is reported and skipped, it never aborts the file.
+ */
+@Service
+@RequiredArgsConstructor
+public class CatalogImportService {
+
+    private static final int CHUNK_SIZE = 1_000;
+    private static final int MAX_REPORTED_ERRORS = 1_000;
+    private static final int MAX_NAME_LENGTH = 255;
+    private static final int MAX_RECORD_LENGTH = 64 * 1024;
+    private static final List<String> CSV_COLUMNS = List.of("type", "name", "price", "tax_rate_id", "duration_minutes", "sku", "barcode");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final IdAllocator idAllocator;
+    private final CatalogService catalogService;
+    private final MerchantRepository merchantRepository;
+    private final ProductRepository productRepository;
+    private final TaxRateRepository taxRateRepository;
+    private final ObjectMapper objectMapper;
+
+    public CatalogImportResultDTO importCatalog(Long merchantId, ExportFormat format, BufferedReader reader) throws IOException {
+        if (!merchantRepository.existsById(merchantId)) {
+            throw new IllegalArgumentException("Merchant not found");
+        }
+        Set<String> taxRateIds = taxRateRepository.findByMerchantId(merchantId).stream()
+                .map(TaxRate::getId)
+                .collect(Collectors.toSet());
+        // Codes already taken, plus the ones claimed by earlier rows of this file
+        Set<String> skus = new HashSet<>();
+        Set<String> barcodes = new HashSet<>();
+        for (ProductRepository.CodeOwner owner : productRepository.findCodes(merchantId)) {
+            if (owner.getSku() != null) skus.add(owner.getSku());
+            if (owner.getBarcode() != null) barcodes.add(owner.getBarcode());
+        }
+
+        CatalogImportResultDTO result = new CatalogImportResultDTO();
+        Chunk chunk = new Chunk();
+        PendingProduct lastProduct = null;
+        Map<String, Integer> columns = null;
+        RecordReader records = new RecordReader(reader, format == ExportFormat.CSV);
+
+        String line;
+        while ((line = records.next()) != null) {
+            long recordLine = records.recordLine();
+            if (line.isBlank()) continue;
+
+            if (format == ExportFormat.CSV && columns == null) {
+                columns = readHeader(line);
+                continue;
+            }
+            result.setRowsRead(result.getRowsRead() + 1);
+
+            Row row;
+            try {
+                row = format == ExportFormat.CSV ? parseCsv(line, columns) : parseJson(line);
+            } catch (IllegalArgumentException e) {
+                addError(result, recordLine, e.getMessage());
+                continue;
+            }
+            try {
+                validate(row, taxRateIds);
+                if (row.type().equals("VARIATION") && (lastProduct == null || lastProduct.failed)) {
+                    throw new IllegalArgumentException("Variation has no valid PRODUCT row before it");
+                }
+                claimCodes(row, skus, barcodes);
+            } catch (IllegalArgumentException e) {
+                addError(result, recordLine, e.getMessage());
+                // Keeps the variations below a rejected product from landing on the one before it
+                if (row.type().equals("PRODUCT")) lastProduct = null;
+                continue;
+            }
+
+            switch (row.type()) {
+                case "PRODUCT" -> {
+                    lastProduct = new PendingProduct(recordLine, row);
+                    chunk.products.add(lastProduct);
+                }
+                case "SERVICE_ITEM" -> chunk.services.add(new PendingService(recordLine, row));
+                case "VARIATION" -> chunk.variations.add(new PendingVariation(recordLine, row, lastProduct));
+            }
+
+            if (chunk.size() >= CHUNK_SIZE) {
+                flush(merchantId, chunk, result, skus, barcodes);
+                chunk = new Chunk();
+            }
+        }
+        if (chunk.size() > 0) {
+            flush(merchantId, chunk, result, skus, barcodes);
+        }
+        return result;
+    }
+
+    /**
+     * Writes the catalog in the import format, products each followed by their variations and then
+     * services. Rows are fetched in pages from a server-side cursor, so memory stays flat.
+     */
+    @Transactional(readOnly = true)
+    public void exportCatalog(Long merchantId, ExportFormat format, Writer writer) throws IOException {
+        if (format == ExportFormat.CSV) {
+            writer.write(String.join(",", CSV_COLUMNS) + "\n");
+        }
+
+        Long[] lastProductId = {null};
+        stream("""
+                SELECT p.id, p.name, p.price, p.tax_rate_id, p.sku, p.barcode,
+                       v.name AS variation_name, v.price_offset, v.sku AS variation_sku, v.barcode AS variation_barcode
+                FROM products p
+                LEFT JOIN product_variations v ON v.product_id = p.id
+                WHERE p.merchant_id = ?
+                ORDER BY p.id, v.id
+                """, merchantId, rs -> {
+            long productId = rs.getLong("id");
+            if (lastProductId[0] == null || lastProductId[0] != productId) {
+                lastProductId[0] = productId;
+                writeRow(writer, format, new Row("PRODUCT", rs.getString("name"), rs.getBigDecimal("price"),
+                        rs.getString("tax_rate_id"), null, rs.getString("sku"), rs.getString("barcode")));
+            }
+            String variationName = rs.getString("variation_name");
+            if (variationName != null) {
+                BigDecimal offset = rs.getBigDecimal("price_offset");
+                writeRow(writer, format, new Row("VARIATION", variationName, offset != null ? offset : BigDecimal.ZERO,
+                        null, null, rs.getString("variation_sku"), rs.getString("variation_barcode")));
+            }
+        });
+
+        stream("""
+                SELECT name, price, tax_rate_id, duration_minutes
+                FROM services
+                WHERE merchant_id = ?
+                ORDER BY id
+                """, merchantId, rs -> writeRow(writer, format, new Row("SERVICE_ITEM", rs.getString("name"),
+                rs.getBigDecimal("price"), rs.getString("tax_rate_id"), rs.getInt("duration_minutes"), null, null)));
+
+        writer.flush();
+    }
+
+    private void stream(String sql, Long merchantId, RowCallbackHandler handler) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setFetchSize(CHUNK_SIZE);
+            ps.setLong(1, merchantId);
+            return ps;
+        }, handler);
+    }
+
+    // A chunk commits or fails as a whole; its rows are only counted once it has committed. The codes
+    // of a failed chunk are given back, so later rows of the file may still use them
+    private void flush(Long merchantId, Chunk chunk, CatalogImportResultDTO result, Set<String> skus, Set<String> barcodes) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> insertChunk(merchantId, chunk));
+        } catch (RuntimeException e) {
+            chunk.products.forEach(p -> {
+                p.id = null;
+                p.failed = true;
+            });
+            List<String> chunkSkus = new ArrayList<>();
+            List<String> chunkBarcodes = new ArrayList<>();
+            chunk.products.forEach(p -> addCodes(p.row, chunkSkus, chunkBarcodes));
+            chunk.variations.forEach(v -> addCodes(v.row(), chunkSkus, chunkBarcodes));
+            chunkSkus.forEach(skus::remove);
+            chunkBarcodes.forEach(barcodes::remove);
+            String message = "Not imported: " + NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+            chunk.lines().forEach(l -> addError(result, l, message));
+            return;
+        }
+        result.setProductsCreated(result.getProductsCreated() + chunk.products.size());
+        result.setServicesCreated(result.getServicesCreated() + chunk.services.size());
+        result.setVariationsCreated(result.getVariationsCreated() + chunk.variations.size());
+    }
+
+    private void insertChunk(Long merchantId, Chunk chunk) {
+        Iterator<Long> ids = idAllocator.allocate("item_id_seq", 50, chunk.products.size() + chunk.services.size()).iterator();
+        chunk.products.forEach(p -> p.id = ids.next());
+        chunk.services.forEach(s -> s.id = ids.next());
+
+        requireCodesFree(merchantId, chunk);
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO products (id, name, price, merchant_id, tax_rate_id, sku, barcode) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                chunk.products, CHUNK_SIZE, (ps, p) -> {
+                    ps.setLong(1, p.id);
+                    ps.setString(2, p.row.name());
+                    ps.setBigDecimal(3, p.row.price());
+                    ps.setLong(4, merchantId);
+                    ps.setString(5, p.row.taxRateId());
+                    ps.setString(6, p.row.sku());
+                    ps.setString(7, p.row.barcode());
+                });
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO services (id, name, price, merchant_id, tax_rate_id, duration_minutes) VALUES (?, ?, ?, ?, ?, ?)",
+                chunk.services, CHUNK_SIZE, (ps, s) -> {
+                    ps.setLong(1, s.id);
+                    ps.setString(2, s.row.name());
+                    ps.setBigDecimal(3, s.row.price());
+                    ps.setLong(4, merchantId);
+                    ps.setString(5, s.row.taxRateId());
+                    ps.setInt(6, s.row.durationMinutes());
+                });
+        Iterator<Long> variationIds = idAllocator.allocate("product_variations_seq", 50, chunk.variations.size()).iterator();
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO product_variations (id, name, price_offset, product_id, sku, barcode) VALUES (?, ?, ?, ?, ?, ?)",
+                chunk.variations, CHUNK_SIZE, (ps, v) -> {
+                    ps.setLong(1, variationIds.next());
+                    ps.setString(2, v.row.name());
+                    ps.setBigDecimal(3, v.row.price());
+                    ps.setLong(4, v.product.id);
+                    ps.setString(5, v.row.sku());
+                    ps.setString(6, v.row.barcode());
+                });
+
+        // New products plus products from earlier chunks that gained variations
+        Set<Long> productIds = new LinkedHashSet<>();
+        chunk.products.forEach(p -> productIds.add(p.id));
+        chunk.variations.forEach(v -> productIds.add(v.product.id));
+        if (!productIds.isEmpty()) {
+            catalogService.recordChanges(merchantId, CatalogChange.EntityType.PRODUCT, new ArrayList<>(productIds));
+        }
+        if (!chunk.services.isEmpty()) {
+            catalogService.recordChanges(merchantId, CatalogChange.EntityType.SERVICE,
+                    chunk.services.stream().map(s -> s.id).toList());
+        }
+    }
+
+    private static void validate(Row row, Set<String> taxRateIds) {
+        if (!Set.of("PRODUCT", "SERVICE_ITEM", "VARIATION").contains(row.type())) {
+            throw new IllegalArgumentException("Invalid type. Use 'PRODUCT', 'SERVICE_ITEM' or 'VARIATION'");
+        }
+        if (row.name() == null || row.name().isBlank()) {
+            throw new IllegalArgumentException("Name is required");
+        }
+        if (row.name().length() > MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException("Name is longer than " + MAX_NAME_LENGTH + " characters");
+        }
+        if (row.price() == null) {
+            throw new IllegalArgumentException("Price is required");
+        }
+        if (!row.type().equals("VARIATION") && row.price().signum() < 0) {
+            throw new IllegalArgumentException("Price must not be negative");
+        }
+        if (row.taxRateId() != null && !taxRateIds.contains(row.taxRateId())) {
+            throw new IllegalArgumentException("Unknown tax rate: " + row.taxRateId());
+        }
+        if (row.durationMinutes() != null && (row.durationMinutes() < 1 || row.durationMinutes() > 1440)) {
+            throw new IllegalArgumentException("Duration must be between 1 and 1440 minutes");
+        }
+    }
+
+    private static void claimCodes(Row row, Set<String> skus, Set<String> barcodes) {
+        if (row.sku() != null && skus.contains(row.sku())) {
+            throw new IllegalArgumentException("SKU already in use: " + row.sku());
+        }
+        if (row.barcode() != null && barcodes.contains(row.barcode())) {
+            throw new IllegalArgumentException("Barcode already in use: " + row.barcode());
+        }
+        if (row.sku() != null) skus.add(row.sku());
+        if (row.barcode() != null) barcodes.add(row.barcode());
+    }
+
+    // Codes were checked against the merchant's catalog when the file was opened; under the merchant
+    // row lock this catches codes another writer has taken since, and fails the chunk
+    private void requireCodesFree(Long merchantId, Chunk chunk) {
+        List<String> skus = new ArrayList<>();
+        List<String> barcodes = new ArrayList<>();
+        chunk.products.forEach(p -> addCodes(p.row, skus, barcodes));
+        chunk.variations.forEach(v -> addCodes(v.row(), skus, barcodes));
+        if (skus.isEmpty() && barcodes.isEmpty()) return;
+
+        merchantRepository.lockForCatalogWrite(merchantId);
+        List<String> taken = jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement("""
+                    SELECT code FROM (
+                        SELECT p.sku AS code FROM products p WHERE p.merchant_id = ? AND p.sku = ANY (?)
+                        UNION ALL
+                        SELECT p.barcode FROM products p WHERE p.merchant_id = ? AND p.barcode = ANY (?)
+                        UNION ALL
+                        SELECT v.sku FROM product_variations v JOIN products p ON p.id = v.product_id
+                        WHERE p.merchant_id = ? AND v.sku = ANY (?)
+                        UNION ALL
+                        SELECT v.barcode FROM product_variations v JOIN products p ON p.id = v.product_id
+                        WHERE p.merchant_id = ? AND v.barcode = ANY (?)
+                    ) codes
+                    LIMIT 1
+                    """);
+            for (int i = 0; i < 4; i++) {
+                ps.setLong(2 * i + 1, merchantId);
+                ps.setArray(2 * i + 2, con.createArrayOf("varchar", (i % 2 == 0 ? skus : barcodes).toArray()));
+            }
+            return ps;
+        }, (rs, n) -> rs.getString("code"));
+        if (!taken.isEmpty()) {
+            throw new IllegalStateException("SKU or barcode was taken while importing: " + taken.get(0));
+        }
+    }
+
+    private static void addCodes(Row row, List<String> skus, List<String> barcodes) {
+        if (row.sku() != null) skus.add(row.sku());
+        if (row.barcode() != null) barcodes.add(row.barcode());
+    }
+
+    private static Map<String, Integer> readHeader(String line) {
+        List<String> names = splitCsv(line);
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim().toLowerCase(), i);
+        }
+        for (String required : List.of("type", "name", "price")) {
+            if (!columns.containsKey(required)) {
+                throw new IllegalArgumentException("CSV header is missing column '" + required + "'");
+            }
+        }
+        return columns;
+    }
+
+    private static Row parseCsv(String line, Map<String, Integer> columns) {
+        List<String> values = splitCsv(line);
+        return toRow(
+                column(values, columns, "type"),
+                column(values, columns, "name"),
+                column(values, columns, "price"),
+                column(values, columns, "tax_rate_id"),
+                column(values, columns, "duration_minutes"),
+                column(values, columns, "sku"),
+                column(values, columns, "barcode"));
+    }
+
+    private Row parseJson(String line) {
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(line);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed JSON");
+        }
+        if (!node.isObject()) {
+            throw new IllegalArgumentException("Row must be a JSON object");
+        }
+        return toRow(text(node, "type"), text(node, "name"), text(node, "price"),
+                text(node, "taxRateId"), text(node, "durationMinutes"), text(node, "sku"), text(node, "barcode"));
+    }
+
+    private static Row toRow(String type, String name, String price, String taxRateId, String duration,
+                             String sku, String barcode) {
+        String normalizedType = type != null ? type.trim().toUpperCase() : "";
+        BigDecimal parsedPrice;
+        Integer parsedDuration = null;
+        try {
+            parsedPrice = price != null ? new BigDecimal(price.trim()) : null;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid price: " + price);
+        }
+        if (duration != null && normalizedType.equals("SERVICE_ITEM")) {
+            try {
+                parsedDuration = Integer.parseInt(duration.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid duration: " + duration);
+            }
+        } else if (normalizedType.equals("SERVICE_ITEM")) {
+            parsedDuration = ServiceItem.DEFAULT_DURATION_MINUTES;
+        }
+        // Services are not scanned, so they carry no codes
+        boolean coded = !normalizedType.equals("SERVICE_ITEM");
+        return new Row(normalizedType, name != null ? name.trim() : null, parsedPrice,
+                normalizedType.equals("VARIATION") ? null : taxRateId, parsedDuration,
+                coded ? ProductService.validCode(sku) : null, coded ? ProductService.validCode(barcode) : null);
+    }
+
+    private static String column(List<String> values, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= values.size()) return null;
+        String value = values.get(index);
+        return value.isEmpty() ? null : value;
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    // RFC 4180 quoting; the record may already span several physical lines
+    static List<String> splitCsv(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted value");
+        }
+        values.add(current.toString());
+        return values;
+    }
+
+    private void writeRow(Writer writer, ExportFormat format, Row row) {
+        try {
+            if (format == ExportFormat.CSV) {
+                writer.write(row.type() + "," + ExportFormat.csvValue(row.name()) + "," + row.price().toPlainString() + ","
+                        + ExportFormat.csvValue(row.taxRateId()) + "," + (row.durationMinutes() != null ? row.durationMinutes() : "") + ","
+                        + ExportFormat.csvValue(row.sku()) + "," + ExportFormat.csvValue(row.barcode()) + "\n");
+            } else {
+                Map<String, Object> json = new LinkedHashMap<>();
+                json.put("type", row.type());
+                json.put("name", row.name());
+                json.put("price", row.price());
+                if (row.taxRateId() != null) json.put("taxRateId", row.taxRateId());
+                if (row.durationMinutes() != null) json.put("durationMinutes", row.durationMinutes());
+                if (row.sku() != null) json.put("sku", row.sku());
+                if (row.barcode() != null) json.put("barcode", row.barcode());
+                writer.write(objectMapper.writeValueAsString(json) + "\n");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void addError(CatalogImportResultDTO result, long line, String message) {
+        result.setErrorCount(result.getErrorCount() + 1);
+        if (result.getErrors().size() < MAX_REPORTED_ERRORS) {
+            result.getErrors().add(new CatalogImportResultDTO.RowError(line, message));
+        }
+    }
+
+    /**
+     * Reads one record per call. In CSV a quoted value may contain line breaks, so while a record has
+     * an odd number of quotes the next physical line is joined to it with {@code \n}, up to
+     * {@value #MAX_RECORD_LENGTH} characters; a record cut off there fails as an unterminated value.
+     */
+    static final class RecordReader {
+
+        private final BufferedReader reader;
+        private final boolean csv;
+        private long lineNumber;
+        private long recordLine;
+
+        RecordReader(BufferedReader reader, boolean csv) {
+            this.reader = reader;
+            this.csv = csv;
+        }
+
+        String next() throws IOException {
+            String line = reader.readLine();
+            if (line == null) return null;
+            lineNumber++;
+            recordLine = lineNumber;
+            if (!csv) return line;
+
+            int quotes = countQuotes(line);
+            if (quotes % 2 == 0) return line;
+            StringBuilder record = new StringBuilder(line);
+            String next;
+            while (quotes % 2 != 0 && record.length() <= MAX_RECORD_LENGTH && (next = reader.readLine()) != null) {
+                lineNumber++;
+                record.append('\n').append(next);
+                quotes += countQuotes(next);
+            }
+            return record.toString();
+        }
+
+        // Physical line the last record started on, for error reports
+        long recordLine() {
+            return recordLine;
+        }
+
+        private static int countQuotes(String line) {
+            int quotes = 0;
+            for (int i = 0; i < line.length(); i++) {
+                if (line.charAt(i) == '"') quotes++;
+            }
+            return quotes;
+        }
+    }
+
+    private record Row(String type, String name, BigDecimal price, String taxRateId, Integer durationMinutes,
+                       String sku, String barcode) {
+    }
+
+    private static final class PendingProduct {
+        final long line;
+        final Row row;
+        Long id;
+        boolean failed;
+
+        PendingProduct(long line, Row row) {
+            this.line = line;
+            this.row = row;
+        }
+    }
+
+    private static final class PendingService {
+        final long line;
+        final Row row;
+        Long id;
+
+        PendingService(long line, Row row) {
+            this.line = line;
+            this.row = row;
+        }
+    }
+
+    private record PendingVariation(long line, Row row, PendingProduct product) {
+    }
+
+    private static final class Chunk {
+        final List<PendingProduct> products = new ArrayList<>();
+        final List<PendingService> services = new ArrayList<>();
+        final List<PendingVariation> variations = new ArrayList<>();
+
+        int size() {
+            return products.size() + services.size() + variations.size();
+        }
+
+        List<Long> lines() {
+            List<Long> lines = new ArrayList<>(size());
+            products.forEach(p -> lines.add(p.line));
+            services.forEach(s -> lines.add(s.line));
+            variations.forEach(v -> lines.add(v.line()));
+            return lines;
+        }
+    }
+}
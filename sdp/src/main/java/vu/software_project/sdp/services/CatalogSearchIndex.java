@@ -0,0 +1,298 @@
+package vu.software_project.sdp.services;
+
+import vu.software_project.sdp.DTOs.item.ItemSearchResultDTO;
+
+import java.math.BigDecimal;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable trigram index over the item names of one merchant at one catalog version.
+ * Names are indexed word by word with pg_trgm style padding ({@code "  word "}), so the
+ * trigrams of {@code "  pre"} select the words starting with {@code pre}, unpadded trigrams
+ * select substrings and a partial overlap tolerates typos.
+ */
+final class CatalogSearchIndex {
+
+    // Below this share of query trigrams a name is not considered a typo of the query
+    private static final double MIN_SIMILARITY = 0.5;
+
+    private static final int MAX_DOCS = 1 << 24;
+
+    // A trigram found in more than 1/n of all names is not used to find candidates
+    private static final int COMMON_TRIGRAM_SHARE = 10;
+
+    private static final int TIER_FUZZY = 0;
+    private static final int TIER_SUBSTRING = 1;
+    private static final int TIER_WORD_PREFIX = 2;
+    private static final int TIER_NAME_PREFIX = 3;
+
+    record Entry(String type, Long id, Long productId, String name, BigDecimal price) {
+    }
+
+    private final long version;
+    private final Entry[] entries;
+    private final String[] normalized;
+    private final Map<Long, int[]> postings;
+    // Document numbers in the order of their normalized names, for name-prefix ranges
+    private final int[] byName;
+
+    private CatalogSearchIndex(long version, Entry[] entries, String[] normalized, Map<Long, int[]> postings, int[] byName) {
+        this.version = version;
+        this.entries = entries;
+        this.normalized = normalized;
+        this.postings = postings;
+        this.byName = byName;
+    }
+
+    long version() {
+        return version;
+    }
+
+    int size() {
+        return entries.length;
+    }
+
+    static CatalogSearchIndex build(long version, List<Entry> items) {
+        // Documents are numbered shortest name first, so among equal matches the lower number wins
+        if (items.size() > MAX_DOCS) {
+            throw new IllegalArgumentException("Too many items to index: " + items.size());
+        }
+        Map<Entry, String> names = new IdentityHashMap<>(items.size() * 2);
+        items.forEach(e -> names.put(e, normalize(e.name())));
+        Entry[] entries = items.stream()
+                .sorted(Comparator.comparing((Entry e) -> names.get(e).length()).thenComparing(names::get))
+                .toArray(Entry[]::new);
+
+        String[] normalized = new String[entries.length];
+        long[][] docTrigrams = new long[entries.length][];
+        Map<Long, Integer> counts = new HashMap<>();
+
+        for (int doc = 0; doc < entries.length; doc++) {
+            normalized[doc] = names.get(entries[doc]);
+            Set<Long> trigrams = new HashSet<>();
+            for (String word : words(normalized[doc])) {
+                addTrigrams(trigrams, "  " + word + " ");
+            }
+            docTrigrams[doc] = trigrams.stream().mapToLong(Long::longValue).toArray();
+            for (long trigram : docTrigrams[doc]) {
+                counts.merge(trigram, 1, Integer::sum);
+            }
+        }
+
+        // Postings are filled in document order, so every list ends up sorted
+        Map<Long, int[]> postings = new HashMap<>(counts.size() * 2);
+        Map<Long, Integer> filled = new HashMap<>(counts.size() * 2);
+        counts.forEach((trigram, count) -> postings.put(trigram, new int[count]));
+        for (int doc = 0; doc < entries.length; doc++) {
+            for (long trigram : docTrigrams[doc]) {
+                int position = filled.merge(trigram, 1, Integer::sum) - 1;
+                postings.get(trigram)[position] = doc;
+            }
+        }
+        int[] byName = IntStream.range(0, entries.length).boxed()
+                .sorted(Comparator.comparing((Integer doc) -> normalized[doc]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        return new CatalogSearchIndex(version, entries, normalized, postings, byName);
+    }
+
+    List<ItemSearchResultDTO> search(String query, int limit) {
+        String q = normalize(query);
+        if (q.isEmpty()) return List.of();
+        List<String> queryWords = words(q);
+
+        // Whole words, except the last one which may still be being typed
+        Set<Long> prefixTrigrams = new HashSet<>();
+        for (int i = 0; i < queryWords.size(); i++) {
+            boolean last = i == queryWords.size() - 1;
+            addTrigrams(prefixTrigrams, "  " + queryWords.get(i) + (last ? "" : " "));
+        }
+        Set<Long> innerTrigrams = new HashSet<>();
+        for (String word : queryWords) {
+            addTrigrams(innerTrigrams, word);
+        }
+
+        List<ItemSearchResultDTO> prefixMatches = namePrefixMatches(q, limit);
+        if (prefixMatches != null) return prefixMatches;
+
+        int fuzzyThreshold = prefixTrigrams.size() <= 3
+                ? prefixTrigrams.size()
+                : (int) Math.ceil(prefixTrigrams.size() * MIN_SIMILARITY);
+
+        // Trigrams like "  c" are in a large share of all names. Every match needs at least one
+        // of the rarer query trigrams too, as long as those cover each way of matching; then only
+        // the rare postings find the candidates and the common ones only add to their counts.
+        Set<Long> common = new HashSet<>();
+        for (Set<Long> trigrams : List.of(prefixTrigrams, innerTrigrams)) {
+            for (long trigram : trigrams) {
+                int[] docs = postings.get(trigram);
+                if (docs != null && docs.length > entries.length / COMMON_TRIGRAM_SHARE) common.add(trigram);
+            }
+        }
+        long commonPrefix = prefixTrigrams.stream().filter(common::contains).count();
+        boolean innerCovered = innerTrigrams.isEmpty() || innerTrigrams.stream().anyMatch(t -> !common.contains(t));
+        boolean skipCommon = !common.isEmpty()
+                && commonPrefix < prefixTrigrams.size()
+                && innerCovered
+                && fuzzyThreshold > commonPrefix;
+        Set<Long> walked = skipCommon ? new HashSet<>(prefixTrigrams) : prefixTrigrams;
+        if (skipCommon) {
+            walked.removeAll(common);
+        }
+
+        // Prefix trigram hits in the low 16 bits, inner trigram hits above them
+        int[] hits = new int[entries.length];
+        count(walked, innerTrigrams, hits, false);
+        if (skipCommon) {
+            count(common, innerTrigrams, hits, true);
+        }
+        int prefixSize = prefixTrigrams.size();
+        int innerSize = innerTrigrams.size();
+        String wordPrefix = " " + q;
+
+        // Keeps the best `limit` ranks seen so far; the smallest sits on top and is evicted first
+        PriorityQueue<Long> best = new PriorityQueue<>(limit + 1);
+        for (int doc = 0; doc < hits.length; doc++) {
+            if (hits[doc] == 0) continue;
+            int prefixHits = hits[doc] & 0xFFFF;
+            // The best tier the trigram counts still allow; the name is only looked at when that could rank
+            boolean allPrefix = prefixHits == prefixSize;
+            boolean allInner = innerSize > 0 && hits[doc] >>> 16 == innerSize;
+            int maxTier = allPrefix ? TIER_NAME_PREFIX : allInner ? TIER_SUBSTRING : TIER_FUZZY;
+            if (maxTier == TIER_FUZZY && prefixHits < fuzzyThreshold) continue;
+            if (best.size() == limit && rank(maxTier, prefixHits, prefixSize, doc) <= best.peek()) {
+                continue;
+            }
+            String name = normalized[doc];
+            int tier;
+            if (name.startsWith(q)) {
+                tier = TIER_NAME_PREFIX;
+            } else if (allPrefix && name.contains(wordPrefix)) {
+                tier = TIER_WORD_PREFIX;
+            } else if (allInner && name.contains(q)) {
+                tier = TIER_SUBSTRING;
+            } else if (prefixHits >= fuzzyThreshold) {
+                tier = TIER_FUZZY;
+            } else {
+                continue;
+            }
+            long rank = rank(tier, prefixHits, prefixSize, doc);
+            if (best.size() < limit) {
+                best.add(rank);
+            } else if (rank > best.peek()) {
+                best.poll();
+                best.add(rank);
+            }
+        }
+
+        List<ItemSearchResultDTO> results = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            Entry e = entries[MAX_DOCS - 1 - (int) (best.poll() & (MAX_DOCS - 1))];
+            results.add(new ItemSearchResultDTO(e.type(), e.id(), e.productId(), e.name(), e.price()));
+        }
+        Collections.reverse(results);
+        return results;
+    }
+
+    /**
+     * The common type-ahead case: enough names start with the query to fill the page. The names
+     * starting with the query are one range of {@code byName}, and as documents are numbered in
+     * rank order the best of them are the lowest document numbers in that range. Returns null
+     * when there are fewer than {@code limit}, and the full scoring has to run.
+     */
+    private List<ItemSearchResultDTO> namePrefixMatches(String q, int limit) {
+        int from = lowerBound(q);
+        int to = lowerBound(q + Character.MAX_VALUE);
+        if (to - from < limit) return null;
+
+        // Keeps the `limit` lowest document numbers seen so far; the highest sits on top
+        PriorityQueue<Integer> best = new PriorityQueue<>(limit + 1, Comparator.reverseOrder());
+        for (int i = from; i < to; i++) {
+            int doc = byName[i];
+            if (best.size() < limit) {
+                best.add(doc);
+            } else if (doc < best.peek()) {
+                best.poll();
+                best.add(doc);
+            }
+        }
+
+        Integer[] docs = best.toArray(new Integer[0]);
+        Arrays.sort(docs);
+        List<ItemSearchResultDTO> results = new ArrayList<>(docs.length);
+        for (int doc : docs) {
+            Entry e = entries[doc];
+            results.add(new ItemSearchResultDTO(e.type(), e.id(), e.productId(), e.name(), e.price()));
+        }
+        return results;
+    }
+
+    // First position in byName whose name is not before key
+    private int lowerBound(String key) {
+        int low = 0, high = byName.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (normalized[byName[mid]].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Tier, then trigram similarity, then document number (lower is better) packed into one long
+    private static long rank(int tier, int hits, int queryTrigrams, int doc) {
+        long similarity = (long) hits * 0xFFFF / queryTrigrams;
+        return ((long) tier << 48) | (similarity << 24) | (MAX_DOCS - 1 - doc);
+    }
+
+    // The inner trigrams of a query word are among its padded ones, so one walk over the prefix
+    // postings counts both. With onlyFound, documents without a hit so far are left out.
+    private void count(Set<Long> trigrams, Set<Long> innerTrigrams, int[] hits, boolean onlyFound) {
+        for (long trigram : trigrams) {
+            int[] docs = postings.get(trigram);
+            if (docs == null) continue;
+            int increment = innerTrigrams.contains(trigram) ? (1 << 16) + 1 : 1;
+            for (int doc : docs) {
+                if (onlyFound && hits[doc] == 0) continue;
+                hits[doc] += increment;
+            }
+        }
+    }
+
+    // Lower case, accents stripped and anything but letters and digits turned into single spaces
+    static String normalize(String text) {
+        if (text == null) return "";
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder out = new StringBuilder(decomposed.length());
+        boolean space = true;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            if (Character.isLetterOrDigit(c)) {
+                out.append(Character.toLowerCase(c));
+                space = false;
+            } else if (!space) {
+                out.append(' ');
+                space = true;
+            }
+        }
+        int end = out.length();
+        if (end > 0 && out.charAt(end - 1) == ' ') out.setLength(end - 1);
+        return out.toString();
+    }
+
+    private static List<String> words(String normalized) {
+        return normalized.isEmpty() ? List.of() : Arrays.asList(normalized.split(" "));
+    }
+
+    private static void addTrigrams(Set<Long> into, String text) {
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            into.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+        }
+    }
+
+}
@@ -0,0 +1,152 @@
+package vu.software_project.sdp.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import vu.software_project.sdp.DTOs.item.ItemSearchResultDTO;
+import vu.software_project.sdp.events.CatalogChangedEvent;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Type-ahead search over product, variation and service names. Answers come from an in-memory
+ * {@link CatalogSearchIndex} per merchant; while a merchant has no index at the current catalog
+ * version (first use, or a write just committed) one is built in the background and the query
+ * goes to the pg_trgm indexes in the database instead.
+ */
+@Service
+public class CatalogSearchService {
+
+    public static final int MAX_LIMIT = 50;
+    private static final int MAX_QUERY_LENGTH = 100;
+
+    private final CatalogService catalogService;
+    private final JdbcTemplate jdbcTemplate;
+    private final ThreadPoolTaskExecutor searchIndexExecutor;
+    private final int maxIndexedMerchants;
+
+    private final ConcurrentHashMap<Long, CatalogSearchIndex> indexes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Long> committedVersions = new ConcurrentHashMap<>();
+    private final Set<Long> building = ConcurrentHashMap.newKeySet();
+
+    public CatalogSearchService(
+            CatalogService catalogService,
+            JdbcTemplate jdbcTemplate,
+            ThreadPoolTaskExecutor searchIndexExecutor,
+            @Value("${catalog.search.max-indexed-merchants:1000}") int maxIndexedMerchants
+    ) {
+        this.catalogService = catalogService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.searchIndexExecutor = searchIndexExecutor;
+        this.maxIndexedMerchants = maxIndexedMerchants;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        committedVersions.merge(event.getMerchantId(), event.getVersion(), Math::max);
+        if (indexes.containsKey(event.getMerchantId())) {
+            scheduleBuild(event.getMerchantId());
+        }
+    }
+
+    public List<ItemSearchResultDTO> search(Long merchantId, String query, int limit) {
+        if (query == null || query.isBlank()) {
+            return List.of();
+        }
+        if (query.length() > MAX_QUERY_LENGTH) {
+            query = query.substring(0, MAX_QUERY_LENGTH);
+        }
+        int cappedLimit = Math.max(1, Math.min(limit, MAX_LIMIT));
+
+        CatalogSearchIndex index = indexes.get(merchantId);
+        if (index != null && index.version() >= committedVersions.getOrDefault(merchantId, 0L)) {
+            return index.search(query, cappedLimit);
+        }
+        scheduleBuild(merchantId);
+        return searchDatabase(merchantId, query, cappedLimit);
+    }
+
+    private void scheduleBuild(Long merchantId) {
+        if (!building.add(merchantId)) return;
+        try {
+            searchIndexExecutor.execute(() -> {
+                try {
+                    CatalogSearchIndex built = build(merchantId);
+                    if (indexes.size() >= maxIndexedMerchants && !indexes.containsKey(merchantId)) {
+                        indexes.clear();
+                    }
+                    indexes.merge(merchantId, built, (old, fresh) -> fresh.version() >= old.version() ? fresh : old);
+                } catch (Exception e) {
+                    System.err.println("Failed to build search index for merchant " + merchantId + ": " + e.getMessage());
+                } finally {
+                    building.remove(merchantId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            building.remove(merchantId);
+        }
+    }
+
+    // The version is read before the names, so the index is at least as new as the version says
+    private CatalogSearchIndex build(Long merchantId) {
+        long version = catalogService.getVersion(merchantId);
+        List<CatalogSearchIndex.Entry> entries = jdbcTemplate.query("""
+                SELECT 'PRODUCT' AS type, p.id, NULL AS product_id, p.name, p.price
+                FROM products p WHERE p.merchant_id = ?
+                UNION ALL
+                SELECT 'VARIATION', v.id, v.product_id, p.name || ' ' || v.name, v.price_offset
+                FROM product_variations v JOIN products p ON p.id = v.product_id WHERE p.merchant_id = ?
+                UNION ALL
+                SELECT 'SERVICE_ITEM', s.id, NULL, s.name, s.price
+                FROM services s WHERE s.merchant_id = ?
+                """, (rs, i) -> new CatalogSearchIndex.Entry(
+                        rs.getString("type"),
+                        rs.getLong("id"),
+                        rs.getObject("product_id", Long.class),
+                        rs.getString("name"),
+                        rs.getBigDecimal("price")),
+                merchantId, merchantId, merchantId);
+        return CatalogSearchIndex.build(version, entries);
+    }
+
+    // Products and services use the gin_trgm_ops indexes from schema.sql. Variations match on the
+    // same "product variation" name as the in-memory index, which no index covers, so only the
+    // merchant's own variations are scanned for them.
+    private List<ItemSearchResultDTO> searchDatabase(Long merchantId, String query, int limit) {
+        String q = query.trim();
+        String contains = "%" + q.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        return jdbcTemplate.query("""
+                SELECT type, id, product_id, name, price
+                FROM (
+                    SELECT 'PRODUCT' AS type, p.id, NULL::bigint AS product_id, p.name, p.price
+                    FROM products p
+                    WHERE p.merchant_id = ? AND (p.name ILIKE ? OR p.name % ?)
+                    UNION ALL
+                    SELECT 'VARIATION', v.id, v.product_id, p.name || ' ' || v.name, v.price_offset
+                    FROM product_variations v JOIN products p ON p.id = v.product_id
+                    WHERE p.merchant_id = ? AND ((p.name || ' ' || v.name) ILIKE ? OR (p.name || ' ' || v.name) % ?)
+                    UNION ALL
+                    SELECT 'SERVICE_ITEM', s.id, NULL, s.name, s.price
+                    FROM services s
+                    WHERE s.merchant_id = ? AND (s.name ILIKE ? OR s.name % ?)
+                ) matches
+                ORDER BY lower(name) LIKE lower(?) || '%' DESC, similarity(name, ?) DESC, length(name), name
+                LIMIT ?
+                """, (rs, i) -> new ItemSearchResultDTO(
+                        rs.getString("type"),
+                        rs.getLong("id"),
+                        rs.getObject("product_id", Long.class),
+                        rs.getString("name"),
+                        rs.getBigDecimal("price")),
+                merchantId, contains, q,
+                merchantId, contains, q,
+                merchantId, contains, q,
+                q, q, limit);
+    }
+}
@@ -0,0 +1,94 @@
+package vu.software_project.sdp.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import vu.software_project.sdp.entities.CatalogChange;
+import vu.software_project.sdp.events.CatalogChangedEvent;
+import vu.software_project.sdp.repositories.CatalogChangeRepository;
+import vu.software_project.sdp.repositories.MerchantRepository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * Versioning of a merchant's catalog (products, variations, services and tax rates).
+ * Every catalog write calls {@link #recordChange} inside its own transaction.
+ */
+@Service
+@RequiredArgsConstructor
+public class CatalogService {
+
+    private final MerchantRepository merchantRepository;
+    private final CatalogChangeRepository changeRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final IdAllocator idAllocator;
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Bumps the merchant's catalog version and appends the change to its feed, as part of the
+     * caller's write transaction.
+     */
+    @Transactional
+    public long recordChange(Long merchantId, CatalogChange.EntityType entityType, Object entityId, boolean deleted) {
+        long version = merchantRepository.bumpCatalogVersion(merchantId)
+                .orElseThrow(() -> new IllegalArgumentException("Merchant not found"));
+
+        CatalogChange change = new CatalogChange();
+        change.setMerchantId(merchantId);
+        change.setVersion(version);
+        change.setEntityType(entityType);
+        change.setEntityId(entityId.toString());
+        change.setDeleted(deleted);
+        change.setChangedAt(OffsetDateTime.now());
+        changeRepository.save(change);
+
+        eventPublisher.publishEvent(new CatalogChangedEvent(merchantId, version));
+        return version;
+    }
+
+    /**
+     * Bulk variant of {@link #recordChange} for imports: one version bump for the whole batch and
+     * the feed entries written with a JDBC batch.
+     */
+    @Transactional
+    public long recordChanges(Long merchantId, CatalogChange.EntityType entityType, List<?> entityIds) {
+        long version = merchantRepository.bumpCatalogVersion(merchantId)
+                .orElseThrow(() -> new IllegalArgumentException("Merchant not found"));
+
+        List<Long> ids = idAllocator.allocate("catalog_changes_seq", 50, entityIds.size());
+        OffsetDateTime now = OffsetDateTime.now();
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO catalog_changes (id, merchant_id, version, entity_type, entity_id, deleted, changed_at) "
+                        + "VALUES (?, ?, ?, ?, ?, false, ?)",
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setLong(1, ids.get(i));
+                        ps.setLong(2, merchantId);
+                        ps.setLong(3, version);
+                        ps.setString(4, entityType.name());
+                        ps.setString(5, entityIds.get(i).toString());
+                        ps.setObject(6, now);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return entityIds.size();
+                    }
+                });
+
+        eventPublisher.publishEvent(new CatalogChangedEvent(merchantId, version));
+        return version;
+    }
+
+    @Transactional(readOnly = true)
+    public long getVersion(Long merchantId) {
+        return merchantRepository.findCatalogVersion(merchantId).orElse(0L);
+    }
+}
@@ -0,0 +1,65 @@
+package vu.software_project.sdp.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import vu.software_project.sdp.DTOs.item.ItemResponseDTO;
+import vu.software_project.sdp.events.CatalogChangedEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serialized item list per merchant, tagged with the catalog version it was built at.
+ * A cached snapshot is only served while no newer change has committed, so one built
+ * concurrently with a write can never outlive it.
+ */
+@Service
+@RequiredArgsConstructor
+public class CatalogSnapshotService {
+
+    private final CatalogService catalogService;
+    private final ProductService productService;
+    private final ServiceItemService serviceItemService;
+    private final ObjectMapper objectMapper;
+
+    private final ConcurrentHashMap<Long, CatalogSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Long> committedVersions = new ConcurrentHashMap<>();
+
+    public record CatalogSnapshot(long version, byte[] json) {
+        public String etag() {
+            return "\"catalog-" + version + "\"";
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        committedVersions.merge(event.getMerchantId(), event.getVersion(), Math::max);
+    }
+
+    public CatalogSnapshot getSnapshot(Long merchantId) {
+        CatalogSnapshot cached = snapshots.get(merchantId);
+        if (cached != null && cached.version() >= committedVersions.getOrDefault(merchantId, 0L)) {
+            return cached;
+        }
+        CatalogSnapshot built = build(merchantId);
+        return snapshots.merge(merchantId, built, (old, fresh) -> fresh.version() >= old.version() ? fresh : old);
+    }
+
+    // The version is read before the items, so the items are at least as new as the version says
+    private CatalogSnapshot build(Long merchantId) {
+        long version = catalogService.getVersion(merchantId);
+
+        List<ItemResponseDTO> items = new ArrayList<>(productService.getProductsByMerchant(merchantId));
+        items.addAll(serviceItemService.getServiceItemsByMerchant(merchantId));
+        try {
+            return new CatalogSnapshot(version, objectMapper.writeValueAsBytes(items));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize catalog", e);
+        }
+    }
+}
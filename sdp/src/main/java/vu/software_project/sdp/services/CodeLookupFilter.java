@@ -0,0 +1,198 @@
+package vu.software_project.sdp.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import vu.software_project.sdp.util.BloomFilter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-merchant Bloom filters over valid gift card and discount codes, so codes that were
+ * never issued are rejected without a database round-trip.
+ * <p>
+ * The filters are rebuilt from the database on startup and kept current by the services that
+ * issue and delete codes. Deleted codes stay in the filter (they just fall through to the
+ * database) until enough of them pile up to trigger a rebuild. The filters only see codes
+ * issued through this instance, so this assumes a single application node.
+ */
+@Component
+public class CodeLookupFilter {
+
+    public enum Kind {
+        GIFT_CARD("gift_cards"),
+        DISCOUNT("discounts");
+
+        private final String table;
+
+        Kind(String table) {
+            this.table = table;
+        }
+    }
+
+    private static final double TARGET_FALSE_POSITIVE_RATE = 0.01;
+    private static final int MIN_CAPACITY = 1024;
+    // Codes added this recently are replayed into rebuilt filters, covering transactions still in flight
+    private static final long RECENT_WINDOW_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Kind, Map<Long, MerchantFilter>> filters = new EnumMap<>(Kind.class);
+    private final Map<Kind, Counter> rejected = new EnumMap<>(Kind.class);
+    private final Map<Kind, Counter> passed = new EnumMap<>(Kind.class);
+    private final Map<Kind, Counter> falsePositives = new EnumMap<>(Kind.class);
+    private volatile boolean ready = false;
+
+    public CodeLookupFilter(JdbcTemplate jdbcTemplate, MeterRegistry registry) {
+        this.jdbcTemplate = jdbcTemplate;
+        for (Kind kind : Kind.values()) {
+            String tag = kind.name().toLowerCase();
+            filters.put(kind, new ConcurrentHashMap<>());
+            rejected.put(kind, registry.counter("code_filter.lookups", "kind", tag, "result", "rejected"));
+            passed.put(kind, registry.counter("code_filter.lookups", "kind", tag, "result", "passed"));
+            falsePositives.put(kind, registry.counter("code_filter.lookups", "kind", tag, "result", "false_positive"));
+
+            Gauge.builder("code_filter.memory", this, f -> f.memoryBytes(kind))
+                    .tag("kind", tag).baseUnit("bytes").register(registry);
+            Gauge.builder("code_filter.expected_fpp", this, f -> f.expectedFalsePositiveRate(kind))
+                    .tag("kind", tag).register(registry);
+            Gauge.builder("code_filter.observed_fpp", this, f -> f.observedFalsePositiveRate(kind))
+                    .tag("kind", tag).register(registry);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildAll() {
+        for (Kind kind : Kind.values()) {
+            Set<Long> merchantIds = new HashSet<>(filters.get(kind).keySet());
+            merchantIds.addAll(jdbcTemplate.queryForList(
+                    "SELECT DISTINCT merchant_id FROM " + kind.table, Long.class));
+            for (Long merchantId : merchantIds) {
+                rebuild(kind, merchantId, 0);
+            }
+        }
+        ready = true;
+    }
+
+    /** False means the code was never issued for this merchant; true means ask the database. */
+    public boolean mightExist(Kind kind, Long merchantId, String code) {
+        if (!ready || code == null) {
+            return true;
+        }
+        MerchantFilter filter = filters.get(kind).get(merchantId);
+        boolean maybe = filter != null && filter.bloom.mightContain(code);
+        (maybe ? passed : rejected).get(kind).increment();
+        return maybe;
+    }
+
+    /** Call when the database said "not found" for a code the filter let through. */
+    public void recordFalsePositive(Kind kind) {
+        falsePositives.get(kind).increment();
+    }
+
+    // Register codes before inserting them, so there is no window where a valid code is rejected.
+    // Rows without a code (automatic discounts) have nothing to look up and are skipped.
+    public void add(Kind kind, Long merchantId, String code) {
+        if (code == null) return;
+        addAll(kind, merchantId, List.of(code));
+    }
+
+    public void addAll(Kind kind, Long merchantId, Collection<String> codes) {
+        MerchantFilter filter = filters.get(kind).compute(merchantId, (id, current) -> {
+            MerchantFilter target = current != null ? current : new MerchantFilter(MIN_CAPACITY);
+            codes.stream().filter(Objects::nonNull).forEach(target::add);
+            return target;
+        });
+        if (filter.entries.get() > filter.bloom.capacity()) {
+            rebuild(kind, merchantId, filter.entries.get());
+        }
+    }
+
+    public void remove(Kind kind, Long merchantId, String code) {
+        if (code == null) return;
+        MerchantFilter filter = filters.get(kind).get(merchantId);
+        if (filter == null) return;
+        filter.entries.decrementAndGet();
+        if (filter.removed.incrementAndGet() > filter.bloom.capacity() / 4) {
+            rebuild(kind, merchantId, 0);
+        }
+    }
+
+    private void rebuild(Kind kind, Long merchantId, long minimumEntries) {
+        List<String> codes = jdbcTemplate.queryForList(
+                "SELECT code FROM " + kind.table + " WHERE merchant_id = ? AND code IS NOT NULL", String.class, merchantId);
+        long expected = Math.max(codes.size(), minimumEntries);
+        MerchantFilter fresh = new MerchantFilter((int) Math.min(Integer.MAX_VALUE, Math.max(MIN_CAPACITY, expected * 2)));
+        codes.forEach(fresh::add);
+
+        filters.get(kind).compute(merchantId, (id, current) -> {
+            if (current != null) {
+                current.replayRecentInto(fresh);
+            }
+            return fresh;
+        });
+    }
+
+    private long memoryBytes(Kind kind) {
+        return filters.get(kind).values().stream().mapToLong(f -> f.bloom.sizeInBytes()).sum();
+    }
+
+    private double expectedFalsePositiveRate(Kind kind) {
+        return filters.get(kind).values().stream()
+                .mapToDouble(f -> f.bloom.expectedFalsePositiveRate(f.entries.get() + f.removed.get()))
+                .max().orElse(0);
+    }
+
+    private double observedFalsePositiveRate(Kind kind) {
+        double fp = falsePositives.get(kind).count();
+        double negatives = fp + rejected.get(kind).count();
+        return negatives == 0 ? 0 : fp / negatives;
+    }
+
+    private static class MerchantFilter {
+        private final BloomFilter bloom;
+        private final AtomicLong entries = new AtomicLong();
+        private final AtomicLong removed = new AtomicLong();
+        private final ConcurrentLinkedDeque<RecentCode> recent = new ConcurrentLinkedDeque<>();
+
+        private MerchantFilter(int capacity) {
+            this.bloom = new BloomFilter(capacity, TARGET_FALSE_POSITIVE_RATE);
+        }
+
+        private void add(String code) {
+            bloom.put(code);
+            entries.incrementAndGet();
+            long now = System.nanoTime();
+            recent.addLast(new RecentCode(code, now));
+            RecentCode oldest;
+            while ((oldest = recent.peekFirst()) != null && now - oldest.addedAt > RECENT_WINDOW_NANOS) {
+                recent.pollFirst();
+            }
+        }
+
+        private void replayRecentInto(MerchantFilter target) {
+            List<RecentCode> snapshot = new ArrayList<>(recent);
+            for (RecentCode r : snapshot) {
+                target.bloom.put(r.code);
+                target.recent.addLast(r);
+            }
+        }
+    }
+
+    private record RecentCode(String code, long addedAt) {
+    }
+}
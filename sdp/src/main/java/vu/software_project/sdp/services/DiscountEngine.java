@@ -0,0 +1,55 @@
+package vu.software_project.sdp.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import vu.software_project.sdp.repositories.DiscountRepository;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps each merchant's discounts compiled into {@link DiscountRules}, so pricing an order does
+ * not query the discounts table. Discount writes go through {@link #evict(Long)}; a compile that
+ * started before an eviction is not cached, so it cannot bring back the old rules.
+ */
+@Component
+public class DiscountEngine {
+
+    private final DiscountRepository discountRepository;
+    private final int maxCachedMerchants;
+
+    private final ConcurrentHashMap<Long, Compiled> rules = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Long> generations = new ConcurrentHashMap<>();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public DiscountEngine(
+            DiscountRepository discountRepository,
+            @Value("${discounts.max-cached-merchants:1000}") int maxCachedMerchants
+    ) {
+        this.discountRepository = discountRepository;
+        this.maxCachedMerchants = maxCachedMerchants;
+    }
+
+    private record Compiled(long generation, DiscountRules rules) {
+    }
+
+    public DiscountRules getRules(Long merchantId) {
+        long generation = generations.getOrDefault(merchantId, 0L);
+        Compiled cached = rules.get(merchantId);
+        if (cached != null && cached.generation() == generation) {
+            return cached.rules();
+        }
+        DiscountRules compiled = DiscountRules.compile(discountRepository.findByMerchantId(merchantId));
+        if (rules.size() >= maxCachedMerchants && !rules.containsKey(merchantId)) {
+            rules.clear();
+        }
+        rules.merge(merchantId, new Compiled(generation, compiled),
+                (old, fresh) -> fresh.generation() >= old.generation() ? fresh : old);
+        return compiled;
+    }
+
+    public void evict(Long merchantId) {
+        generations.put(merchantId, evictions.incrementAndGet());
+        rules.remove(merchantId);
+    }
+}
@@ -0,0 +1,20 @@
+package vu.software_project.sdp.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports redemptions made on this node to the shared counters and hands back idle leases.
+ */
+@Component
+@RequiredArgsConstructor
+public class DiscountRedemptionJob {
+
+    private final RedemptionLimiter redemptionLimiter;
+
+    @Scheduled(fixedDelayString = "${discounts.redemptions.reconcile-interval-ms:10000}")
+    public void reconcile() {
+        redemptionLimiter.reconcile(false);
+    }
+}
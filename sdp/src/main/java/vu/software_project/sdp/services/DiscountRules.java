@@ -0,0 +1,146 @@
+package vu.software_project.sdp.services;
+
+import vu.software_project.sdp.entities.Discount;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * A merchant's discounts compiled for evaluation: automatic product discounts keyed by product id,
+ * automatic discounts for every product, automatic order discounts, and every discount by id for
+ * codes the cashier applied by hand.
+ * <p>
+ * A line gets at most one discount and so does the order. Each picks whichever valid candidate
+ * saves the most, looking only at that line's own rules, so a cart is evaluated in one pass and a
+ * changed line can be re-evaluated on its own.
+ */
+public final class DiscountRules {
+
+    private static final BigDecimal HUNDRED = new BigDecimal("100");
+
+    public record Rule(String id, String code, Discount.Type type, Discount.Scope scope, BigDecimal value,
+                       Long productId, LocalDateTime validFrom, LocalDateTime validTo,
+                       Integer maxRedemptions, Integer maxRedemptionsPerDay) {
+
+        public boolean isLimited() {
+            return maxRedemptions != null || maxRedemptionsPerDay != null;
+        }
+
+        boolean isValidAt(LocalDateTime now) {
+            return (validFrom == null || !now.isBefore(validFrom)) && (validTo == null || !now.isAfter(validTo));
+        }
+
+        // Never more than the base it applies to
+        BigDecimal amountOn(BigDecimal base) {
+            BigDecimal amount = type == Discount.Type.FIXED_AMOUNT
+                    ? value
+                    : base.multiply(value).divide(HUNDRED, 2, RoundingMode.HALF_UP);
+            return amount.compareTo(base) > 0 ? base : amount;
+        }
+    }
+
+    public record Applied(Rule rule, BigDecimal amount) {
+    }
+
+    private static final Rule[] NONE = new Rule[0];
+
+    private final Map<String, Rule> byId;
+    private final Map<Long, Rule[]> productRules;
+    private final Rule[] allProductRules;
+    private final Rule[] orderRules;
+
+    private DiscountRules(Map<String, Rule> byId, Map<Long, Rule[]> productRules, Rule[] allProductRules, Rule[] orderRules) {
+        this.byId = byId;
+        this.productRules = productRules;
+        this.allProductRules = allProductRules;
+        this.orderRules = orderRules;
+    }
+
+    public static DiscountRules compile(Collection<Discount> discounts) {
+        Map<String, Rule> byId = new HashMap<>();
+        Map<Long, List<Rule>> productRules = new HashMap<>();
+        List<Rule> allProductRules = new ArrayList<>();
+        List<Rule> orderRules = new ArrayList<>();
+
+        for (Discount d : discounts) {
+            Rule rule = new Rule(d.getId(), d.getCode(), d.getType(), d.getScope(), d.getValue(),
+                    d.getScope() == Discount.Scope.PRODUCT ? d.getProductId() : null,
+                    d.getValidFrom(), d.getValidTo(), d.getMaxRedemptions(), d.getMaxRedemptionsPerDay());
+            byId.put(rule.id(), rule);
+            if (!d.isAutomatic()) continue;
+
+            if (d.getScope() == Discount.Scope.ORDER) {
+                orderRules.add(rule);
+            } else if (d.getProductId() == null) {
+                allProductRules.add(rule);
+            } else {
+                productRules.computeIfAbsent(d.getProductId(), id -> new ArrayList<>()).add(rule);
+            }
+        }
+
+        Map<Long, Rule[]> compiled = new HashMap<>(productRules.size() * 2);
+        productRules.forEach((productId, rules) -> compiled.put(productId, rules.toArray(NONE)));
+        return new DiscountRules(Map.copyOf(byId), compiled, allProductRules.toArray(NONE), orderRules.toArray(NONE));
+    }
+
+    public Optional<Rule> get(String discountId) {
+        return Optional.ofNullable(discountId).map(byId::get);
+    }
+
+    public Optional<Applied> bestForLine(Long productId, String manualDiscountId, BigDecimal lineGross, LocalDateTime now) {
+        return bestForLine(productId, manualDiscountId, lineGross, now, rule -> true);
+    }
+
+    /**
+     * Best discount for one line: its automatic rules or the code applied to it by hand,
+     * whichever saves more. Rules that {@code available} rejects, such as ones out of
+     * redemptions, are skipped. Empty when nothing applies.
+     */
+    public Optional<Applied> bestForLine(Long productId, String manualDiscountId, BigDecimal lineGross, LocalDateTime now,
+                                         Predicate<Rule> available) {
+        Applied best = null;
+        best = better(best, manualRule(manualDiscountId, Discount.Scope.PRODUCT, productId), lineGross, now, available);
+        for (Rule rule : productRules.getOrDefault(productId, NONE)) {
+            best = better(best, rule, lineGross, now, available);
+        }
+        for (Rule rule : allProductRules) {
+            best = better(best, rule, lineGross, now, available);
+        }
+        return Optional.ofNullable(best);
+    }
+
+    public Optional<Applied> bestForOrder(String manualDiscountId, BigDecimal orderTotal, LocalDateTime now) {
+        return bestForOrder(manualDiscountId, orderTotal, now, rule -> true);
+    }
+
+    // Same for the whole order, on the total after line discounts and tax
+    public Optional<Applied> bestForOrder(String manualDiscountId, BigDecimal orderTotal, LocalDateTime now,
+                                          Predicate<Rule> available) {
+        Applied best = better(null, manualRule(manualDiscountId, Discount.Scope.ORDER, null), orderTotal, now, available);
+        for (Rule rule : orderRules) {
+            best = better(best, rule, orderTotal, now, available);
+        }
+        return Optional.ofNullable(best);
+    }
+
+    // A hand-applied code was checked when it was applied; it is skipped if it no longer fits
+    private Rule manualRule(String discountId, Discount.Scope scope, Long productId) {
+        Rule rule = discountId != null ? byId.get(discountId) : null;
+        if (rule == null || rule.scope() != scope) return null;
+        if (rule.productId() != null && !rule.productId().equals(productId)) return null;
+        return rule;
+    }
+
+    private static Applied better(Applied best, Rule candidate, BigDecimal base, LocalDateTime now,
+                                  Predicate<Rule> available) {
+        if (candidate == null || !candidate.isValidAt(now) || base.signum() <= 0) return best;
+        BigDecimal amount = candidate.amountOn(base);
+        if (amount.signum() <= 0) return best;
+        if (best != null && amount.compareTo(best.amount()) <= 0) return best;
+        if (candidate.isLimited() && !available.test(candidate)) return best;
+        return new Applied(candidate, amount);
+    }
+}
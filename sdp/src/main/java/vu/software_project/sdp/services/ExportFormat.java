@@ -0,0 +1,26 @@
+package vu.software_project.sdp.services;
+
+/**
+ * File formats of the streaming imports and exports: CSV with a header row, or one JSON object
+ * per line.
+ */
+public enum ExportFormat {
+    CSV, NDJSON;
+
+    public static ExportFormat parse(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported format. Use 'csv' or 'ndjson'");
+        }
+    }
+
+    // RFC 4180 quoting, only where the value needs it; null is written as an empty field
+    public static String csvValue(String value) {
+        if (value == null) return "";
+        if (value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+}
@@ -0,0 +1,107 @@
+package vu.software_project.sdp.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Turns gift card sequence numbers into printable codes like {@code GC-7KQ2-M9XD-4}.
+ * <p>
+ * The sequence number goes through a keyed Feistel permutation over 40 bits, so codes are
+ * unique by construction (no collision checks needed) while consecutive cards don't get
+ * guessable neighbouring codes. The 40 bits are written as 8 Crockford base32 characters
+ * followed by a Luhn mod 32 check character that catches typos before any lookup.
+ * <p>
+ * The secret must never change once codes have been issued with it, and has no default: anyone
+ * who knows it can enumerate valid codes from the sequence.
+ */
+@Component
+public class GiftCardCodeGenerator {
+
+    private static final String ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ";
+    private static final String PREFIX = "GC-";
+    private static final int HALF_BITS = 20;
+    private static final int HALF_MASK = (1 << HALF_BITS) - 1;
+    private static final long MAX_SEQUENCE = 1L << (2 * HALF_BITS);
+    private static final int ROUNDS = 4;
+
+    private final long[] roundKeys = new long[ROUNDS];
+
+    public GiftCardCodeGenerator(@Value("${gift-cards.code-secret}") String secret) {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException("gift-cards.code-secret must be set");
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8));
+            ByteBuffer buffer = ByteBuffer.wrap(digest);
+            for (int i = 0; i < ROUNDS; i++) {
+                roundKeys[i] = buffer.getLong();
+            }
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public String codeFor(long sequenceValue) {
+        if (sequenceValue < 0 || sequenceValue >= MAX_SEQUENCE) {
+            throw new IllegalArgumentException("Gift card sequence exhausted");
+        }
+        long permuted = permute(sequenceValue);
+
+        char[] body = new char[8];
+        for (int i = body.length - 1; i >= 0; i--) {
+            body[i] = ALPHABET.charAt((int) (permuted & 31));
+            permuted >>>= 5;
+        }
+        String digits = new String(body);
+        return PREFIX + digits.substring(0, 4) + "-" + digits.substring(4) + "-" + checkCharacter(digits);
+    }
+
+    // Cheap shape + checksum test for codes issued by this generator
+    public boolean isWellFormed(String code) {
+        if (code == null || code.length() != 14 || !code.startsWith(PREFIX)
+                || code.charAt(7) != '-' || code.charAt(12) != '-') {
+            return false;
+        }
+        String digits = code.substring(3, 7) + code.substring(8, 12);
+        for (int i = 0; i < digits.length(); i++) {
+            if (ALPHABET.indexOf(digits.charAt(i)) < 0) return false;
+        }
+        return checkCharacter(digits) == code.charAt(13);
+    }
+
+    private long permute(long value) {
+        int left = (int) (value >>> HALF_BITS) & HALF_MASK;
+        int right = (int) value & HALF_MASK;
+        for (int round = 0; round < ROUNDS; round++) {
+            int next = left ^ roundFunction(right, roundKeys[round]);
+            left = right;
+            right = next;
+        }
+        return ((long) left << HALF_BITS) | right;
+    }
+
+    private static int roundFunction(int half, long key) {
+        long x = (half ^ key) * 0x9E3779B97F4A7C15L;
+        x ^= x >>> 31;
+        x *= 0xBF58476D1CE4E5B9L;
+        x ^= x >>> 29;
+        return (int) x & HALF_MASK;
+    }
+
+    // Luhn mod N over the base32 alphabet
+    private static char checkCharacter(String digits) {
+        int factor = 2;
+        int sum = 0;
+        for (int i = digits.length() - 1; i >= 0; i--) {
+            int addend = factor * ALPHABET.indexOf(digits.charAt(i));
+            factor = factor == 2 ? 1 : 2;
+            sum += addend / 32 + addend % 32;
+        }
+        return ALPHABET.charAt((32 - sum % 32) % 32);
+    }
+}
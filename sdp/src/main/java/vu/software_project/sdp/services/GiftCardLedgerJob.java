@@ -0,0 +1,33 @@
+package vu.software_project.sdp.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodic gift card ledger maintenance: folds refund credits into the balance snapshots
+ * and expires cards past their expiry date.
+ */
+@Component
+@RequiredArgsConstructor
+public class GiftCardLedgerJob {
+
+    private final GiftCardService giftCardService;
+
+    @Scheduled(fixedDelayString = "${gift-cards.compaction-interval-ms:300000}")
+    public void compactPendingCredits() {
+        // One transaction per card so a busy card does not hold up the rest
+        for (String code : giftCardService.getCodesWithPendingCredits()) {
+            try {
+                giftCardService.foldPendingCredits(code);
+            } catch (Exception e) {
+                System.err.println("Gift card credit compaction failed for " + code + ": " + e.getMessage());
+            }
+        }
+    }
+
+    @Scheduled(cron = "${gift-cards.expiry-cron:0 5 0 * * *}")
+    public void expireCards() {
+        giftCardService.expireDueCards();
+    }
+}
@@ -1,21 +1,39 @@
 package vu.software_project.sdp.services;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import vu.software_project.sdp.DTOs.payments.giftcard.GiftCardRedemptionDTO;
 import vu.software_project.sdp.entities.GiftCard;
+import vu.software_project.sdp.entities.GiftCardTransaction;
 import vu.software_project.sdp.repositories.GiftCardRepository;
+import vu.software_project.sdp.repositories.GiftCardRepository.Redemption;
+import vu.software_project.sdp.repositories.GiftCardTransactionRepository;
+import vu.software_project.sdp.repositories.GiftCardTransactionRepository.PendingCredit;
 
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class GiftCardService {
 
     private final GiftCardRepository giftCardRepository;
+    private final GiftCardTransactionRepository transactionRepository;
+    private final GiftCardCodeGenerator codeGenerator;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CodeLookupFilter codeFilter;
+
+    public static final int MAX_BULK_COUNT = 100_000;
+    private static final int BULK_CHUNK_SIZE = 1_000;
 
     @Transactional
     public GiftCard createGiftCard(Long merchantId, BigDecimal amount) {
@@ -24,14 +42,79 @@ public class GiftCardService {
         }
 
         GiftCard gc = new GiftCard();
-        gc.setCode("GC-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase());
+        gc.setCode(nextCodes(1).get(0));
+        codeFilter.add(CodeLookupFilter.Kind.GIFT_CARD, merchantId, gc.getCode());
         gc.setMerchantId(merchantId);
         gc.setInitialBalance(amount);
         gc.setCurrentBalance(amount);
         gc.setActive(true);
         gc.setCreatedAt(OffsetDateTime.now());
 
-        return giftCardRepository.save(gc);
+        GiftCard saved = giftCardRepository.save(gc);
+        record(saved.getCode(), merchantId, GiftCardTransaction.Type.ISSUE, amount, null);
+        return saved;
+    }
+
+    public void validateBulkRequest(Integer count, BigDecimal amount) {
+        if (amount == null || amount.signum() <= 0) {
+            throw new IllegalArgumentException("Gift card amount must be positive");
+        }
+        if (count == null || count <= 0 || count > MAX_BULK_COUNT) {
+            throw new IllegalArgumentException("Gift card count must be between 1 and " + MAX_BULK_COUNT);
+        }
+    }
+
+    /**
+     * Issues {@code count} identical cards in chunks. Each chunk is inserted with JDBC batches in
+     * its own transaction and handed to {@code onChunkIssued} once committed, so callers can stream
+     * the codes out without holding the whole order in memory.
+     */
+    public void issueBulk(Long merchantId, int count, BigDecimal amount, OffsetDateTime expiryDate,
+                          Consumer<List<String>> onChunkIssued) {
+        validateBulkRequest(count, amount);
+
+        for (int issued = 0; issued < count; issued += BULK_CHUNK_SIZE) {
+            int size = Math.min(BULK_CHUNK_SIZE, count - issued);
+            List<String> codes = transactionTemplate.execute(status -> insertChunk(merchantId, size, amount, expiryDate));
+            onChunkIssued.accept(codes);
+        }
+    }
+
+    private List<String> insertChunk(Long merchantId, int size, BigDecimal amount, OffsetDateTime expiryDate) {
+        List<String> codes = nextCodes(size);
+        OffsetDateTime now = OffsetDateTime.now();
+        codeFilter.addAll(CodeLookupFilter.Kind.GIFT_CARD, merchantId, codes);
+
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO gift_cards (code, merchant_id, initial_balance, current_balance, active, expiry_date, created_at) "
+                        + "VALUES (?, ?, ?, ?, true, ?, ?)",
+                codes, size, (ps, code) -> {
+                    ps.setString(1, code);
+                    ps.setLong(2, merchantId);
+                    ps.setBigDecimal(3, amount);
+                    ps.setBigDecimal(4, amount);
+                    ps.setObject(5, expiryDate);
+                    ps.setObject(6, now);
+                });
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO gift_card_transactions (id, gift_card_code, merchant_id, type, amount, created_at) "
+                        + "VALUES (nextval('gift_card_transactions_seq'), ?, ?, 'ISSUE', ?, ?)",
+                codes, size, (ps, code) -> {
+                    ps.setString(1, code);
+                    ps.setLong(2, merchantId);
+                    ps.setBigDecimal(3, amount);
+                    ps.setObject(4, now);
+                });
+        return codes;
+    }
+
+    // Sequence values are never reused, so the derived codes cannot collide
+    private List<String> nextCodes(int count) {
+        return jdbcTemplate.queryForList(
+                        "SELECT nextval('gift_card_code_seq') FROM generate_series(1, ?)", Long.class, count)
+                .stream()
+                .map(codeGenerator::codeFor)
+                .toList();
     }
 
     @Transactional(readOnly = true)
@@ -45,27 +128,161 @@ public class GiftCardService {
             throw new IllegalArgumentException("GIFT_CARD_NOT_FOUND");
         }
         giftCardRepository.deleteById(code);
+        codeFilter.remove(CodeLookupFilter.Kind.GIFT_CARD, merchantId, code);
     }
 
+    /**
+     * Deducts exactly {@code amount} in a single conditional UPDATE, so concurrent
+     * redemptions of the same card can never overdraw it.
+     */
     @Transactional
-    public GiftCard deduct(Long merchantId, String code, BigDecimal amount) {
-        GiftCard card = giftCardRepository.findByCodeAndMerchantId(code, merchantId)
+    public GiftCardRedemptionDTO deduct(Long merchantId, String code, BigDecimal amount, Long orderId) {
+        if (amount == null || amount.signum() <= 0) {
+            throw new IllegalArgumentException("Deduction amount must be positive");
+        }
+        requireKnownCode(merchantId, code);
+        Redemption redemption = giftCardRepository.deductIfSufficient(merchantId, code, amount)
+                .or(() -> foldPendingCredits(code)
+                        ? giftCardRepository.deductIfSufficient(merchantId, code, amount)
+                        : Optional.empty())
+                .orElseThrow(() -> rejectionFor(merchantId, code));
+
+        record(code, merchantId, GiftCardTransaction.Type.REDEEM, amount.negate(), orderId);
+        return new GiftCardRedemptionDTO(redemption.getCharged(), redemption.getBalance());
+    }
+
+    /**
+     * Deducts as much of {@code maxAmount} as the card can cover, in one statement.
+     * Refund credits that are still pending are folded in only when the card comes up short.
+     */
+    @Transactional
+    public GiftCardRedemptionDTO redeem(Long merchantId, String code, BigDecimal maxAmount, Long orderId) {
+        if (maxAmount == null || maxAmount.signum() <= 0) {
+            throw new IllegalArgumentException("Redemption amount must be positive");
+        }
+        requireKnownCode(merchantId, code);
+        Optional<Redemption> first = giftCardRepository.deductUpTo(merchantId, code, maxAmount);
+        BigDecimal charged = first.map(Redemption::getCharged).orElse(BigDecimal.ZERO);
+        BigDecimal balance = first.map(Redemption::getBalance).orElse(BigDecimal.ZERO);
+
+        if (charged.compareTo(maxAmount) < 0 && foldPendingCredits(code)) {
+            Optional<Redemption> topUp = giftCardRepository.deductUpTo(merchantId, code, maxAmount.subtract(charged));
+            if (topUp.isPresent()) {
+                charged = charged.add(topUp.get().getCharged());
+                balance = topUp.get().getBalance();
+            }
+        }
+        if (charged.signum() == 0) {
+            throw rejectionFor(merchantId, code);
+        }
+
+        record(code, merchantId, GiftCardTransaction.Type.REDEEM, charged.negate(), orderId);
+        return new GiftCardRedemptionDTO(charged, balance);
+    }
+
+    /**
+     * Credits a refund back to the card as a ledger entry only. The card row is not
+     * rewritten; the credit is folded into the balance by {@link #foldPendingCredits}.
+     */
+    @Transactional
+    public void credit(Long merchantId, String code, BigDecimal amount, Long orderId) {
+        if (amount == null || amount.signum() <= 0) {
+            throw new IllegalArgumentException("Credit amount must be positive");
+        }
+        giftCardRepository.lockForCredit(merchantId, code)
                 .orElseThrow(() -> new IllegalArgumentException("GIFT_CARD_NOT_FOUND"));
+        record(code, merchantId, GiftCardTransaction.Type.REFUND, amount, orderId);
+    }
+
+    /**
+     * Folds pending refund credits of a card into its balance snapshot. Credits on a card that has
+     * expired are voided instead, with an EXPIRE entry so the ledger still sums to the balance.
+     * Returns whether anything was added to the balance.
+     */
+    @Transactional
+    public boolean foldPendingCredits(String code) {
+        if (giftCardRepository.lockForCompaction(code).isEmpty()) {
+            return false;
+        }
+        Optional<GiftCardRepository.FoldedCredits> folded = giftCardRepository.foldPendingCredits(code);
+        if (folded.isEmpty()) {
+            return false;
+        }
+        if (folded.get().isVoided()) {
+            record(code, folded.get().getMerchantId(), GiftCardTransaction.Type.EXPIRE, folded.get().getAmount().negate(), null);
+            return false;
+        }
+        return true;
+    }
 
-        if (!card.getActive()) throw new IllegalStateException("GIFT_CARD_INACTIVE");
-        if (card.getCurrentBalance().compareTo(amount) < 0)
-            throw new IllegalArgumentException("INSUFFICIENT_GIFT_CARD_BALANCE");
+    @Transactional
+    public int expireDueCards() {
+        List<GiftCardRepository.Expiry> expired = giftCardRepository.expireDueCards();
+        for (GiftCardRepository.Expiry e : expired) {
+            if (e.getAmount().signum() > 0) {
+                record(e.getCode(), e.getMerchantId(), GiftCardTransaction.Type.EXPIRE, e.getAmount().negate(), null);
+            }
+        }
+        return expired.size();
+    }
 
-        card.setCurrentBalance(card.getCurrentBalance().subtract(amount));
-        if (card.getCurrentBalance().signum() == 0) card.setActive(false);
+    @Transactional(readOnly = true)
+    public List<String> getCodesWithPendingCredits() {
+        return transactionRepository.findCodesWithPendingCredits();
+    }
 
-        return giftCardRepository.save(card);
+    // Balance snapshot plus credits not yet folded in, per card code
+    @Transactional(readOnly = true)
+    public Map<String, BigDecimal> getPendingCredits(Long merchantId) {
+        return transactionRepository.findPendingCreditsByMerchantId(merchantId).stream()
+                .collect(Collectors.toMap(PendingCredit::getCode, PendingCredit::getAmount));
+    }
+
+    @Transactional(readOnly = true)
+    public List<GiftCardTransaction> getTransactions(Long merchantId, String code) {
+        requireKnownCode(merchantId, code);
+        if (!giftCardRepository.existsByCodeAndMerchantId(code, merchantId)) {
+            throw new IllegalArgumentException("GIFT_CARD_NOT_FOUND");
+        }
+        return transactionRepository.findByGiftCardCodeAndMerchantIdOrderByIdAsc(code, merchantId);
+    }
+
+    // Only runs when the conditional update matched nothing, to report why
+    private RuntimeException rejectionFor(Long merchantId, String code) {
+        GiftCard card = giftCardRepository.findByCodeAndMerchantId(code, merchantId).orElse(null);
+        if (card == null) {
+            codeFilter.recordFalsePositive(CodeLookupFilter.Kind.GIFT_CARD);
+            return new IllegalArgumentException("GIFT_CARD_NOT_FOUND");
+        }
+        boolean expired = card.getExpiryDate() != null && !card.getExpiryDate().isAfter(OffsetDateTime.now());
+        if (!card.getActive() || expired) {
+            return new IllegalStateException("GIFT_CARD_INACTIVE");
+        }
+        return new IllegalArgumentException("INSUFFICIENT_GIFT_CARD_BALANCE");
+    }
+
+    // Typos and guessed codes stop here instead of reaching the database
+    private void requireKnownCode(Long merchantId, String code) {
+        if (!codeFilter.mightExist(CodeLookupFilter.Kind.GIFT_CARD, merchantId, code)) {
+            throw new IllegalArgumentException("GIFT_CARD_NOT_FOUND");
+        }
+    }
+
+    private void record(String code, Long merchantId, GiftCardTransaction.Type type, BigDecimal amount, Long orderId) {
+        GiftCardTransaction entry = new GiftCardTransaction();
+        entry.setGiftCardCode(code);
+        entry.setMerchantId(merchantId);
+        entry.setType(type);
+        entry.setAmount(amount);
+        entry.setOrderId(orderId);
+        entry.setCreatedAt(OffsetDateTime.now());
+        transactionRepository.save(entry);
     }
 
     @Transactional(readOnly = true)
     public GiftCard getByCode(Long merchantId, String code) {
+        requireKnownCode(merchantId, code);
         return giftCardRepository.findByCodeAndMerchantId(code, merchantId)
                 .orElseThrow(() -> new IllegalArgumentException("GIFT_CARD_NOT_FOUND"));
     }
 }
-
@@ -0,0 +1,35 @@
+package vu.software_project.sdp.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hands out ids from a pooled sequence for rows inserted with plain JDBC. Follows Hibernate's
+ * pooled optimizer: a {@code nextval} of {@code v} reserves {@code v - blockSize + 1 .. v}, so these
+ * ids never clash with the ones Hibernate takes from the same sequence.
+ */
+@Component
+@RequiredArgsConstructor
+public class IdAllocator {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public List<Long> allocate(String sequence, int blockSize, int count) {
+        List<Long> ids = new ArrayList<>(count);
+        if (count == 0) return ids;
+
+        int blocks = (count + blockSize - 1) / blockSize;
+        List<Long> highs = jdbcTemplate.queryForList(
+                "SELECT nextval(?::regclass) FROM generate_series(1, ?)", Long.class, sequence, blocks);
+        for (Long high : highs) {
+            for (long id = high - blockSize + 1; id <= high && ids.size() < count; id++) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+}
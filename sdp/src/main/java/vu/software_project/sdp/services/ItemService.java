@@ -0,0 +1,102 @@
+package vu.software_project.sdp.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import vu.software_project.sdp.DTOs.item.ItemResponseDTO;
+import vu.software_project.sdp.entities.Product;
+import vu.software_project.sdp.repositories.ProductRepository;
+import vu.software_project.sdp.repositories.ProductRepository.ItemRow;
+
+import java.util.List;
+
+/**
+ * Tells products and service items apart by id. New items of both kinds draw their ids from the
+ * shared {@code item_id_seq}, so an id names exactly one item; ids handed out before that may
+ * exist in both tables, and then the caller has to say which one it means.
+ */
+@Service
+@RequiredArgsConstructor
+public class ItemService {
+
+    private final ProductRepository productRepository;
+    private final ProductService productService;
+    private final ServiceItemService serviceItemService;
+
+    public enum ItemType {
+        PRODUCT,
+        SERVICE_ITEM
+    }
+
+    /**
+     * Loads an item of either kind. With a type this is the lookup of that kind; without one the
+     * lookup over both tables already returns the item, so only a product's variations are read
+     * afterwards, as they are when a product is loaded by type.
+     */
+    @Transactional(readOnly = true)
+    public ItemResponseDTO getItem(Long id, Long merchantId, String requestedType) {
+        if (requestedType != null) {
+            return switch (parse(requestedType)) {
+                case PRODUCT -> productService.getProductById(id, merchantId);
+                case SERVICE_ITEM -> serviceItemService.getServiceItemById(id, merchantId);
+            };
+        }
+
+        ItemRow row = findOne(id, merchantId);
+        return switch (ItemType.valueOf(row.getType())) {
+            case PRODUCT -> {
+                Product product = new Product();
+                product.setId(row.getId());
+                product.setName(row.getName());
+                product.setPrice(row.getPrice());
+                product.setMerchantId(merchantId);
+                product.setTaxRateId(row.getTaxRateId());
+                product.setSku(row.getSku());
+                product.setBarcode(row.getBarcode());
+                yield productService.toResponseDTO(product);
+            }
+            case SERVICE_ITEM -> new ItemResponseDTO(
+                    row.getId(),
+                    row.getName(),
+                    row.getPrice(),
+                    ItemType.SERVICE_ITEM.name(),
+                    row.getTaxRateId(),
+                    null,
+                    row.getDurationMinutes(),
+                    null,
+                    null
+            );
+        };
+    }
+
+    /**
+     * Which kind of item a write targets. A given type is trusted as is, since the write looks the
+     * item up by that type anyway and rejects a missing one.
+     */
+    @Transactional(readOnly = true)
+    public ItemType resolveType(Long id, Long merchantId, String requestedType) {
+        if (requestedType != null) {
+            return parse(requestedType);
+        }
+        return ItemType.valueOf(findOne(id, merchantId).getType());
+    }
+
+    private ItemRow findOne(Long id, Long merchantId) {
+        List<ItemRow> rows = productRepository.findItems(id, merchantId);
+        if (rows.isEmpty()) {
+            throw new IllegalArgumentException("Item not found or access denied");
+        }
+        if (rows.size() > 1) {
+            throw new IllegalArgumentException("Item id " + id + " is both a product and a service item, specify type");
+        }
+        return rows.get(0);
+    }
+
+    private ItemType parse(String type) {
+        try {
+            return ItemType.valueOf(type.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid item type. Use 'PRODUCT' or 'SERVICE_ITEM'");
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package vu.software_project.sdp.services;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+
+/**
+ * Redemption counters in {@code discount_redemption_counters}. Every call runs in its own
+ * transaction: a lease rolled back together with a failed checkout would leave the node holding
+ * redemptions the table no longer counts.
+ */
+@Component
+public class JdbcRedemptionLeaseSource implements RedemptionLeaseSource {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public JdbcRedemptionLeaseSource(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Override
+    public int lease(String discountId, LocalDate day, int cap, int wanted) {
+        Integer granted = transactionTemplate.execute(status -> {
+            // The upsert locks the row until commit; the cap follows the discount's current limit
+            Integer leased = jdbcTemplate.queryForObject(
+                    "INSERT INTO discount_redemption_counters (id, discount_id, day, cap, leased, redeemed) " +
+                            "VALUES (?, ?, ?, ?, 0, 0) " +
+                            "ON CONFLICT (id) DO UPDATE SET cap = EXCLUDED.cap " +
+                            "RETURNING leased",
+                    Integer.class, key(discountId, day), discountId, day, cap);
+            int grant = Math.max(0, Math.min(wanted, cap - leased));
+            if (grant > 0) {
+                jdbcTemplate.update("UPDATE discount_redemption_counters SET leased = leased + ? WHERE id = ?",
+                        grant, key(discountId, day));
+            }
+            return grant;
+        });
+        return granted != null ? granted : 0;
+    }
+
+    @Override
+    public void settle(String discountId, LocalDate day, int redeemed, int released) {
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(
+                "UPDATE discount_redemption_counters SET leased = leased - ?, redeemed = redeemed + ? WHERE id = ?",
+                released, redeemed, key(discountId, day)));
+    }
+
+    private static String key(String discountId, LocalDate day) {
+        return discountId + ":" + (day != null ? day.toString() : "total");
+    }
+}
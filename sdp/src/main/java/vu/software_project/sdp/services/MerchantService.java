@@ -19,6 +19,7 @@ import java.util.stream.Collectors;
 public class MerchantService {
     private final MerchantRepository merchantRepository;
     private final UserRepository userRepository;
+    private final AvailabilityEngine availabilityEngine;
 
     @Transactional
     public MerchantResponseDTO createMerchant(MerchantCreateRequestDTO request) {
@@ -67,6 +68,7 @@ public class MerchantService {
             throw new IllegalArgumentException("Merchant not found");
         }
         merchantRepository.deleteById(id);
+        availabilityEngine.evictMerchant(id);
     }
 
     @Transactional
@@ -81,6 +83,10 @@ public class MerchantService {
         User user = userRepository.findById(userId)
             .orElseThrow(() -> new IllegalArgumentException("User not found"));
 
+        // The new merchant is evicted by StaffChangeListener
+        if (user.getMerchantId() != null && !user.getMerchantId().equals(merchant.getId())) {
+            availabilityEngine.evictMerchant(user.getMerchantId());
+        }
         user.setMerchantId(merchant.getId());
         userRepository.save(user);
     }
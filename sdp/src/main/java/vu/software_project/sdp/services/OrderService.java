@@ -2,17 +2,21 @@ package vu.software_project.sdp.services;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.util.Comparator;
 import java.util.List;
 import java.util.*;
+import java.util.function.Predicate;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import lombok.RequiredArgsConstructor;
-import vu.software_project.sdp.DTOs.item.ItemResponseDTO;
 import vu.software_project.sdp.DTOs.orders.*;
 import vu.software_project.sdp.entities.*;
 import vu.software_project.sdp.repositories.*;
@@ -22,13 +26,16 @@ import vu.software_project.sdp.repositories.*;
 public class OrderService {
 
     private final OrderRepository orderRepository;
-    private final ProductService productService;
     private final PaymentRepository paymentRepository;
-    private final ProductVariationRepository variationRepository;
-    private final TaxRateRepository taxRateRepository;
     private final DiscountRepository discountRepository;
+    private final CodeLookupFilter codeFilter;
     private final AuditService auditService;
     private final ObjectMapper objectMapper;
+    private final BarcodeIndex barcodeIndex;
+    private final SellableResolver sellableResolver;
+    private final DiscountEngine discountEngine;
+    private final RedemptionLimiter redemptionLimiter;
+    private final SalesRollupService salesRollupService;
 
     @Transactional
     public OrderDTO createOrder(CreateOrderRequestDTO request, Long userId, Long merchantId) {
@@ -79,7 +86,17 @@ public class OrderService {
                 .orElseThrow(() -> new IllegalArgumentException("Order not found"));
         order.setStatus(order.getStatus().transitionTo(status));
         order.setUpdatedAt(OffsetDateTime.now());
+        if (status == Order.Status.PAID) {
+            order.setPaidAt(order.getUpdatedAt());
+        } else if (status == Order.Status.CANCELLED) {
+            order.setCancelledAt(order.getUpdatedAt());
+        }
         order = orderRepository.save(order);
+        if (status == Order.Status.PAID) {
+            salesRollupService.recordPaid(order);
+        } else if (status == Order.Status.CANCELLED) {
+            salesRollupService.recordCancelled(order);
+        }
 
         auditService.logAction(
                 userId,
@@ -103,12 +120,12 @@ public class OrderService {
         }
 
         order.getItems().removeIf(item -> item.getId().equals(itemId) && quantity <= 0L);
-        order.getItems().stream()
+        List<OrderItem> changed = order.getItems().stream()
                 .filter(item -> item.getId().equals(itemId))
-                .findFirst()
-                .ifPresent(item -> item.setQuantity(quantity));
+                .toList();
+        changed.forEach(item -> item.setQuantity(quantity));
 
-        calculateAndPersistDiscounts(order);
+        calculateAndPersistDiscounts(order, changed);
         order.setUpdatedAt(OffsetDateTime.now());
         order = orderRepository.save(order);
 
@@ -134,7 +151,7 @@ public class OrderService {
         }
 
         order.getItems().removeIf(item -> item.getId().equals(itemId));
-        calculateAndPersistDiscounts(order);
+        calculateAndPersistDiscounts(order, List.of());
         order.setUpdatedAt(OffsetDateTime.now());
         order = orderRepository.save(order);
 
@@ -160,37 +177,37 @@ public class OrderService {
             throw new IllegalArgumentException("Cannot modify items of an order that is not OPEN");
         }
 
-        ItemResponseDTO item = productService.getProductById(request.getItemId(), merchantId);
+        // Served from memory while the catalog is unchanged
+        SellableResolver.Sellable item = sellableResolver.getProduct(merchantId, request.getItemId());
 
         OrderItem orderItem = new OrderItem();
         orderItem.setOrder(order);
-        orderItem.setItemId(item.getId());
-        orderItem.setName(item.getName());
-        orderItem.setPrice(item.getPrice());
+        orderItem.setItemId(item.productId());
+        orderItem.setName(item.name());
+        orderItem.setPrice(item.price());
         orderItem.setQuantity(request.getQuantity());
 
-        if (item.getTaxRateId() != null) {
-            Optional<TaxRate> rateOpt = taxRateRepository.findById(item.getTaxRateId());
-            if (rateOpt.isPresent()) {
-                orderItem.setTaxRateId(rateOpt.get().getId());
-                orderItem.setAppliedTaxRate(rateOpt.get().getRate());
-            }
+        if (item.taxRate() != null) {
+            orderItem.setTaxRateId(item.taxRate().id());
+            orderItem.setAppliedTaxRate(item.taxRate().rate());
         }
 
         if (request.getVariationId() != null) {
-            ProductVariation variation = variationRepository.findById(request.getVariationId())
-                    .orElseThrow(() -> new IllegalArgumentException("Product variation not found"));
+            SellableResolver.Variation variation = item.variations().get(request.getVariationId());
+            if (variation == null) {
+                throw new IllegalArgumentException("Product variation not found");
+            }
             OrderItemVariation itemVariation = new OrderItemVariation();
             itemVariation.setOrderItem(orderItem);
-            itemVariation.setProductVariationId(variation.getId());
-            itemVariation.setName(variation.getName());
-            itemVariation.setPriceOffset(variation.getPriceOffset());
+            itemVariation.setProductVariationId(variation.id());
+            itemVariation.setName(variation.name());
+            itemVariation.setPriceOffset(variation.priceOffset());
             orderItem.getVariations().add(itemVariation);
         }
 
         order.getItems().add(orderItem);
 
-        calculateAndPersistDiscounts(order);
+        calculateAndPersistDiscounts(order, List.of(orderItem));
         order.setUpdatedAt(OffsetDateTime.now());
         order = orderRepository.save(order);
 
@@ -207,6 +224,26 @@ public class OrderService {
         return mapToOrderDTO(order);
     }
 
+    /**
+     * Resolves a scanned barcode or SKU from memory and adds the product, or the variation the
+     * code belongs to, as a new line.
+     */
+    @Transactional
+    public OrderDTO scanItem(Long orderId, OrderScanRequestDTO request, Long userId, Long merchantId) {
+        BarcodeIndex.ScanTarget target = barcodeIndex.lookup(merchantId, request.getCode())
+                .orElseThrow(() -> new IllegalArgumentException("No product with this barcode or SKU"));
+        long quantity = request.getQuantity() != null ? request.getQuantity() : 1L;
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+
+        OrderAddItemRequestDTO addRequest = new OrderAddItemRequestDTO();
+        addRequest.setItemId(target.productId());
+        addRequest.setVariationId(target.variationId());
+        addRequest.setQuantity(quantity);
+        return addItemToOrder(orderId, addRequest, userId, merchantId);
+    }
+
     @Transactional
     public OrderDTO applyOrderDiscount(Long orderId, String discountCode) {
         Order order = orderRepository.findById(orderId)
@@ -215,8 +252,7 @@ public class OrderService {
         if (discountCode == null || discountCode.trim().isEmpty()) {
             order.setDiscountId(null);
         } else {
-            Discount discount = discountRepository.findByCodeAndMerchantId(discountCode, order.getMerchantId())
-                    .orElseThrow(() -> new IllegalArgumentException("Invalid discount code"));
+            Discount discount = findDiscountByCode(discountCode, order.getMerchantId());
 
             if (!discount.isValid()) throw new IllegalArgumentException("Discount is not valid at this time");
             if (discount.getScope() != Discount.Scope.ORDER) {
@@ -226,7 +262,7 @@ public class OrderService {
             order.setDiscountId(discount.getId());
         }
 
-        calculateAndPersistDiscounts(order);
+        calculateAndPersistDiscounts(order, List.of());
         order = orderRepository.save(order);
         return mapToOrderDTO(order);
     }
@@ -244,8 +280,7 @@ public class OrderService {
         if (discountCode == null || discountCode.trim().isEmpty()) {
             item.setDiscountId(null);
         } else {
-            Discount discount = discountRepository.findByCodeAndMerchantId(discountCode, order.getMerchantId())
-                    .orElseThrow(() -> new IllegalArgumentException("Invalid discount code"));
+            Discount discount = findDiscountByCode(discountCode, order.getMerchantId());
 
             if (!discount.isValid()) throw new IllegalArgumentException("Discount is not valid");
             if (discount.getScope() != Discount.Scope.PRODUCT) {
@@ -258,12 +293,44 @@ public class OrderService {
             item.setDiscountId(discount.getId());
         }
 
-        calculateAndPersistDiscounts(order);
+        calculateAndPersistDiscounts(order, List.of(item));
         order = orderRepository.save(order);
         return mapToOrderDTO(order);
     }
 
-    private void calculateAndPersistDiscounts(Order order) {
+    private Discount findDiscountByCode(String code, Long merchantId) {
+        if (!codeFilter.mightExist(CodeLookupFilter.Kind.DISCOUNT, merchantId, code)) {
+            throw new IllegalArgumentException("Invalid discount code");
+        }
+        return discountRepository.findByCodeAndMerchantId(code, merchantId)
+                .orElseThrow(() -> {
+                    codeFilter.recordFalsePositive(CodeLookupFilter.Kind.DISCOUNT);
+                    return new IllegalArgumentException("Invalid discount code");
+                });
+    }
+
+    /**
+     * Picks the best discount for each changed line and for the order as a whole, from the
+     * merchant's automatic discounts and the codes entered on the order. Lines that did not
+     * change keep the discount they were given, so adding or changing one line of a large
+     * order re-evaluates only that line and the order-wide discounts.
+     */
+    private void calculateAndPersistDiscounts(Order order, Collection<OrderItem> changedLines) {
+        calculateAndPersistDiscounts(order, changedLines, Set.of());
+    }
+
+    // Discounts in `excluded` are not applied to the changed lines or the order, whatever the limiter says
+    private void calculateAndPersistDiscounts(Order order, Collection<OrderItem> changedLines, Set<String> excluded) {
+        DiscountRules rules = discountEngine.getRules(order.getMerchantId());
+        LocalDateTime now = LocalDateTime.now();
+        LocalDate today = now.toLocalDate();
+        // Discounts this order already redeemed stay available to it after the limit is reached
+        Predicate<DiscountRules.Rule> available = rule -> !excluded.contains(rule.id())
+                && (order.getRedeemedDiscountIds().contains(rule.id())
+                || !redemptionLimiter.isExhausted(rule.id(), rule.maxRedemptions(), rule.maxRedemptionsPerDay(), today));
+        Set<OrderItem> changed = Collections.newSetFromMap(new IdentityHashMap<>());
+        changed.addAll(changedLines);
+
         BigDecimal runningSubtotal = BigDecimal.ZERO;
         BigDecimal runningTax = BigDecimal.ZERO;
 
@@ -275,21 +342,12 @@ public class OrderService {
             }
             BigDecimal lineGross = basePrice.multiply(qty);
 
-            BigDecimal itemDiscountVal = BigDecimal.ZERO;
-            if (item.getDiscountId() != null) {
-                Optional<Discount> dOpt = discountRepository.findById(item.getDiscountId());
-                if (dOpt.isPresent()) {
-                    Discount d = dOpt.get();
-                    if (d.getType() == Discount.Type.FIXED_AMOUNT) {
-                        itemDiscountVal = d.getValue();
-                    } else {
-                        itemDiscountVal = lineGross.multiply(d.getValue())
-                                .divide(new BigDecimal("100"), 2, RoundingMode.HALF_UP);
-                    }
-                }
+            if (changed.contains(item) || item.getAppliedDiscountAmount() == null) {
+                Optional<DiscountRules.Applied> best = rules.bestForLine(item.getItemId(), item.getDiscountId(), lineGross, now, available);
+                item.setAppliedDiscountAmount(best.map(DiscountRules.Applied::amount).orElse(BigDecimal.ZERO));
+                item.setAppliedDiscountId(best.map(applied -> applied.rule().id()).orElse(null));
             }
-            if (itemDiscountVal.compareTo(lineGross) > 0) itemDiscountVal = lineGross;
-            item.setAppliedDiscountAmount(itemDiscountVal);
+            BigDecimal itemDiscountVal = item.getAppliedDiscountAmount();
 
             BigDecimal taxable = lineGross.subtract(itemDiscountVal);
             if (item.getAppliedTaxRate() != null) {
@@ -300,24 +358,76 @@ public class OrderService {
             runningSubtotal = runningSubtotal.add(taxable);
         }
 
-        BigDecimal orderDiscountVal = BigDecimal.ZERO;
-        if (order.getDiscountId() != null) {
-            Optional<Discount> dOpt = discountRepository.findById(order.getDiscountId());
-            if (dOpt.isPresent()) {
-                Discount d = dOpt.get();
-                BigDecimal totalBeforeDisc = runningSubtotal.add(runningTax);
+        BigDecimal totalBeforeDisc = runningSubtotal.add(runningTax);
+        Optional<DiscountRules.Applied> best = rules.bestForOrder(order.getDiscountId(), totalBeforeDisc, now, available);
+        order.setAppliedDiscountAmount(best.map(DiscountRules.Applied::amount).orElse(BigDecimal.ZERO));
+        order.setAppliedDiscountId(best.map(applied -> applied.rule().id()).orElse(null));
+    }
 
-                if (d.getType() == Discount.Type.FIXED_AMOUNT) {
-                    orderDiscountVal = d.getValue();
+    /**
+     * Counts the limited discounts on the order against their redemption limits, once per order.
+     * Called before a payment is taken. A discount that ran out after it was applied is taken off
+     * the lines and the order, which are priced again without it, and the payment goes ahead at
+     * the new total. Redemptions taken here are handed back if the transaction does not commit.
+     */
+    public void redeemDiscounts(Order order) {
+        DiscountRules rules = discountEngine.getRules(order.getMerchantId());
+        LocalDate today = LocalDate.now();
+
+        List<DiscountRules.Rule> taken = new ArrayList<>();
+        Set<String> exhausted = new HashSet<>();
+        // Each round either redeems everything applied or rules out at least one more discount
+        while (true) {
+            List<String> ranOut = new ArrayList<>();
+            for (String discountId : appliedDiscountIds(order)) {
+                if (order.getRedeemedDiscountIds().contains(discountId)) continue;
+                DiscountRules.Rule rule = rules.get(discountId).orElse(null);
+                if (rule == null || !rule.isLimited()) continue;
+                if (redemptionLimiter.tryRedeem(rule.id(), rule.maxRedemptions(), rule.maxRedemptionsPerDay(), today)) {
+                    taken.add(rule);
+                    order.getRedeemedDiscountIds().add(rule.id());
                 } else {
-                    orderDiscountVal = totalBeforeDisc.multiply(d.getValue())
-                            .divide(new BigDecimal("100"), 2, RoundingMode.HALF_UP);
+                    ranOut.add(rule.id());
                 }
-
-                if (orderDiscountVal.compareTo(totalBeforeDisc) > 0) orderDiscountVal = totalBeforeDisc;
             }
+            if (ranOut.isEmpty()) break;
+
+            exhausted.addAll(ranOut);
+            List<OrderItem> affected = order.getItems().stream()
+                    .filter(item -> item.getAppliedDiscountId() != null && exhausted.contains(item.getAppliedDiscountId()))
+                    .toList();
+            calculateAndPersistDiscounts(order, affected, exhausted);
+        }
+
+        // Re-pricing can move the order-wide discount off one that was already redeemed
+        Set<String> stillApplied = appliedDiscountIds(order);
+        List<DiscountRules.Rule> unused = taken.stream().filter(r -> !stillApplied.contains(r.id())).toList();
+        unused.forEach(r -> {
+            redemptionLimiter.release(r.id(), r.maxRedemptions(), r.maxRedemptionsPerDay(), today);
+            order.getRedeemedDiscountIds().remove(r.id());
+        });
+        taken.removeAll(unused);
+        if (taken.isEmpty()) return;
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        taken.forEach(r -> redemptionLimiter.release(r.id(), r.maxRedemptions(), r.maxRedemptionsPerDay(), today));
+                    }
+                }
+            });
+        }
+    }
+
+    private static Set<String> appliedDiscountIds(Order order) {
+        Set<String> applied = new LinkedHashSet<>();
+        if (order.getAppliedDiscountId() != null) applied.add(order.getAppliedDiscountId());
+        for (OrderItem item : order.getItems()) {
+            if (item.getAppliedDiscountId() != null) applied.add(item.getAppliedDiscountId());
         }
-        order.setAppliedDiscountAmount(orderDiscountVal);
+        return applied;
     }
 
     public OrderCostInfoDTO calculateOrderCosts(Order order) {
@@ -327,6 +437,7 @@ public class OrderService {
 
         Map<String, BigDecimal> taxAccumulator = new HashMap<>();
         List<String> discountDetails = new ArrayList<>();
+        DiscountRules rules = discountEngine.getRules(order.getMerchantId());
 
         for (OrderItem item : order.getItems()) {
             BigDecimal qty = BigDecimal.valueOf(item.getQuantity());
@@ -354,11 +465,13 @@ public class OrderService {
                 taxAccumulator.put(key, taxAccumulator.getOrDefault(key, BigDecimal.ZERO).add(t));
             }
 
-            if (lineDisc.compareTo(BigDecimal.ZERO) > 0 && item.getDiscountId() != null) {
-                discountRepository.findById(item.getDiscountId()).ifPresent(d -> {
-                    String desc = d.getType() == Discount.Type.PERCENTAGE
-                            ? String.format("%s (%.0f%% on %s): -%s", d.getCode(), d.getValue(), item.getName(), item.getAppliedDiscountAmount())
-                            : String.format("%s (Flat on %s): -%s", d.getCode(), item.getName(), item.getAppliedDiscountAmount());
+            // Lines priced before automatic discounts existed only have the entered code
+            String lineDiscountId = item.getAppliedDiscountId() != null ? item.getAppliedDiscountId() : item.getDiscountId();
+            if (lineDisc.compareTo(BigDecimal.ZERO) > 0 && lineDiscountId != null) {
+                rules.get(lineDiscountId).ifPresent(d -> {
+                    String desc = d.type() == Discount.Type.PERCENTAGE
+                            ? String.format("%s (%.0f%% on %s): -%s", d.code(), d.value(), item.getName(), item.getAppliedDiscountAmount())
+                            : String.format("%s (Flat on %s): -%s", d.code(), item.getName(), item.getAppliedDiscountAmount());
                     discountDetails.add(desc);
                 });
             }
@@ -369,11 +482,12 @@ public class OrderService {
             orderDiscount = BigDecimal.ZERO;
         }
 
-        if (orderDiscount.compareTo(BigDecimal.ZERO) > 0 && order.getDiscountId() != null) {
-            discountRepository.findById(order.getDiscountId()).ifPresent(d -> {
-                String desc = d.getType() == Discount.Type.PERCENTAGE
-                        ? String.format("%s (%.0f%% on Order): -%s", d.getCode(), d.getValue(), order.getAppliedDiscountAmount())
-                        : String.format("%s (Flat on Order): -%s", d.getCode(), order.getAppliedDiscountAmount());
+        String orderDiscountId = order.getAppliedDiscountId() != null ? order.getAppliedDiscountId() : order.getDiscountId();
+        if (orderDiscount.compareTo(BigDecimal.ZERO) > 0 && orderDiscountId != null) {
+            rules.get(orderDiscountId).ifPresent(d -> {
+                String desc = d.type() == Discount.Type.PERCENTAGE
+                        ? String.format("%s (%.0f%% on Order): -%s", d.code(), d.value(), order.getAppliedDiscountAmount())
+                        : String.format("%s (Flat on Order): -%s", d.code(), order.getAppliedDiscountAmount());
                 discountDetails.add(desc);
             });
         }
@@ -387,10 +501,10 @@ public class OrderService {
             String label = "Tax";
             BigDecimal rateVal = BigDecimal.ZERO;
             if (!"unknown".equals(entry.getKey())) {
-                Optional<TaxRate> tr = taxRateRepository.findById(entry.getKey());
+                Optional<SellableResolver.Rate> tr = sellableResolver.getTaxRate(order.getMerchantId(), entry.getKey());
                 if (tr.isPresent()) {
-                    label = tr.get().getName();
-                    rateVal = tr.get().getRate();
+                    label = tr.get().name();
+                    rateVal = tr.get().rate();
                 }
             }
             String line = String.format("%s (%.0f%%): %s", label, rateVal.multiply(BigDecimal.valueOf(100)), entry.getValue().setScale(2, RoundingMode.HALF_UP));
@@ -13,7 +13,7 @@ import vu.software_project.sdp.DTOs.payments.PaymentRequestDTO;
 import vu.software_project.sdp.DTOs.payments.card.CardPaymentResponseDTO;
 import vu.software_project.sdp.DTOs.payments.cash.CashPaymentResponseDTO;
 import vu.software_project.sdp.DTOs.payments.giftcard.GiftCardPaymentResponseDTO;
-import vu.software_project.sdp.entities.GiftCard;
+import vu.software_project.sdp.DTOs.payments.giftcard.GiftCardRedemptionDTO;
 import vu.software_project.sdp.entities.Order;
 import vu.software_project.sdp.entities.Payment;
 import vu.software_project.sdp.entities.Payment.PaymentType;
@@ -35,6 +35,7 @@ public class PaymentService {
     private final OrderService orderService;
     private final AuditService auditService;
     private final ObjectMapper objectMapper;
+    private final SalesRollupService salesRollupService;
 
     @Transactional
     public CashPaymentResponseDTO createCashPayment(Long orderId, PaymentRequestDTO request, Long userId, Long merchantId) {
@@ -43,6 +44,7 @@ public class PaymentService {
         }
 
         Order order = loadOrder(orderId);
+        orderService.redeemDiscounts(order);
 
         OrderCostInfoDTO costInfo = orderService.calculateOrderCosts(order);
         BigDecimal total = costInfo.getTotal();
@@ -68,6 +70,7 @@ public class PaymentService {
         payment.setStatus(Status.SUCCEEDED);
         payment.setCreatedAt(now);
         payment.setUpdatedAt(now);
+        payment.setSucceededAt(now);
 
         payment = paymentRepository.save(payment);
 
@@ -106,6 +109,7 @@ public class PaymentService {
         }
 
         Order order = loadOrder(orderId);
+        orderService.redeemDiscounts(order);
 
         OrderCostInfoDTO costInfo = orderService.calculateOrderCosts(order);
         BigDecimal total = costInfo.getTotal();
@@ -176,8 +180,13 @@ public class PaymentService {
             throw new IllegalArgumentException("Payment not found for Stripe Payment ID: " + stripePaymentId);
         }
 
+        OffsetDateTime now = OffsetDateTime.now();
         payment.setStatus(newStatus);
-        payment.setUpdatedAt(OffsetDateTime.now());
+        payment.setUpdatedAt(now);
+        // Webhooks can be delivered more than once; the first success is when the money was taken
+        if (newStatus == Status.SUCCEEDED && payment.getSucceededAt() == null) {
+            payment.setSucceededAt(now);
+        }
 
         paymentRepository.save(payment);
 
@@ -247,6 +256,7 @@ public class PaymentService {
         }
 
         Order order = loadOrder(orderId);
+        orderService.redeemDiscounts(order);
 
         OrderCostInfoDTO costInfo = orderService.calculateOrderCosts(order);
         BigDecimal total = costInfo.getTotal();
@@ -256,35 +266,25 @@ public class PaymentService {
         Long merchantId = order.getMerchantId();
         String code = request.getGiftCardCode().trim();
 
-        GiftCard before = giftCardService.getByCode(merchantId, code);
-
-        if (!before.getActive()) {
-            throw new IllegalStateException("GIFT_CARD_INACTIVE");
-        }
-
-        BigDecimal cardBalance = before.getCurrentBalance();
-        if (cardBalance == null || cardBalance.signum() <= 0) {
-            throw new IllegalArgumentException("INSUFFICIENT_GIFT_CARD_BALANCE");
+        if (remainingBefore.signum() == 0) {
+            throw new IllegalArgumentException("Order is already fully paid");
         }
 
-        BigDecimal amountToCharge = remainingBefore.min(cardBalance);
-
-        GiftCard card = giftCardService.deduct(
-                merchantId,
-                code,
-                amountToCharge
-        );
+        GiftCardRedemptionDTO redemption = giftCardService.redeem(merchantId, code, remainingBefore, orderId);
+        BigDecimal amountToCharge = redemption.getCharged();
 
         OffsetDateTime now = OffsetDateTime.now();
 
         Payment payment = new Payment();
         payment.setOrderId(orderId);
         payment.setPaymentType(PaymentType.GIFT_CARD);
+        payment.setGiftCardCode(code);
         payment.setAmount(amountToCharge);
         payment.setTip(BigDecimal.ZERO);
         payment.setStatus(Status.SUCCEEDED);
         payment.setCreatedAt(now);
         payment.setUpdatedAt(now);
+        payment.setSucceededAt(now);
 
         payment = paymentRepository.save(payment);
 
@@ -302,8 +302,8 @@ public class PaymentService {
                 .remainingBalance(remainingAfter)
                 .tip(BigDecimal.ZERO)
                 .changeDue(BigDecimal.ZERO)
-                .giftCardCode(card.getCode())
-                .remainingCardBalance(card.getCurrentBalance())
+                .giftCardCode(code)
+                .remainingCardBalance(redemption.getRemainingBalance())
                 .build();
 
     }
@@ -328,7 +328,9 @@ public class PaymentService {
     private void closeOrderIfPaid(Order order, BigDecimal remainingAfter) {
         if (remainingAfter.signum() == 0 && order.getStatus() == Order.Status.OPEN) {
             order.setStatus(Order.Status.PAID);
+            order.setPaidAt(OffsetDateTime.now());
             orderRepository.save(order);
+            salesRollupService.recordPaid(order);
 
             auditService.logAction(
                     null,
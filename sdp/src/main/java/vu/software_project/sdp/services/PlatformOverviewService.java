@@ -0,0 +1,232 @@
+package vu.software_project.sdp.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import vu.software_project.sdp.DTOs.reports.PlatformOverviewDTO;
+import vu.software_project.sdp.DTOs.reports.PlatformOverviewDTO.MerchantSummary;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Platform-wide sales overview for super admins. Every merchant is aggregated as its own task on
+ * the overview executor, whose thread count caps the database connections the dashboard holds;
+ * sales come from the daily rollups and payment failures from the payments of the period.
+ * Results are cached per range for a short time, and concurrent loads of the same range share one
+ * computation.
+ */
+@Service
+public class PlatformOverviewService {
+
+    private static final int MAX_CACHED_RANGES = 32;
+
+    private record Range(LocalDate from, LocalDate to) {
+    }
+
+    private record Cached(CompletableFuture<PlatformOverviewDTO> overview, long expiresAt) {
+    }
+
+    private record MerchantRow(Long id, String name) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ThreadPoolTaskExecutor overviewExecutor;
+    private final ZoneId zone;
+    private final long ttlMillis;
+    private final long timeoutMillis;
+
+    private final ConcurrentHashMap<Range, Cached> cache = new ConcurrentHashMap<>();
+
+    public PlatformOverviewService(
+            JdbcTemplate jdbcTemplate,
+            ThreadPoolTaskExecutor overviewExecutor,
+            SalesRollupService salesRollupService,
+            @Value("${admin.overview.cache-ttl-ms:30000}") long ttlMillis,
+            @Value("${admin.overview.timeout-ms:20000}") long timeoutMillis
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.overviewExecutor = overviewExecutor;
+        this.zone = salesRollupService.getZone();
+        this.ttlMillis = ttlMillis;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public PlatformOverviewDTO getOverview(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        if (from.plusDays(SalesRollupService.MAX_REPORT_DAYS).isBefore(to)) {
+            throw new IllegalArgumentException("At most " + SalesRollupService.MAX_REPORT_DAYS + " days can be requested at once");
+        }
+
+        Range range = new Range(from, to);
+        long now = System.currentTimeMillis();
+        Cached fresh = new Cached(new CompletableFuture<>(), now + ttlMillis);
+        Cached cached = cache.compute(range, (r, existing) ->
+                existing != null && existing.expiresAt() > now && !existing.overview().isCompletedExceptionally()
+                        ? existing
+                        : fresh);
+
+        // Only the caller that installed the future computes it
+        if (cached == fresh) {
+            evictExpired(now);
+            try {
+                fresh.overview().complete(compute(from, to));
+            } catch (RuntimeException e) {
+                fresh.overview().completeExceptionally(e);
+            }
+        }
+
+        try {
+            return cached.overview().get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading the overview", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Overview could not be computed", e);
+        }
+    }
+
+    private PlatformOverviewDTO compute(LocalDate from, LocalDate to) {
+        List<MerchantRow> merchants = jdbcTemplate.query("SELECT id, name FROM merchants ORDER BY id",
+                (rs, n) -> new MerchantRow(rs.getLong("id"), rs.getString("name")));
+
+        OffsetDateTime fromTs = from.atStartOfDay(zone).toOffsetDateTime();
+        OffsetDateTime toTs = to.plusDays(1).atStartOfDay(zone).toOffsetDateTime();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+        // Plain futures of the executor: cancelling one that is still queued means it never runs
+        // its queries, and one that is running is interrupted
+        Map<MerchantRow, Future<MerchantSummary>> tasks = new LinkedHashMap<>();
+        int incomplete = 0;
+        for (MerchantRow merchant : merchants) {
+            try {
+                tasks.put(merchant, overviewExecutor.submit(() -> summarize(merchant, from, to, fromTs, toTs)));
+            } catch (RejectedExecutionException e) {
+                incomplete++;
+                System.err.println("Overview aggregation rejected for merchant " + merchant.id() + ", executor is full");
+            }
+        }
+
+        List<MerchantSummary> summaries = new ArrayList<>(merchants.size());
+        try {
+            for (Map.Entry<MerchantRow, Future<MerchantSummary>> task : tasks.entrySet()) {
+                try {
+                    summaries.add(task.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    tasks.values().forEach(f -> f.cancel(true));
+                    throw new IllegalStateException("Interrupted while computing the overview", e);
+                } catch (ExecutionException | TimeoutException e) {
+                    task.getValue().cancel(true);
+                    incomplete++;
+                    System.err.println("Overview aggregation failed for merchant " + task.getKey().id() + ": " + e);
+                }
+            }
+        } finally {
+            // Cancelled tasks leave the queue now rather than when a thread reaches them
+            overviewExecutor.getThreadPoolExecutor().purge();
+        }
+        summaries.sort(Comparator.comparing(MerchantSummary::getGrossSales).reversed()
+                .thenComparing(MerchantSummary::getMerchantId));
+
+        long ordersPaid = 0, ordersRefunded = 0, attempts = 0, failures = 0;
+        BigDecimal gross = BigDecimal.ZERO, net = BigDecimal.ZERO, refunds = BigDecimal.ZERO;
+        for (MerchantSummary s : summaries) {
+            ordersPaid += s.getOrdersPaid();
+            ordersRefunded += s.getOrdersRefunded();
+            attempts += s.getPaymentAttempts();
+            failures += s.getPaymentFailures();
+            gross = gross.add(s.getGrossSales());
+            net = net.add(s.getNetSales());
+            refunds = refunds.add(s.getRefunds());
+        }
+
+        return PlatformOverviewDTO.builder()
+                .from(from)
+                .to(to)
+                .generatedAt(OffsetDateTime.now())
+                .merchantCount(merchants.size())
+                .incompleteMerchants(incomplete)
+                .ordersPaid(ordersPaid)
+                .ordersRefunded(ordersRefunded)
+                .grossSales(gross)
+                .netSales(net)
+                .refunds(refunds)
+                .paymentAttempts(attempts)
+                .paymentFailures(failures)
+                .paymentFailureRate(rate(failures, attempts))
+                .refundRate(rate(ordersRefunded, ordersPaid))
+                .merchants(summaries)
+                .build();
+    }
+
+    // Runs on the overview executor; each query borrows a connection only while it runs
+    private MerchantSummary summarize(MerchantRow merchant, LocalDate from, LocalDate to,
+                                      OffsetDateTime fromTs, OffsetDateTime toTs) {
+        MerchantSummary.MerchantSummaryBuilder summary = MerchantSummary.builder()
+                .merchantId(merchant.id())
+                .name(merchant.name());
+
+        long[] orders = new long[3];
+        jdbcTemplate.query("""
+                        SELECT COALESCE(SUM(orders_paid), 0) AS paid, COALESCE(SUM(orders_cancelled), 0) AS cancelled,
+                               COALESCE(SUM(orders_refunded), 0) AS refunded, COALESCE(SUM(gross_sales), 0) AS gross,
+                               COALESCE(SUM(discounts), 0) AS discounts, COALESCE(SUM(refunds), 0) AS refunds
+                        FROM daily_sales_rollups
+                        WHERE merchant_id = ? AND day BETWEEN ? AND ?
+                        """,
+                rs -> {
+                    orders[0] = rs.getLong("paid");
+                    orders[1] = rs.getLong("cancelled");
+                    orders[2] = rs.getLong("refunded");
+                    BigDecimal gross = rs.getBigDecimal("gross");
+                    BigDecimal refunds = rs.getBigDecimal("refunds");
+                    summary.grossSales(gross)
+                            .refunds(refunds)
+                            .netSales(gross.subtract(rs.getBigDecimal("discounts")).subtract(refunds));
+                },
+                merchant.id(), from, to);
+
+        long[] payments = new long[2];
+        jdbcTemplate.query("""
+                        SELECT COUNT(*) AS attempts, COUNT(*) FILTER (WHERE p.status = 'FAILED') AS failures
+                        FROM payments p
+                        JOIN orders o ON o.id = p.order_id
+                        WHERE o.merchant_id = ? AND p.created_at >= ? AND p.created_at < ?
+                        """,
+                rs -> {
+                    payments[0] = rs.getLong("attempts");
+                    payments[1] = rs.getLong("failures");
+                },
+                merchant.id(), fromTs, toTs);
+
+        return summary
+                .ordersPaid(orders[0])
+                .ordersCancelled(orders[1])
+                .ordersRefunded(orders[2])
+                .refundRate(rate(orders[2], orders[0]))
+                .paymentAttempts(payments[0])
+                .paymentFailures(payments[1])
+                .paymentFailureRate(rate(payments[1], payments[0]))
+                .build();
+    }
+
+    private void evictExpired(long now) {
+        cache.values().removeIf(c -> c.expiresAt() <= now && c.overview().isDone());
+        if (cache.size() > MAX_CACHED_RANGES) {
+            cache.values().removeIf(c -> c.overview().isDone());
+        }
+    }
+
+    private static BigDecimal rate(long part, long whole) {
+        return whole == 0 ? BigDecimal.ZERO : BigDecimal.valueOf(part).divide(BigDecimal.valueOf(whole), 4, RoundingMode.HALF_UP);
+    }
+}
@@ -3,23 +3,37 @@ package vu.software_project.sdp.services;
 import vu.software_project.sdp.DTOs.item.ItemCreateRequestDTO;
 import vu.software_project.sdp.DTOs.item.ItemResponseDTO;
 import vu.software_project.sdp.DTOs.item.ItemUpdateRequestDTO;
+import vu.software_project.sdp.DTOs.item.ProductVariationCreateRequestDTO;
 import vu.software_project.sdp.DTOs.item.ProductVariationResponseDTO;
+import vu.software_project.sdp.entities.CatalogChange;
 import vu.software_project.sdp.entities.Product;
+import vu.software_project.sdp.entities.ProductVariation;
+import vu.software_project.sdp.repositories.MerchantRepository;
 import vu.software_project.sdp.repositories.ProductRepository;
 import vu.software_project.sdp.repositories.ProductVariationRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Service
 public class ProductService {
+    public static final int MAX_CODE_LENGTH = 64;
+
     private final ProductRepository productRepository;
     private final ProductVariationRepository variationRepository;
+    private final CatalogService catalogService;
+    private final MerchantRepository merchantRepository;
 
-    public ProductService(ProductRepository productRepository, ProductVariationRepository variationRepository) {
+    public ProductService(ProductRepository productRepository, ProductVariationRepository variationRepository,
+                          CatalogService catalogService, MerchantRepository merchantRepository) {
         this.productRepository = productRepository;
         this.variationRepository = variationRepository;
+        this.catalogService = catalogService;
+        this.merchantRepository = merchantRepository;
     }
 
     @Transactional
@@ -29,8 +43,12 @@ public class ProductService {
         product.setPrice(request.getPrice());
         product.setMerchantId(merchantId);
         product.setTaxRateId(request.getTaxRateId());
+        product.setSku(validCode(request.getSku()));
+        product.setBarcode(validCode(request.getBarcode()));
+        requireUniqueCodes(merchantId, product.getSku(), product.getBarcode(), null, null);
 
         Product saved = productRepository.save(product);
+        catalogService.recordChange(merchantId, CatalogChange.EntityType.PRODUCT, saved.getId(), false);
         return toResponseDTO(saved);
     }
 
@@ -44,9 +62,25 @@ public class ProductService {
 
     @Transactional(readOnly = true)
     public List<ItemResponseDTO> getProductsByMerchant(Long merchantId) {
-        return productRepository.findByMerchantId(merchantId)
+        return toResponseDTOs(productRepository.findByMerchantId(merchantId));
+    }
+
+    @Transactional(readOnly = true)
+    public List<ItemResponseDTO> getProductsByIds(Collection<Long> ids, Long merchantId) {
+        return toResponseDTOs(productRepository.findAllById(ids).stream()
+            .filter(p -> p.getMerchantId().equals(merchantId))
+            .toList());
+    }
+
+    private List<ItemResponseDTO> toResponseDTOs(List<Product> products) {
+        // All variations in one query instead of one per product
+        Map<Long, List<ProductVariation>> variationsByProduct = variationRepository
+            .findByProductIdIn(products.stream().map(Product::getId).toList())
             .stream()
-            .map(this::toResponseDTO)
+            .collect(Collectors.groupingBy(ProductVariation::getProductId));
+
+        return products.stream()
+            .map(p -> toResponseDTO(p, variationsByProduct.getOrDefault(p.getId(), List.of())))
             .collect(Collectors.toList());
     }
 
@@ -59,8 +93,12 @@ public class ProductService {
         product.setName(request.getName());
         product.setPrice(request.getPrice());
         product.setTaxRateId(request.getTaxRateId());
+        if (request.getSku() != null) product.setSku(validCode(request.getSku()));
+        if (request.getBarcode() != null) product.setBarcode(validCode(request.getBarcode()));
+        requireUniqueCodes(merchantId, product.getSku(), product.getBarcode(), id, null);
 
         Product updated = productRepository.save(product);
+        catalogService.recordChange(merchantId, CatalogChange.EntityType.PRODUCT, id, false);
         return toResponseDTO(updated);
     }
 
@@ -70,12 +108,113 @@ public class ProductService {
             throw new IllegalArgumentException("Product not found or access denied");
         }
         productRepository.deleteById(id);
+        catalogService.recordChange(merchantId, CatalogChange.EntityType.PRODUCT, id, true);
+    }
+
+    @Transactional
+    public ProductVariationResponseDTO createVariation(Long productId, ProductVariationCreateRequestDTO request, Long merchantId) {
+        requireProduct(productId, merchantId);
+
+        ProductVariation variation = new ProductVariation();
+        variation.setProductId(productId);
+        variation.setName(request.getName());
+        variation.setPriceOffset(request.getPriceOffset());
+        variation.setSku(validCode(request.getSku()));
+        variation.setBarcode(validCode(request.getBarcode()));
+        requireUniqueCodes(merchantId, variation.getSku(), variation.getBarcode(), null, null);
+
+        ProductVariation saved = variationRepository.save(variation);
+        catalogService.recordChange(merchantId, CatalogChange.EntityType.PRODUCT, productId, false);
+        return toVariationDTO(saved);
+    }
+
+    @Transactional(readOnly = true)
+    public List<ProductVariationResponseDTO> getVariations(Long productId, Long merchantId) {
+        requireProduct(productId, merchantId);
+        return variationRepository.findByProductId(productId)
+            .stream()
+            .map(this::toVariationDTO)
+            .collect(Collectors.toList());
+    }
+
+    @Transactional
+    public ProductVariationResponseDTO updateVariation(Long productId, Long variationId,
+                                                       ProductVariationCreateRequestDTO request, Long merchantId) {
+        ProductVariation variation = findVariation(productId, variationId, merchantId);
+        variation.setName(request.getName());
+        variation.setPriceOffset(request.getPriceOffset());
+        if (request.getSku() != null) variation.setSku(validCode(request.getSku()));
+        if (request.getBarcode() != null) variation.setBarcode(validCode(request.getBarcode()));
+        requireUniqueCodes(merchantId, variation.getSku(), variation.getBarcode(), productId, variationId);
+
+        ProductVariation updated = variationRepository.save(variation);
+        catalogService.recordChange(merchantId, CatalogChange.EntityType.PRODUCT, productId, false);
+        return toVariationDTO(updated);
+    }
+
+    @Transactional
+    public void deleteVariation(Long productId, Long variationId, Long merchantId) {
+        findVariation(productId, variationId, merchantId);
+        variationRepository.deleteById(variationId);
+        catalogService.recordChange(merchantId, CatalogChange.EntityType.PRODUCT, productId, false);
+    }
+
+    static String validCode(String code) {
+        if (code == null || code.isBlank()) return null;
+        String trimmed = code.trim();
+        if (trimmed.length() > MAX_CODE_LENGTH || trimmed.chars().anyMatch(Character::isWhitespace)) {
+            throw new IllegalArgumentException("SKU and barcode must be at most " + MAX_CODE_LENGTH
+                + " characters without spaces");
+        }
+        return trimmed;
+    }
+
+    // A scanned code has to name exactly one product or variation of the merchant. The merchant row
+    // lock keeps two writers from both passing the check; productId and variationId name the row
+    // being updated, both null for a new one.
+    private void requireUniqueCodes(Long merchantId, String sku, String barcode, Long productId, Long variationId) {
+        if (sku == null && barcode == null) return;
+        merchantRepository.lockForCatalogWrite(merchantId);
+        for (ProductRepository.CodeOwner owner : productRepository.findCodeOwners(merchantId, sku, barcode)) {
+            boolean self = owner.getProductId().equals(productId) && Objects.equals(owner.getVariationId(), variationId);
+            if (self) continue;
+            if (sku != null && sku.equals(owner.getSku())) {
+                throw new IllegalArgumentException("SKU already in use: " + sku);
+            }
+            if (barcode != null && barcode.equals(owner.getBarcode())) {
+                throw new IllegalArgumentException("Barcode already in use: " + barcode);
+            }
+        }
+    }
+
+    private void requireProduct(Long productId, Long merchantId) {
+        if (!productRepository.existsByIdAndMerchantId(productId, merchantId)) {
+            throw new IllegalArgumentException("Product not found or access denied");
+        }
+    }
+
+    private ProductVariation findVariation(Long productId, Long variationId, Long merchantId) {
+        requireProduct(productId, merchantId);
+        ProductVariation variation = variationRepository.findById(variationId)
+            .orElseThrow(() -> new IllegalArgumentException("Variation not found"));
+        if (!variation.getProductId().equals(productId)) {
+            throw new IllegalArgumentException("Variation does not belong to this product");
+        }
+        return variation;
+    }
+
+    private ProductVariationResponseDTO toVariationDTO(ProductVariation v) {
+        return new ProductVariationResponseDTO(v.getId(), v.getName(), v.getPriceOffset(), v.getSku(), v.getBarcode());
+    }
+
+    ItemResponseDTO toResponseDTO(Product product) {
+        return toResponseDTO(product, variationRepository.findByProductId(product.getId()));
     }
 
-    private ItemResponseDTO toResponseDTO(Product product) {
-        List<ProductVariationResponseDTO> variations = variationRepository.findByProductId(product.getId())
+    private ItemResponseDTO toResponseDTO(Product product, List<ProductVariation> productVariations) {
+        List<ProductVariationResponseDTO> variations = productVariations
             .stream()
-            .map(v -> new ProductVariationResponseDTO(v.getId(), v.getName(), v.getPriceOffset()))
+            .map(this::toVariationDTO)
             .collect(Collectors.toList());
 
         return new ItemResponseDTO(
@@ -84,7 +223,10 @@ public class ProductService {
             product.getPrice(),
             "PRODUCT",
             product.getTaxRateId(),
-            variations
+            variations,
+            null,
+            product.getSku(),
+            product.getBarcode()
         );
     }
 }
@@ -0,0 +1,20 @@
+package vu.software_project.sdp.services;
+
+import java.time.LocalDate;
+
+/**
+ * Shared store behind {@link RedemptionLimiter}. Each counter is a discount's total redemptions
+ * ({@code day} null) or its redemptions on one day.
+ */
+public interface RedemptionLeaseSource {
+
+    /**
+     * Reserves up to {@code wanted} redemptions of the counter without taking the reserved total
+     * past {@code cap}, and returns how many were reserved. Must be committed on return, whatever
+     * happens to the caller's transaction.
+     */
+    int lease(String discountId, LocalDate day, int cap, int wanted);
+
+    // Adds redemptions made since the last call (negative when some were undone) and hands back unused reservations
+    void settle(String discountId, LocalDate day, int redeemed, int released);
+}
@@ -0,0 +1,251 @@
+package vu.software_project.sdp.services;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Enforces discount redemption limits without a database round trip per checkout. Each node
+ * leases a block of redemptions from the shared counter and hands them out from memory; only
+ * running out of a block touches the counter row again. Leases are never larger than what the
+ * counter has left, so all nodes together cannot redeem more than the limit.
+ * <p>
+ * Leases run on the lease executor, one at a time per counter, and never while the counter's
+ * monitor is held or inside a checkout's transaction. A block is topped up once it runs low, so
+ * checkouts only wait for the store when a counter is empty and a lease is still in flight.
+ * <p>
+ * {@link #reconcile(boolean)} reports redemptions to the store and hands back blocks that sat
+ * unused, so a node that stopped selling a discount does not keep its last redemptions from the
+ * others.
+ */
+@Component
+public class RedemptionLimiter {
+
+    // A block is at most this share of the limit, so the last redemptions are not all held by one node
+    private static final int MAX_LEASE_SHARE = 10;
+
+    // The next block is leased once this share of the current one is left
+    private static final int REFILL_SHARE = 4;
+
+    private final RedemptionLeaseSource leaseSource;
+    private final Executor leaseExecutor;
+    private final int leaseSize;
+    private final long idleReleaseMillis;
+    private final long leaseTimeoutMillis;
+
+    private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+
+    public RedemptionLimiter(
+            RedemptionLeaseSource leaseSource,
+            Executor redemptionLeaseExecutor,
+            @Value("${discounts.redemptions.lease-size:20}") int leaseSize,
+            @Value("${discounts.redemptions.idle-release-ms:30000}") long idleReleaseMillis,
+            @Value("${discounts.redemptions.lease-timeout-ms:5000}") long leaseTimeoutMillis
+    ) {
+        this.leaseSource = leaseSource;
+        this.leaseExecutor = redemptionLeaseExecutor;
+        this.leaseSize = leaseSize;
+        this.idleReleaseMillis = idleReleaseMillis;
+        this.leaseTimeoutMillis = leaseTimeoutMillis;
+    }
+
+    /**
+     * Takes one redemption from the discount's total limit and from its limit for {@code day};
+     * a null limit is not checked. Returns false, taking nothing, when either is used up.
+     */
+    public boolean tryRedeem(String discountId, Integer maxTotal, Integer maxPerDay, LocalDate day) {
+        if (maxTotal != null && !take(discountId, null, maxTotal)) {
+            return false;
+        }
+        if (maxPerDay != null && !take(discountId, day, maxPerDay)) {
+            if (maxTotal != null) giveBack(discountId, null);
+            return false;
+        }
+        return true;
+    }
+
+    // Undoes a tryRedeem that returned true, e.g. when the checkout that took it rolled back
+    public void release(String discountId, Integer maxTotal, Integer maxPerDay, LocalDate day) {
+        if (maxTotal != null) giveBack(discountId, null);
+        if (maxPerDay != null) giveBack(discountId, day);
+    }
+
+    // True once this node found a limit used up; cleared by the next reconcile
+    public boolean isExhausted(String discountId, Integer maxTotal, Integer maxPerDay, LocalDate day) {
+        return (maxTotal != null && exhausted(discountId, null)) || (maxPerDay != null && exhausted(discountId, day));
+    }
+
+    /**
+     * Reports redemptions made since the last call and hands back leases unused for the idle
+     * period, or all of them when {@code releaseAll} is set. Counters of past days are dropped.
+     */
+    public void reconcile(boolean releaseAll) {
+        long now = System.currentTimeMillis();
+        LocalDate today = LocalDate.now();
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            Counter counter = entry.getValue();
+            synchronized (counter) {
+                boolean pastDay = counter.day != null && counter.day.isBefore(today);
+                boolean idle = releaseAll || pastDay || now - counter.lastUsed >= idleReleaseMillis;
+                int released = idle ? counter.remaining : 0;
+                if (counter.unsettled != 0 || released != 0) {
+                    try {
+                        leaseSource.settle(counter.discountId, counter.day, counter.unsettled, released);
+                    } catch (RuntimeException e) {
+                        System.err.println("Redemption counter reconciliation failed for " + entry.getKey() + ": " + e.getMessage());
+                        continue;
+                    }
+                    counter.unsettled = 0;
+                    counter.remaining -= released;
+                }
+                // Other nodes may have handed back redemptions since this one ran out
+                counter.exhausted = false;
+                if (idle && counter.remaining == 0 && counter.refill == null) {
+                    counter.retired = true;
+                    counters.remove(entry.getKey(), counter);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void releaseAll() {
+        reconcile(true);
+    }
+
+    private boolean take(String discountId, LocalDate day, int cap) {
+        while (true) {
+            Counter counter = counters.computeIfAbsent(key(discountId, day), k -> new Counter(discountId, day));
+            boolean took = false;
+            CompletableFuture<Void> started = null;
+            CompletableFuture<Void> pending = null;
+            synchronized (counter) {
+                if (counter.retired) continue;
+                if (counter.remaining > 0) {
+                    counter.remaining--;
+                    counter.unsettled++;
+                    counter.lastUsed = System.currentTimeMillis();
+                    took = true;
+                    if (counter.remaining <= wanted(cap) / REFILL_SHARE) started = beginRefill(counter);
+                } else if (counter.exhausted) {
+                    return false;
+                } else {
+                    started = beginRefill(counter);
+                    pending = counter.refill;
+                }
+            }
+            if (started != null) lease(counter, cap, started);
+            if (took) return true;
+            await(pending);
+        }
+    }
+
+    // Called holding the counter's monitor; null when a lease is already in flight or would find nothing
+    private static CompletableFuture<Void> beginRefill(Counter counter) {
+        if (counter.refill != null || counter.exhausted) return null;
+        counter.refill = new CompletableFuture<>();
+        return counter.refill;
+    }
+
+    private void lease(Counter counter, int cap, CompletableFuture<Void> refill) {
+        try {
+            leaseExecutor.execute(() -> {
+                int granted = 0;
+                RuntimeException failure = null;
+                try {
+                    granted = leaseSource.lease(counter.discountId, counter.day, cap, wanted(cap));
+                } catch (RuntimeException e) {
+                    failure = e;
+                }
+                synchronized (counter) {
+                    counter.refill = null;
+                    if (failure == null) {
+                        counter.remaining += granted;
+                        if (granted == 0) counter.exhausted = true;
+                    }
+                }
+                if (failure != null) {
+                    System.err.println("Redemption lease failed for " + key(counter.discountId, counter.day) + ": " + failure.getMessage());
+                    refill.completeExceptionally(failure);
+                } else {
+                    refill.complete(null);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            synchronized (counter) {
+                counter.refill = null;
+            }
+            refill.completeExceptionally(e);
+        }
+    }
+
+    private void await(CompletableFuture<Void> refill) {
+        try {
+            refill.get(leaseTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a redemption lease", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Redemption limit could not be checked", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Redemption limit could not be checked in time");
+        }
+    }
+
+    private int wanted(int cap) {
+        return Math.min(leaseSize, Math.max(1, cap / MAX_LEASE_SHARE));
+    }
+
+    private void giveBack(String discountId, LocalDate day) {
+        while (true) {
+            // A retired counter already handed its lease back, so the redemption goes to a fresh one
+            Counter counter = counters.computeIfAbsent(key(discountId, day), k -> new Counter(discountId, day));
+            synchronized (counter) {
+                if (counter.retired) continue;
+                counter.remaining++;
+                counter.unsettled--;
+                counter.exhausted = false;
+                return;
+            }
+        }
+    }
+
+    private boolean exhausted(String discountId, LocalDate day) {
+        Counter counter = counters.get(key(discountId, day));
+        if (counter == null) return false;
+        synchronized (counter) {
+            return counter.exhausted && counter.remaining == 0;
+        }
+    }
+
+    private static String key(String discountId, LocalDate day) {
+        return day != null ? discountId + ":" + day : discountId;
+    }
+
+    // Guarded by its own monitor, so checkouts of different discounts never wait on each other
+    private static final class Counter {
+        final String discountId;
+        final LocalDate day;
+        int remaining;
+        int unsettled;
+        boolean exhausted;
+        boolean retired;
+        CompletableFuture<Void> refill; // the lease in flight, if any
+        long lastUsed = System.currentTimeMillis();
+
+        Counter(String discountId, LocalDate day) {
+            this.discountId = discountId;
+            this.day = day;
+        }
+    }
+}
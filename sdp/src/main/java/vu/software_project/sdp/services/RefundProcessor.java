@@ -0,0 +1,117 @@
+package vu.software_project.sdp.services;
+
+import com.stripe.net.RequestOptions;
+import com.stripe.param.RefundCreateParams;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import vu.software_project.sdp.entities.Payment;
+import vu.software_project.sdp.entities.RefundLeg;
+import vu.software_project.sdp.events.RefundRequestedEvent;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Sends the legs of a refund to their gateways in parallel, after the refund has been committed.
+ * Every leg records its own outcome; the refund is settled once all of them have finished.
+ */
+@Component
+@RequiredArgsConstructor
+public class RefundProcessor {
+
+    private final RefundService refundService;
+    private final ThreadPoolTaskExecutor refundExecutor;
+
+    @Value("${refunds.resume-after-ms:300000}")
+    private long resumeAfterMillis;
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onRefundRequested(RefundRequestedEvent event) {
+        dispatch(event.getRefundId());
+    }
+
+    // Refunds left PROCESSING by a restart are picked up again; the Stripe idempotency key keeps this
+    // safe. Legs queued shortly before the restart wait for their claim to expire.
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeProcessingRefunds() {
+        for (Long refundId : refundService.getProcessingRefundIds()) {
+            dispatch(refundId);
+        }
+    }
+
+    // Refunds whose legs were rejected by a full executor, or that were left behind otherwise. Only
+    // legs nobody has queued within resumeAfterMillis are sent again, so the executor is not flooded
+    // with legs that are still waiting in it.
+    @Scheduled(fixedDelayString = "${refunds.resume-interval-ms:60000}")
+    public void resumeStaleRefunds() {
+        for (Long refundId : refundService.getProcessingRefundIds(OffsetDateTime.now().minus(Duration.ofMillis(resumeAfterMillis)))) {
+            dispatch(refundId);
+        }
+    }
+
+    public CompletableFuture<Void> dispatch(Long refundId) {
+        List<RefundLeg> legs = refundService.claimPendingLegs(refundId, OffsetDateTime.now().minus(Duration.ofMillis(resumeAfterMillis)));
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (RefundLeg leg : legs) {
+            try {
+                futures.add(CompletableFuture.runAsync(() -> process(leg), refundExecutor));
+            } catch (RejectedExecutionException e) {
+                // Stays PENDING, so the refund is not settled now and the stale sweep retries it
+                System.err.println("Refund leg " + leg.getId() + " deferred, refund executor is full");
+                refundService.releaseLeg(leg.getId());
+            }
+        }
+
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                .whenComplete((ignored, e) -> {
+                    try {
+                        refundService.finishRefund(refundId);
+                    } catch (Exception ex) {
+                        System.err.println("Failed to settle refund " + refundId + ": " + ex.getMessage());
+                    }
+                });
+    }
+
+    private void process(RefundLeg leg) {
+        try {
+            switch (leg.getPaymentType()) {
+                case CARD -> refundService.completeLeg(leg.getId(), refundCard(leg));
+                case GIFT_CARD -> refundService.completeGiftCardLeg(leg.getId());
+                default -> refundService.completeLeg(leg.getId(), null);
+            }
+        } catch (Exception e) {
+            System.err.println("Refund leg " + leg.getId() + " failed: " + e.getMessage());
+            refundService.failLeg(leg.getId(), e.getMessage());
+        }
+    }
+
+    private String refundCard(RefundLeg leg) throws Exception {
+        Payment payment = refundService.getPayment(leg.getPaymentId());
+
+        RefundCreateParams params = RefundCreateParams.builder()
+                .setPaymentIntent(payment.getStripePaymentId())
+                .setAmount(leg.getAmount().multiply(BigDecimal.valueOf(100)).longValue())
+                .build();
+        // Same key whenever one attempt is resumed, so it cannot refund the card twice; a retry after
+        // a failure is a new attempt, since the gateway would otherwise replay the stored decline
+        String key = "refund-leg-" + leg.getId() + (leg.getAttempt() > 0 ? "-" + leg.getAttempt() : "");
+        RequestOptions options = RequestOptions.builder()
+                .setIdempotencyKey(key)
+                .build();
+
+        return com.stripe.model.Refund.create(params, options).getId();
+    }
+}
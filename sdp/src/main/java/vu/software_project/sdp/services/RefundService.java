@@ -1,13 +1,14 @@
 package vu.software_project.sdp.services;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
-import com.stripe.param.RefundCreateParams;
-
 import vu.software_project.sdp.DTOs.refunds.*;
 import vu.software_project.sdp.entities.*;
+import vu.software_project.sdp.events.RefundRequestedEvent;
 import vu.software_project.sdp.repositories.*;
 
 import java.math.BigDecimal;
@@ -15,6 +16,13 @@ import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Records refunds and their per-payment legs. The gateway calls themselves run in
+ * {@link RefundProcessor}, outside of any database transaction.
+ * <p>
+ * The leg and refund outcomes are written in their own transactions: the processor may call them
+ * from the thread of an already committed transaction, which they must not join.
+ */
 @Service
 @RequiredArgsConstructor
 public class RefundService {
@@ -22,6 +30,11 @@ public class RefundService {
     private final OrderRepository orderRepository;
     private final PaymentRepository paymentRepository;
     private final RefundRepository refundRepository;
+    private final RefundLegRepository refundLegRepository;
+    private final GiftCardService giftCardService;
+    private final AuditService auditService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SalesRollupService salesRollupService;
 
     @Transactional
     public RefundResponseDTO createFullRefund(Long orderId, String reason) {
@@ -37,76 +50,245 @@ public class RefundService {
             throw new IllegalStateException("ORDER_NOT_PAID");
         }
 
-        List<Payment> payments = paymentRepository.findByOrderId(orderId);
+        if (refundRepository.findByOrderId(orderId).isPresent()) {
+            throw new IllegalStateException("REFUND_ALREADY_REQUESTED");
+        }
+
+        OffsetDateTime now = OffsetDateTime.now();
+
+        Refund refund = new Refund();
+        refund.setOrderId(orderId);
+        refund.setReason(reason);
+        refund.setStatus(Refund.RefundStatus.PROCESSING);
+        refund.setCreatedAt(now);
 
+        List<RefundLeg> legs = new ArrayList<>();
         BigDecimal totalRefund = BigDecimal.ZERO;
-        List<RefundBreakdownDTO> breakdown = new ArrayList<>();
 
-        for (Payment payment : payments) {
+        for (Payment payment : paymentRepository.findByOrderId(orderId)) {
 
             if (payment.getStatus() != Payment.Status.SUCCEEDED)
                 continue;
-            if (payment.getPaymentType() == Payment.PaymentType.GIFT_CARD)
+            // Gift card payments taken before the ledger existed don't know their card
+            if (payment.getPaymentType() == Payment.PaymentType.GIFT_CARD && payment.getGiftCardCode() == null)
                 continue;
 
-            String refundId = null;
-            if (payment.getPaymentType() == Payment.PaymentType.CARD) {
-                RefundCreateParams params =
-                RefundCreateParams.builder()
-                .setPaymentIntent(payment.getStripePaymentId())
-                .setAmount(payment.getAmount().multiply(BigDecimal.valueOf(100)).longValue())
-                .build();
-                try {
-                    com.stripe.model.Refund stripeRefund = com.stripe.model.Refund.create(params);
-                    refundId = stripeRefund.getId();
-                    payment.setStatus(Payment.Status.REFUNDED);
-                } catch (Exception e) {
-                    System.out.println("Failed to create stripe refund: " + e.getMessage());
-                }
-            } else {
-                payment.setStatus(Payment.Status.REFUNDED);
-            }
-
-            payment.setUpdatedAt(OffsetDateTime.now());
-            paymentRepository.save(payment);
+            RefundLeg leg = new RefundLeg();
+            leg.setPaymentId(payment.getId());
+            leg.setPaymentType(payment.getPaymentType());
+            leg.setAmount(payment.getAmount());
+            leg.setStatus(RefundLeg.Status.PENDING);
+            leg.setCreatedAt(now);
+            leg.setUpdatedAt(now);
+            legs.add(leg);
 
             totalRefund = totalRefund.add(payment.getAmount());
-
-            breakdown.add(RefundBreakdownDTO.builder()
-                    .originalPaymentId("pay_" + payment.getId())
-                    .paymentType(payment.getPaymentType().name().toLowerCase())
-                    .amount(payment.getAmount())
-                    .refundStatus(
-                            payment.getStatus() == Payment.Status.REFUNDED
-                                    ? "completed"
-                                    : "failed"
-                    )
-                    .stripeRefundId(refundId)
-                    .build());
         }
 
         if (totalRefund.signum() == 0) {
             throw new IllegalStateException("NO_REFUNDABLE_PAYMENTS");
         }
 
-        Refund refund = new Refund();
-        refund.setOrderId(orderId);
         refund.setTotalAmount(totalRefund);
-        refund.setReason(reason);
+        refund = refundRepository.save(refund);
+
+        for (RefundLeg leg : legs) {
+            leg.setRefundId(refund.getId());
+        }
+        refundLegRepository.saveAll(legs);
+
+        // Picked up by RefundProcessor once this transaction commits
+        eventPublisher.publishEvent(new RefundRequestedEvent(refund.getId()));
+
+        return toResponse(refund, legs);
+    }
+
+    @Transactional(readOnly = true)
+    public RefundResponseDTO getRefund(Long refundId) {
+        Refund refund = refundRepository.findById(refundId)
+                .orElseThrow(() -> new IllegalArgumentException("REFUND_NOT_FOUND"));
+        return toResponse(refund, refundLegRepository.findByRefundIdOrderByIdAsc(refundId));
+    }
+
+    @Transactional(readOnly = true)
+    public RefundResponseDTO getRefundForOrder(Long orderId) {
+        Refund refund = refundRepository.findByOrderId(orderId)
+                .orElseThrow(() -> new IllegalArgumentException("REFUND_NOT_FOUND"));
+        return toResponse(refund, refundLegRepository.findByRefundIdOrderByIdAsc(refund.getId()));
+    }
+
+    /**
+     * Puts the failed legs of a failed refund back in the queue.
+     */
+    @Transactional
+    public RefundResponseDTO retryFailedLegs(Long refundId) {
+        Refund refund = refundRepository.findById(refundId)
+                .orElseThrow(() -> new IllegalArgumentException("REFUND_NOT_FOUND"));
+        if (refund.getStatus() != Refund.RefundStatus.FAILED) {
+            throw new IllegalStateException("REFUND_NOT_FAILED");
+        }
+
+        OffsetDateTime now = OffsetDateTime.now();
+        for (RefundLeg leg : refundLegRepository.findByRefundIdAndStatus(refundId, RefundLeg.Status.FAILED)) {
+            leg.setStatus(RefundLeg.Status.PENDING);
+            leg.setFailureReason(null);
+            // The gateway keeps the outcome of a key, declines included, so a retry needs a new one
+            leg.setAttempt(leg.getAttempt() + 1);
+            leg.setDispatchedAt(null);
+            leg.setUpdatedAt(now);
+        }
         refund.setStatus(Refund.RefundStatus.PROCESSING);
-        refund.setCreatedAt(OffsetDateTime.now());
+
+        eventPublisher.publishEvent(new RefundRequestedEvent(refundId));
+
+        return toResponse(refund, refundLegRepository.findByRefundIdOrderByIdAsc(refundId));
+    }
+
+    /**
+     * Marks the pending legs of a refund that no processor has queued since {@code claimedBefore}
+     * as dispatched now, and returns them. Legs still queued or in flight elsewhere are skipped.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public List<RefundLeg> claimPendingLegs(Long refundId, OffsetDateTime claimedBefore) {
+        OffsetDateTime now = OffsetDateTime.now();
+        List<RefundLeg> claimed = new ArrayList<>();
+        for (RefundLeg leg : refundLegRepository.findByRefundIdAndStatusForUpdate(refundId, RefundLeg.Status.PENDING)) {
+            if (leg.getDispatchedAt() != null && !leg.getDispatchedAt().isBefore(claimedBefore)) continue;
+            leg.setDispatchedAt(now);
+            claimed.add(leg);
+        }
+        return claimed;
+    }
+
+    // For a leg that was claimed but could not be queued, so the next sweep takes it right away
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void releaseLeg(Long legId) {
+        refundLegRepository.findByIdForUpdate(legId).ifPresent(leg -> {
+            if (leg.getStatus() == RefundLeg.Status.PENDING) leg.setDispatchedAt(null);
+        });
+    }
+
+    @Transactional(readOnly = true)
+    public List<Long> getProcessingRefundIds() {
+        return refundRepository.findByStatus(Refund.RefundStatus.PROCESSING).stream()
+                .map(Refund::getId)
+                .toList();
+    }
+
+    @Transactional(readOnly = true)
+    public List<Long> getProcessingRefundIds(OffsetDateTime createdBefore) {
+        return refundRepository.findByStatusAndCreatedAtBefore(Refund.RefundStatus.PROCESSING, createdBefore).stream()
+                .map(Refund::getId)
+                .toList();
+    }
+
+    @Transactional(readOnly = true)
+    public Payment getPayment(Long paymentId) {
+        return paymentRepository.findById(paymentId)
+                .orElseThrow(() -> new IllegalArgumentException("PAYMENT_NOT_FOUND"));
+    }
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void completeLeg(Long legId, String stripeRefundId) {
+        RefundLeg leg = refundLegRepository.findByIdForUpdate(legId)
+                .orElseThrow(() -> new IllegalArgumentException("REFUND_LEG_NOT_FOUND"));
+        if (leg.getStatus() != RefundLeg.Status.PENDING) return;
+
+        OffsetDateTime now = OffsetDateTime.now();
+        leg.setStatus(RefundLeg.Status.COMPLETED);
+        leg.setStripeRefundId(stripeRefundId);
+        leg.setUpdatedAt(now);
+
+        Payment payment = getPayment(leg.getPaymentId());
+        payment.setStatus(Payment.Status.REFUNDED);
+        payment.setUpdatedAt(now);
+    }
+
+    // Ledger credit and leg completion commit together, and the leg stays locked until then, so a
+    // leg dispatched twice cannot credit twice
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void completeGiftCardLeg(Long legId) {
+        RefundLeg leg = refundLegRepository.findByIdForUpdate(legId)
+                .orElseThrow(() -> new IllegalArgumentException("REFUND_LEG_NOT_FOUND"));
+        if (leg.getStatus() != RefundLeg.Status.PENDING) return;
+
+        Payment payment = getPayment(leg.getPaymentId());
+        Order order = orderRepository.findById(payment.getOrderId())
+                .orElseThrow(() -> new IllegalArgumentException("ORDER_NOT_FOUND"));
+        giftCardService.credit(order.getMerchantId(), payment.getGiftCardCode(), leg.getAmount(), order.getId());
+
+        completeLeg(legId, null);
+    }
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void failLeg(Long legId, String reason) {
+        refundLegRepository.findByIdForUpdate(legId).ifPresent(leg -> {
+            if (leg.getStatus() != RefundLeg.Status.PENDING) return;
+            leg.setStatus(RefundLeg.Status.FAILED);
+            leg.setFailureReason(reason != null && reason.length() > 500 ? reason.substring(0, 500) : reason);
+            leg.setUpdatedAt(OffsetDateTime.now());
+        });
+    }
+
+    /**
+     * Moves the refund, and with it the order, to its final state once no leg is pending.
+     * The order only becomes REFUNDED if every leg went through.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void finishRefund(Long refundId) {
+        Refund refund = refundRepository.findByIdForUpdate(refundId)
+                .orElseThrow(() -> new IllegalArgumentException("REFUND_NOT_FOUND"));
+        if (refund.getStatus() != Refund.RefundStatus.PROCESSING) return;
+
+        List<RefundLeg> legs = refundLegRepository.findByRefundIdOrderByIdAsc(refundId);
+        if (legs.stream().anyMatch(l -> l.getStatus() == RefundLeg.Status.PENDING)) return;
+
+        boolean allCompleted = legs.stream().allMatch(l -> l.getStatus() == RefundLeg.Status.COMPLETED);
+        Order order = orderRepository.findById(refund.getOrderId())
+                .orElseThrow(() -> new IllegalArgumentException("ORDER_NOT_FOUND"));
+
+        if (allCompleted) {
+            refund.setStatus(Refund.RefundStatus.COMPLETED);
+            refund.setCompletedAt(OffsetDateTime.now());
+            order.setStatus(order.getStatus().transitionTo(Order.Status.REFUNDED));
+            orderRepository.save(order);
+            salesRollupService.recordRefunded(order, refund);
+        } else {
+            refund.setStatus(Refund.RefundStatus.FAILED);
+        }
         refundRepository.save(refund);
 
-        order.setStatus(Order.Status.REFUNDED);
-        orderRepository.save(order);
+        auditService.logAction(
+                null,
+                allCompleted ? "refund.completed" : "refund.failed",
+                "Refund",
+                refund.getId(),
+                order.getMerchantId(),
+                null,
+                null
+        );
+    }
+
+    private RefundResponseDTO toResponse(Refund refund, List<RefundLeg> legs) {
+        List<RefundBreakdownDTO> breakdown = legs.stream()
+                .map(leg -> RefundBreakdownDTO.builder()
+                        .originalPaymentId("pay_" + leg.getPaymentId())
+                        .paymentType(leg.getPaymentType().name().toLowerCase())
+                        .amount(leg.getAmount())
+                        .refundStatus(leg.getStatus().name().toLowerCase())
+                        .stripeRefundId(leg.getStripeRefundId())
+                        .failureReason(leg.getFailureReason())
+                        .build())
+                .toList();
 
         return RefundResponseDTO.builder()
                 .refundId("ref_" + refund.getId())
-                .orderId(orderId.toString())
-                .totalAmount(totalRefund)
+                .orderId(refund.getOrderId().toString())
+                .totalAmount(refund.getTotalAmount())
                 .status(refund.getStatus().name().toLowerCase())
                 .createdAt(refund.getCreatedAt())
+                .completedAt(refund.getCompletedAt())
                 .refundBreakdown(breakdown)
                 .build();
     }
-}
\ No newline at end of file
+}
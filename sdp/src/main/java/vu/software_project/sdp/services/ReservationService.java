@@ -1,25 +1,41 @@
 package vu.software_project.sdp.services;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import vu.software_project.sdp.DTOs.reservations.AvailableSlotDto;
+import vu.software_project.sdp.DTOs.reservations.CalendarResponseDto;
 import vu.software_project.sdp.DTOs.reservations.ReservationCreateRequestDto;
 import vu.software_project.sdp.DTOs.reservations.ReservationResponseDto;
+import vu.software_project.sdp.DTOs.reservations.ReservationSeriesCreateRequestDto;
+import vu.software_project.sdp.DTOs.reservations.ReservationSeriesResponseDto;
 import vu.software_project.sdp.entities.Reservation;
 import vu.software_project.sdp.entities.Reservation.Status;
+import vu.software_project.sdp.entities.ReservationSeries;
 import vu.software_project.sdp.entities.ServiceItem;
 import vu.software_project.sdp.entities.User;
 import vu.software_project.sdp.repositories.ReservationRepository;
+import vu.software_project.sdp.repositories.ReservationSeriesRepository;
 import vu.software_project.sdp.repositories.ServiceItemRepository;
 import vu.software_project.sdp.repositories.UserRepository;
 
+import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -30,6 +46,18 @@ public class ReservationService {
     private final UserRepository userRepository;
     private final AuditService auditService;
     private final ObjectMapper objectMapper;
+    private final AvailabilityEngine availabilityEngine;
+    private final ReservationSeriesRepository seriesRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final IdAllocator idAllocator;
+
+    // Enough for a month view padded to whole weeks
+    public static final int MAX_CALENDAR_DAYS = 42;
+
+    public static final int MAX_SERIES_OCCURRENCES = 52;
+
+    // SQLSTATE exclusion_violation, raised by reservations_no_overlap
+    private static final String EXCLUSION_VIOLATION = "23P01";
 
     @Transactional
     public ReservationResponseDto createReservation(ReservationCreateRequestDto request, Long userId, Long merchantId) {
@@ -37,16 +65,7 @@ public class ReservationService {
             throw new IllegalArgumentException("Cannot book appointments in the past");
         }
 
-        LocalDateTime requestedTime = request.getAppointmentTime();
-        List<Reservation> conflicts = reservationRepository.findByEmployeeIdAndAppointmentTimeBetweenAndStatus(
-                request.getEmployeeId(),
-                requestedTime.minusMinutes(59),
-                requestedTime.plusMinutes(59),
-                Status.CONFIRMED
-        );
-        if (!conflicts.isEmpty()) {
-            throw new IllegalArgumentException("Time slot already booked for this employee.");
-        }
+        ServiceItem service = findService(request.getServiceId(), merchantId);
 
         Reservation reservation = new Reservation();
         reservation.setMerchantId(merchantId);
@@ -55,10 +74,13 @@ public class ReservationService {
         reservation.setCustomerName(request.getCustomerName());
         reservation.setCustomerContact(request.getCustomerContact());
         reservation.setAppointmentTime(request.getAppointmentTime());
+        reservation.setEndTime(request.getAppointmentTime().plusMinutes(service.getDurationMinutes()));
         reservation.setCreatedAt(LocalDateTime.now());
+        reservation.setUpdatedAt(reservation.getCreatedAt());
         reservation.setStatus(Status.CONFIRMED);
 
-        Reservation saved = reservationRepository.save(reservation);
+        Reservation saved = saveChecked(reservation);
+        availabilityEngine.reserved(merchantId, saved.getEmployeeId(), saved.getAppointmentTime(), saved.getEndTime());
 
         auditService.logAction(
                 userId,
@@ -86,26 +108,21 @@ public class ReservationService {
             throw new IllegalArgumentException("Only confirmed reservations can be modified");
         }
 
-        LocalDateTime requestedTime = request.getAppointmentTime();
-        List<Reservation> conflicts = reservationRepository.findByEmployeeIdAndAppointmentTimeBetweenAndStatus(
-                request.getEmployeeId(),
-                requestedTime.minusMinutes(59),
-                requestedTime.plusMinutes(59),
-                Status.CONFIRMED
-        );
+        ServiceItem service = findService(request.getServiceId(), merchantId);
 
-        boolean hasConflict = conflicts.stream().anyMatch(r -> !r.getId().equals(id));
-        if (hasConflict) {
-            throw new IllegalArgumentException("Time slot already booked for this employee.");
-        }
+        availabilityEngine.released(merchantId, reservation.getEmployeeId(), reservation.getAppointmentTime(),
+                reservation.getEndTime());
 
         reservation.setServiceId(request.getServiceId());
         reservation.setEmployeeId(request.getEmployeeId());
         reservation.setCustomerName(request.getCustomerName());
         reservation.setCustomerContact(request.getCustomerContact());
         reservation.setAppointmentTime(request.getAppointmentTime());
+        reservation.setEndTime(request.getAppointmentTime().plusMinutes(service.getDurationMinutes()));
+        reservation.setUpdatedAt(LocalDateTime.now());
 
-        Reservation updated = reservationRepository.save(reservation);
+        Reservation updated = saveChecked(reservation);
+        availabilityEngine.reserved(merchantId, updated.getEmployeeId(), updated.getAppointmentTime(), updated.getEndTime());
 
         auditService.logAction(
                 userId,
@@ -120,6 +137,121 @@ public class ReservationService {
         return mapToDto(updated);
     }
 
+    /**
+     * Books every occurrence of a weekly or biweekly series that does not clash with the employee's
+     * existing reservations. Clashes are found with one range query over the whole span, the free
+     * occurrences are inserted in one JDBC batch and the series is audited once.
+     */
+    @Transactional
+    public ReservationSeriesResponseDto createSeries(ReservationSeriesCreateRequestDto request, Long userId, Long merchantId) {
+        LocalDateTime first = request.getAppointmentTime();
+        if (first == null || first.isBefore(LocalDateTime.now())) {
+            throw new IllegalArgumentException("Cannot book appointments in the past");
+        }
+        ReservationSeries.Frequency frequency = parseFrequency(request.getFrequency());
+        if ((request.getCount() == null) == (request.getUntil() == null)) {
+            throw new IllegalArgumentException("Specify either count or until for a series");
+        }
+
+        List<LocalDateTime> starts = new ArrayList<>();
+        for (LocalDateTime t = first; ; t = t.plusWeeks(frequency.getWeeks())) {
+            if (request.getCount() != null ? starts.size() >= request.getCount() : t.toLocalDate().isAfter(request.getUntil())) break;
+            if (starts.size() == MAX_SERIES_OCCURRENCES) {
+                throw new IllegalArgumentException("A series cannot have more than " + MAX_SERIES_OCCURRENCES + " occurrences");
+            }
+            starts.add(t);
+        }
+        if (starts.isEmpty()) {
+            throw new IllegalArgumentException("Series has no occurrences");
+        }
+
+        ServiceItem service = findService(request.getServiceId(), merchantId);
+        int duration = service.getDurationMinutes();
+
+        // Existing bookings come back ordered by start and never overlap each other, so one sweep suffices
+        List<Reservation> existing = reservationRepository
+                .findByEmployeeIdAndStatusAndAppointmentTimeLessThanAndEndTimeGreaterThanOrderByAppointmentTimeAsc(
+                        request.getEmployeeId(), Status.CONFIRMED,
+                        starts.get(starts.size() - 1).plusMinutes(duration), first);
+        List<LocalDateTime> booked = new ArrayList<>();
+        List<LocalDateTime> skipped = new ArrayList<>();
+        int i = 0;
+        for (LocalDateTime start : starts) {
+            LocalDateTime end = start.plusMinutes(duration);
+            while (i < existing.size() && !existing.get(i).getEndTime().isAfter(start)) i++;
+            boolean clash = i < existing.size() && existing.get(i).getAppointmentTime().isBefore(end);
+            (clash ? skipped : booked).add(start);
+        }
+        if (booked.isEmpty()) {
+            throw new IllegalArgumentException("Time slot already booked for this employee.");
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        ReservationSeries series = new ReservationSeries();
+        series.setMerchantId(merchantId);
+        series.setServiceId(service.getId());
+        series.setEmployeeId(request.getEmployeeId());
+        series.setCustomerName(request.getCustomerName());
+        series.setCustomerContact(request.getCustomerContact());
+        series.setFirstAppointmentTime(first);
+        series.setFrequency(frequency);
+        series.setOccurrenceCount(request.getCount());
+        series.setUntilDate(request.getUntil());
+        series.setCreatedAt(now);
+        series = seriesRepository.save(series);
+
+        Long seriesId = series.getId();
+        Iterator<Long> ids = idAllocator.allocate("reservations_seq", 50, booked.size()).iterator();
+        try {
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO reservations (id, merchant_id, service_id, employee_id, customer_name, customer_contact, "
+                            + "appointment_time, end_time, created_at, updated_at, status, series_id) "
+                            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 'CONFIRMED', ?)",
+                    booked, booked.size(), (ps, start) -> {
+                        ps.setLong(1, ids.next());
+                        ps.setLong(2, merchantId);
+                        ps.setLong(3, service.getId());
+                        ps.setLong(4, request.getEmployeeId());
+                        ps.setString(5, request.getCustomerName());
+                        ps.setString(6, request.getCustomerContact());
+                        ps.setObject(7, start);
+                        ps.setObject(8, start.plusMinutes(duration));
+                        ps.setObject(9, now);
+                        ps.setObject(10, now);
+                        ps.setLong(11, seriesId);
+                    });
+        } catch (DataAccessException e) {
+            // Someone booked into the span after the range query; the constraint caught it
+            if (isOverlap(e)) {
+                throw new IllegalArgumentException("Time slot already booked for this employee.");
+            }
+            throw e;
+        }
+        for (LocalDateTime start : booked) {
+            availabilityEngine.reserved(merchantId, request.getEmployeeId(), start, start.plusMinutes(duration));
+        }
+
+        Map<String, Object> auditData = objectMapper.convertValue(series, new TypeReference<Map<String, Object>>() {});
+        auditData.put("booked", booked.size());
+        auditData.put("skipped", skipped.size());
+        auditService.logAction(
+                userId,
+                "reservation_series.created",
+                "ReservationSeries",
+                seriesId,
+                merchantId,
+                null,
+                auditData
+        );
+
+        return ReservationSeriesResponseDto.builder()
+                .seriesId(seriesId)
+                .frequency(frequency.name())
+                .booked(booked)
+                .skipped(skipped)
+                .build();
+    }
+
     @Transactional(readOnly = true)
     public List<ReservationResponseDto> getAllReservations(Long merchantId, LocalDate date) {
         LocalDate targetDate = (date != null) ? date : LocalDate.now();
@@ -127,12 +259,70 @@ public class ReservationService {
         LocalDateTime start = targetDate.atStartOfDay();
         LocalDateTime end = targetDate.atTime(LocalTime.MAX);
 
-        return reservationRepository.findByMerchantIdAndAppointmentTimeBetweenOrderByAppointmentTimeAsc(merchantId, start, end)
+        // Service and employee names come from the same query
+        return reservationRepository.findListingByMerchantIdAndAppointmentTimeBetween(merchantId, start, end)
                 .stream()
                 .map(this::mapToDto)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Weak ETag for a merchant's calendar: the latest reservation change plus the row count, and
+     * the catalog version and staff names for the service and employee names the calendar shows.
+     * Reservations are never deleted, so together they change whenever any calendar view could.
+     */
+    @Transactional(readOnly = true)
+    public String getCalendarEtag(Long merchantId) {
+        ReservationRepository.ChangeMarker marker = reservationRepository.findChangeMarker(merchantId);
+        return "W/\"" + merchantId + "-" + marker.getLastChange() + "-" + marker.getCount()
+                + "-" + marker.getCatalogVersion() + "-" + Long.toHexString(marker.getStaffNames()) + "\"";
+    }
+
+    /**
+     * Reservations between {@code from} and {@code to} (inclusive), grouped by day and then employee.
+     * Rows are streamed from a single range scan in (time, employee) order.
+     */
+    @Transactional(readOnly = true)
+    public CalendarResponseDto getCalendar(Long merchantId, LocalDate from, LocalDate to, Long employeeId, Long serviceId) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("Calendar range end is before its start");
+        }
+        if (ChronoUnit.DAYS.between(from, to) > MAX_CALENDAR_DAYS) {
+            throw new IllegalArgumentException("Calendar range cannot exceed " + MAX_CALENDAR_DAYS + " days");
+        }
+
+        Map<LocalDate, Map<Long, CalendarResponseDto.EmployeeColumn>> days = new TreeMap<>();
+        try (Stream<ReservationRepository.ListingRow> rows = reservationRepository.streamCalendar(
+                merchantId, from.atStartOfDay(), to.plusDays(1).atStartOfDay(), employeeId, serviceId)) {
+            rows.forEach(row -> days
+                    .computeIfAbsent(row.getAppointmentTime().toLocalDate(), d -> new TreeMap<>())
+                    .computeIfAbsent(row.getEmployeeId(), id -> new CalendarResponseDto.EmployeeColumn(
+                            id, row.getEmployeeName(), new ArrayList<>()))
+                    .getReservations()
+                    .add(new CalendarResponseDto.Entry(
+                            row.getId(),
+                            row.getServiceId(),
+                            row.getServiceName(),
+                            row.getCustomerName(),
+                            row.getAppointmentTime().toLocalTime(),
+                            row.getEndTime().toLocalTime(),
+                            row.getStatus() == Status.CONFIRMED ? null : row.getStatus().name())));
+        }
+
+        List<CalendarResponseDto.Day> result = new ArrayList<>(days.size());
+        days.forEach((date, columns) -> result.add(new CalendarResponseDto.Day(date, new ArrayList<>(columns.values()))));
+        return new CalendarResponseDto(from, to, result);
+    }
+
+    /**
+     * Free slots for the service on the given day, across all employees of the merchant
+     * unless {@code employeeId} narrows it down.
+     */
+    public List<AvailableSlotDto> getAvailability(Long merchantId, Long serviceId, LocalDate date, Long employeeId) {
+        ServiceItem service = findService(serviceId, merchantId);
+        return availabilityEngine.findFreeSlots(merchantId, date, service.getDurationMinutes(), employeeId);
+    }
+
     @Transactional
     public void cancelReservation(Long reservationId, Long merchantId) {
         Reservation reservation = reservationRepository.findById(reservationId)
@@ -142,10 +332,72 @@ public class ReservationService {
             throw new IllegalArgumentException("Access Denied");
         }
 
+        if (reservation.getStatus() == Status.CONFIRMED) {
+            availabilityEngine.released(merchantId, reservation.getEmployeeId(), reservation.getAppointmentTime(),
+                    reservation.getEndTime());
+        }
         reservation.setStatus(Status.CANCELLED);
+        reservation.setUpdatedAt(LocalDateTime.now());
         reservationRepository.save(reservation);
     }
 
+    private ServiceItem findService(Long serviceId, Long merchantId) {
+        ServiceItem service = serviceItemRepository.findById(serviceId)
+                .orElseThrow(() -> new IllegalArgumentException("Service not found"));
+        if (!service.getMerchantId().equals(merchantId)) {
+            throw new IllegalArgumentException("Access Denied");
+        }
+        return service;
+    }
+
+    private ReservationSeries.Frequency parseFrequency(String frequency) {
+        try {
+            return ReservationSeries.Frequency.valueOf(frequency.toUpperCase());
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new IllegalArgumentException("Frequency must be WEEKLY or BIWEEKLY");
+        }
+    }
+
+    // The overlap check is the database's exclusion constraint; flush so a clash surfaces here
+    private Reservation saveChecked(Reservation reservation) {
+        try {
+            return reservationRepository.saveAndFlush(reservation);
+        } catch (DataIntegrityViolationException e) {
+            if (isOverlap(e)) {
+                throw new IllegalArgumentException("Time slot already booked for this employee.");
+            }
+            throw e;
+        }
+    }
+
+    // Batched statements report the violation as a chained "next" exception
+    private static boolean isOverlap(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sql) {
+                for (SQLException s = sql; s != null; s = s.getNextException()) {
+                    if (EXCLUSION_VIOLATION.equals(s.getSQLState())) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private ReservationResponseDto mapToDto(ReservationRepository.ListingRow row) {
+        return ReservationResponseDto.builder()
+                .id(row.getId())
+                .serviceId(row.getServiceId())
+                .serviceName(row.getServiceName() != null ? row.getServiceName() : "Unknown Service")
+                .employeeId(row.getEmployeeId())
+                .employeeName(row.getEmployeeName() != null ? row.getEmployeeName() : "Unknown Employee")
+                .customerName(row.getCustomerName())
+                .customerContact(row.getCustomerContact())
+                .appointmentTime(row.getAppointmentTime())
+                .endTime(row.getEndTime())
+                .bookedAt(row.getBookedAt())
+                .status(row.getStatus().name())
+                .build();
+    }
+
     private ReservationResponseDto mapToDto(Reservation res) {
         String serviceName = serviceItemRepository.findById(res.getServiceId())
                 .map(ServiceItem::getName)
@@ -164,6 +416,7 @@ public class ReservationService {
                 .customerName(res.getCustomerName())
                 .customerContact(res.getCustomerContact())
                 .appointmentTime(res.getAppointmentTime())
+                .endTime(res.getEndTime())
                 .bookedAt(res.getCreatedAt())
                 .status(res.getStatus().name())
                 .build();
@@ -0,0 +1,53 @@
+package vu.software_project.sdp.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * Backfills the daily sales rollups the first time the application starts with orders but no
+ * rollups, and rebuilds the last few finished days every night in case an increment was lost.
+ */
+@Component
+@RequiredArgsConstructor
+public class SalesRollupJob {
+
+    // Days rebuilt per transaction during backfill
+    private static final int BACKFILL_CHUNK_DAYS = 31;
+
+    private final SalesRollupService salesRollupService;
+
+    @Value("${reports.rollups.rebuild-days:3}")
+    private int rebuildDays;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        try {
+            if (salesRollupService.hasRollups()) return;
+            salesRollupService.getFirstSalesDay().ifPresent(first -> {
+                LocalDate today = LocalDate.now(salesRollupService.getZone());
+                for (LocalDate from = first; !from.isAfter(today); from = from.plusDays(BACKFILL_CHUNK_DAYS)) {
+                    LocalDate to = from.plusDays(BACKFILL_CHUNK_DAYS - 1);
+                    salesRollupService.rebuild(from, to.isAfter(today) ? today : to);
+                }
+            });
+        } catch (Exception e) {
+            System.err.println("Daily sales rollup backfill failed: " + e.getMessage());
+        }
+    }
+
+    @Scheduled(cron = "${reports.rollups.rebuild-cron:0 20 3 * * *}")
+    public void rebuildRecentDays() {
+        LocalDate yesterday = LocalDate.now(salesRollupService.getZone()).minusDays(1);
+        try {
+            salesRollupService.rebuild(yesterday.minusDays(rebuildDays - 1L), yesterday);
+        } catch (Exception e) {
+            System.err.println("Daily sales rollup rebuild failed: " + e.getMessage());
+        }
+    }
+}
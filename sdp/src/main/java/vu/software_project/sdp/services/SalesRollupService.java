@@ -0,0 +1,406 @@
+package vu.software_project.sdp.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import vu.software_project.sdp.DTOs.reports.DailySalesDTO;
+import vu.software_project.sdp.entities.*;
+import vu.software_project.sdp.events.SalesRecordedEvent;
+import vu.software_project.sdp.repositories.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Per-merchant daily sales rollups. Paying, cancelling and refunding an order each publish what
+ * they add to the day, and the rollup rows are bumped once that transaction commits, so "today's
+ * sales" reads a handful of rows instead of the orders. {@link #rebuild(LocalDate, LocalDate)}
+ * recomputes whole days from the orders with the same arithmetic, for backfill and for repairing
+ * a day whose increment was lost.
+ */
+@Service
+public class SalesRollupService {
+
+    public static final int MAX_REPORT_DAYS = 366;
+
+    private static final String PAID_ORDERS = """
+            paid AS (
+                SELECT o.id, o.merchant_id, (o.paid_at AT TIME ZONE :zone)::date AS day,
+                       COALESCE(o.applied_discount_amount, 0) AS order_discount
+                FROM orders o
+                WHERE o.paid_at >= :fromTs AND o.paid_at < :toTs
+            ),
+            lines AS (
+                SELECT oi.order_id, oi.tax_rate_id,
+                       (oi.price + COALESCE(v.offsets, 0)) * oi.quantity AS gross,
+                       COALESCE(oi.applied_discount_amount, 0) AS discount,
+                       COALESCE(oi.applied_tax_rate, 0) AS rate
+                FROM paid
+                JOIN order_items oi ON oi.order_id = paid.id
+                LEFT JOIN LATERAL (
+                    SELECT SUM(price_offset) AS offsets FROM order_item_variations WHERE order_item_id = oi.id
+                ) v ON true
+            )
+            """;
+
+    private static final String REBUILD_SALES = "WITH " + PAID_ORDERS + """
+            , order_totals AS (
+                SELECT paid.merchant_id, paid.day,
+                       ROUND(COALESCE(SUM(l.gross), 0), 2) AS gross,
+                       ROUND(COALESCE(SUM(l.discount), 0) + paid.order_discount, 2) AS discounts,
+                       ROUND(COALESCE(SUM((l.gross - l.discount) * l.rate), 0), 2) AS tax
+                FROM paid
+                LEFT JOIN lines l ON l.order_id = paid.id
+                GROUP BY paid.id, paid.merchant_id, paid.day, paid.order_discount
+            ),
+            sales AS (
+                SELECT merchant_id, day, COUNT(*) AS orders, SUM(gross) AS gross, SUM(discounts) AS discounts, SUM(tax) AS tax
+                FROM order_totals
+                GROUP BY merchant_id, day
+            ),
+            tips AS (
+                SELECT paid.merchant_id, paid.day, SUM(p.tip) AS tips
+                FROM paid
+                JOIN payments p ON p.order_id = paid.id
+                WHERE p.status IN ('SUCCEEDED', 'REFUNDED')
+                GROUP BY paid.merchant_id, paid.day
+            ),
+            cancelled AS (
+                SELECT o.merchant_id, (o.cancelled_at AT TIME ZONE :zone)::date AS day, COUNT(*) AS orders
+                FROM orders o
+                WHERE o.cancelled_at >= :fromTs AND o.cancelled_at < :toTs
+                GROUP BY 1, 2
+            ),
+            refunded AS (
+                SELECT o.merchant_id, (r.completed_at AT TIME ZONE :zone)::date AS day,
+                       COUNT(*) AS orders, SUM(r.total_amount) AS amount
+                FROM refunds r
+                JOIN orders o ON o.id = r.order_id
+                WHERE r.status = 'COMPLETED' AND r.completed_at >= :fromTs AND r.completed_at < :toTs
+                GROUP BY 1, 2
+            ),
+            days AS (
+                SELECT merchant_id, day FROM sales
+                UNION SELECT merchant_id, day FROM cancelled
+                UNION SELECT merchant_id, day FROM refunded
+            )
+            INSERT INTO daily_sales_rollups (merchant_id, day, orders_paid, orders_cancelled, orders_refunded,
+                                             gross_sales, discounts, tax, tips, refunds)
+            SELECT d.merchant_id, d.day, COALESCE(s.orders, 0), COALESCE(c.orders, 0), COALESCE(r.orders, 0),
+                   COALESCE(s.gross, 0), COALESCE(s.discounts, 0), COALESCE(s.tax, 0),
+                   COALESCE(t.tips, 0), COALESCE(r.amount, 0)
+            FROM days d
+            LEFT JOIN sales s USING (merchant_id, day)
+            LEFT JOIN tips t USING (merchant_id, day)
+            LEFT JOIN cancelled c USING (merchant_id, day)
+            LEFT JOIN refunded r USING (merchant_id, day)
+            """;
+
+    private static final String REBUILD_TAXES = "WITH " + PAID_ORDERS + """
+            , order_taxes AS (
+                SELECT paid.merchant_id, paid.day, l.tax_rate_id,
+                       ROUND(SUM((l.gross - l.discount) * l.rate), 2) AS tax
+                FROM paid
+                JOIN lines l ON l.order_id = paid.id
+                WHERE l.tax_rate_id IS NOT NULL
+                GROUP BY paid.id, paid.merchant_id, paid.day, l.tax_rate_id
+            )
+            INSERT INTO daily_tax_rollups (merchant_id, day, tax_rate_id, tax)
+            SELECT merchant_id, day, tax_rate_id, SUM(tax)
+            FROM order_taxes
+            GROUP BY merchant_id, day, tax_rate_id
+            """;
+
+    private static final String REBUILD_TENDERS = """
+            INSERT INTO daily_tender_rollups (merchant_id, day, payment_type, payment_count, amount, tips)
+            SELECT o.merchant_id, (o.paid_at AT TIME ZONE :zone)::date, p.payment_type,
+                   COUNT(*), SUM(p.amount), SUM(p.tip)
+            FROM orders o
+            JOIN payments p ON p.order_id = o.id
+            WHERE o.paid_at >= :fromTs AND o.paid_at < :toTs AND p.status IN ('SUCCEEDED', 'REFUNDED')
+            GROUP BY 1, 2, 3
+            """;
+
+    private final PaymentRepository paymentRepository;
+    private final TaxRateRepository taxRateRepository;
+    private final DailySalesRollupRepository salesRepository;
+    private final DailyTenderRollupRepository tenderRepository;
+    private final DailyTaxRollupRepository taxRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate newTransaction;
+    private final ZoneId zone;
+
+    public SalesRollupService(
+            PaymentRepository paymentRepository,
+            TaxRateRepository taxRateRepository,
+            DailySalesRollupRepository salesRepository,
+            DailyTenderRollupRepository tenderRepository,
+            DailyTaxRollupRepository taxRepository,
+            JdbcTemplate jdbcTemplate,
+            NamedParameterJdbcTemplate namedJdbcTemplate,
+            ApplicationEventPublisher eventPublisher,
+            PlatformTransactionManager transactionManager,
+            @Value("${reports.zone:}") String zone
+    ) {
+        this.paymentRepository = paymentRepository;
+        this.taxRateRepository = taxRateRepository;
+        this.salesRepository = salesRepository;
+        this.tenderRepository = tenderRepository;
+        this.taxRepository = taxRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.zone = zone.isBlank() ? ZoneId.systemDefault() : ZoneId.of(zone);
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    // Call in the transaction that marks the order PAID, after its paidAt is set
+    public void recordPaid(Order order) {
+        BigDecimal gross = BigDecimal.ZERO;
+        BigDecimal discounts = nonNull(order.getAppliedDiscountAmount());
+        BigDecimal tax = BigDecimal.ZERO;
+        Map<String, BigDecimal> taxByRate = new TreeMap<>();
+        Map<Long, SalesRecordedEvent.ItemSold> items = new LinkedHashMap<>();
+
+        // Same arithmetic as REBUILD_SALES and REBUILD_TAXES
+        for (OrderItem item : order.getItems()) {
+            BigDecimal unitPrice = item.getPrice();
+            for (OrderItemVariation v : item.getVariations()) {
+                unitPrice = unitPrice.add(v.getPriceOffset());
+            }
+            BigDecimal lineGross = unitPrice.multiply(BigDecimal.valueOf(item.getQuantity()));
+            BigDecimal lineDiscount = nonNull(item.getAppliedDiscountAmount());
+            BigDecimal lineTax = lineGross.subtract(lineDiscount).multiply(nonNull(item.getAppliedTaxRate()));
+
+            gross = gross.add(lineGross);
+            discounts = discounts.add(lineDiscount);
+            tax = tax.add(lineTax);
+            if (item.getTaxRateId() != null) {
+                taxByRate.merge(item.getTaxRateId(), lineTax, BigDecimal::add);
+            }
+            if (item.getItemId() != null) {
+                items.merge(item.getItemId(),
+                        new SalesRecordedEvent.ItemSold(item.getItemId(), item.getName(), item.getQuantity()),
+                        (a, b) -> new SalesRecordedEvent.ItemSold(a.getItemId(), a.getName(), a.getQuantity() + b.getQuantity()));
+            }
+        }
+        taxByRate.replaceAll((id, amount) -> cents(amount));
+
+        Map<Payment.PaymentType, List<Payment>> byType = paymentRepository.findByOrderId(order.getId()).stream()
+                .filter(p -> p.getStatus() == Payment.Status.SUCCEEDED)
+                .collect(Collectors.groupingBy(Payment::getPaymentType, () -> new EnumMap<>(Payment.PaymentType.class), Collectors.toList()));
+        List<SalesRecordedEvent.Tender> tenders = new ArrayList<>();
+        BigDecimal tips = BigDecimal.ZERO;
+        for (Map.Entry<Payment.PaymentType, List<Payment>> entry : byType.entrySet()) {
+            BigDecimal amount = entry.getValue().stream().map(Payment::getAmount).reduce(BigDecimal.ZERO, BigDecimal::add);
+            BigDecimal typeTips = entry.getValue().stream().map(p -> nonNull(p.getTip())).reduce(BigDecimal.ZERO, BigDecimal::add);
+            tenders.add(new SalesRecordedEvent.Tender(entry.getKey(), entry.getValue().size(), amount, typeTips));
+            tips = tips.add(typeTips);
+        }
+
+        eventPublisher.publishEvent(SalesRecordedEvent.builder()
+                .merchantId(order.getMerchantId())
+                .day(dayOf(order.getPaidAt()))
+                .ordersPaid(1)
+                .grossSales(cents(gross))
+                .discounts(cents(discounts))
+                .tax(cents(tax))
+                .tips(tips)
+                .taxByRate(taxByRate)
+                .tenders(tenders)
+                .items(List.copyOf(items.values()))
+                .build());
+    }
+
+    public void recordCancelled(Order order) {
+        eventPublisher.publishEvent(SalesRecordedEvent.builder()
+                .merchantId(order.getMerchantId())
+                .day(dayOf(order.getCancelledAt()))
+                .ordersCancelled(1)
+                .build());
+    }
+
+    public void recordRefunded(Order order, Refund refund) {
+        eventPublisher.publishEvent(SalesRecordedEvent.builder()
+                .merchantId(order.getMerchantId())
+                .day(dayOf(refund.getCompletedAt()))
+                .ordersRefunded(1)
+                .refunds(refund.getTotalAmount())
+                .build());
+    }
+
+    /**
+     * Applies one increment after the order change committed. Rows are locked in a fixed order
+     * (day, then tenders, then tax rates) and only for this short transaction. A failure leaves
+     * the day short until it is rebuilt.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onSalesRecorded(SalesRecordedEvent event) {
+        try {
+            newTransaction.executeWithoutResult(status -> apply(event));
+        } catch (RuntimeException e) {
+            System.err.println("Daily sales rollup update failed for merchant " + event.getMerchantId()
+                    + " on " + event.getDay() + ": " + e.getMessage());
+        }
+    }
+
+    private void apply(SalesRecordedEvent e) {
+        jdbcTemplate.update("""
+                INSERT INTO daily_sales_rollups (merchant_id, day, orders_paid, orders_cancelled, orders_refunded,
+                                                 gross_sales, discounts, tax, tips, refunds)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                ON CONFLICT (merchant_id, day) DO UPDATE SET
+                    orders_paid = daily_sales_rollups.orders_paid + EXCLUDED.orders_paid,
+                    orders_cancelled = daily_sales_rollups.orders_cancelled + EXCLUDED.orders_cancelled,
+                    orders_refunded = daily_sales_rollups.orders_refunded + EXCLUDED.orders_refunded,
+                    gross_sales = daily_sales_rollups.gross_sales + EXCLUDED.gross_sales,
+                    discounts = daily_sales_rollups.discounts + EXCLUDED.discounts,
+                    tax = daily_sales_rollups.tax + EXCLUDED.tax,
+                    tips = daily_sales_rollups.tips + EXCLUDED.tips,
+                    refunds = daily_sales_rollups.refunds + EXCLUDED.refunds
+                """,
+                e.getMerchantId(), e.getDay(), e.getOrdersPaid(), e.getOrdersCancelled(), e.getOrdersRefunded(),
+                e.getGrossSales(), e.getDiscounts(), e.getTax(), e.getTips(), e.getRefunds());
+
+        if (!e.getTenders().isEmpty()) {
+            jdbcTemplate.batchUpdate("""
+                    INSERT INTO daily_tender_rollups (merchant_id, day, payment_type, payment_count, amount, tips)
+                    VALUES (?, ?, ?, ?, ?, ?)
+                    ON CONFLICT (merchant_id, day, payment_type) DO UPDATE SET
+                        payment_count = daily_tender_rollups.payment_count + EXCLUDED.payment_count,
+                        amount = daily_tender_rollups.amount + EXCLUDED.amount,
+                        tips = daily_tender_rollups.tips + EXCLUDED.tips
+                    """,
+                    e.getTenders().stream()
+                            .sorted(Comparator.comparing(SalesRecordedEvent.Tender::getPaymentType))
+                            .map(t -> new Object[]{e.getMerchantId(), e.getDay(), t.getPaymentType().name(),
+                                    t.getCount(), t.getAmount(), t.getTips()})
+                            .toList());
+        }
+
+        if (!e.getTaxByRate().isEmpty()) {
+            jdbcTemplate.batchUpdate("""
+                    INSERT INTO daily_tax_rollups (merchant_id, day, tax_rate_id, tax)
+                    VALUES (?, ?, ?, ?)
+                    ON CONFLICT (merchant_id, day, tax_rate_id) DO UPDATE SET
+                        tax = daily_tax_rollups.tax + EXCLUDED.tax
+                    """,
+                    new TreeMap<>(e.getTaxByRate()).entrySet().stream()
+                            .map(t -> new Object[]{e.getMerchantId(), e.getDay(), t.getKey(), t.getValue()})
+                            .toList());
+        }
+    }
+
+    /**
+     * Recomputes every merchant's rollups for the days {@code from}..{@code to} from the orders,
+     * payments and refunds. Increments that commit while a day is being rebuilt may be counted
+     * twice, so the current day is best left to the increments.
+     */
+    @Transactional
+    public void rebuild(LocalDate from, LocalDate to) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("zone", zone.getId())
+                .addValue("from", from)
+                .addValue("to", to)
+                .addValue("fromTs", from.atStartOfDay(zone).toOffsetDateTime())
+                .addValue("toTs", to.plusDays(1).atStartOfDay(zone).toOffsetDateTime());
+
+        for (String table : List.of("daily_sales_rollups", "daily_tender_rollups", "daily_tax_rollups")) {
+            namedJdbcTemplate.update("DELETE FROM " + table + " WHERE day BETWEEN :from AND :to", params);
+        }
+        namedJdbcTemplate.update(REBUILD_SALES, params);
+        namedJdbcTemplate.update(REBUILD_TENDERS, params);
+        namedJdbcTemplate.update(REBUILD_TAXES, params);
+    }
+
+    // First day with a paid, cancelled or refunded order; empty when there is nothing to roll up
+    @Transactional(readOnly = true)
+    public Optional<LocalDate> getFirstSalesDay() {
+        OffsetDateTime first = jdbcTemplate.queryForObject("""
+                SELECT LEAST((SELECT min(paid_at) FROM orders),
+                             (SELECT min(cancelled_at) FROM orders),
+                             (SELECT min(completed_at) FROM refunds))
+                """, OffsetDateTime.class);
+        return Optional.ofNullable(first).map(this::dayOf);
+    }
+
+    @Transactional(readOnly = true)
+    public boolean hasRollups() {
+        return salesRepository.count() > 0;
+    }
+
+    @Transactional(readOnly = true)
+    public List<DailySalesDTO> getDailySales(Long merchantId, LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        if (from.plusDays(MAX_REPORT_DAYS).isBefore(to)) {
+            throw new IllegalArgumentException("At most " + MAX_REPORT_DAYS + " days can be requested at once");
+        }
+
+        Map<LocalDate, List<DailyTenderRollup>> tenders = tenderRepository
+                .findByMerchantIdAndDayBetweenOrderByDayAsc(merchantId, from, to).stream()
+                .collect(Collectors.groupingBy(DailyTenderRollup::getDay));
+        Map<LocalDate, List<DailyTaxRollup>> taxes = taxRepository
+                .findByMerchantIdAndDayBetweenOrderByDayAsc(merchantId, from, to).stream()
+                .collect(Collectors.groupingBy(DailyTaxRollup::getDay));
+        Map<String, String> rateNames = taxRateRepository.findByMerchantId(merchantId).stream()
+                .collect(Collectors.toMap(TaxRate::getId, TaxRate::getName));
+
+        return salesRepository.findByMerchantIdAndDayBetweenOrderByDayAsc(merchantId, from, to).stream()
+                .map(day -> DailySalesDTO.builder()
+                        .day(day.getDay())
+                        .ordersPaid(day.getOrdersPaid())
+                        .ordersCancelled(day.getOrdersCancelled())
+                        .ordersRefunded(day.getOrdersRefunded())
+                        .grossSales(day.getGrossSales())
+                        .discounts(day.getDiscounts())
+                        .tax(day.getTax())
+                        .tips(day.getTips())
+                        .refunds(day.getRefunds())
+                        .netSales(day.getGrossSales().subtract(day.getDiscounts()).subtract(day.getRefunds()))
+                        .tenders(tenders.getOrDefault(day.getDay(), List.of()).stream()
+                                .map(t -> new DailySalesDTO.TenderTotal(t.getPaymentType().name(), t.getPaymentCount(),
+                                        t.getAmount(), t.getTips()))
+                                .toList())
+                        .taxes(taxes.getOrDefault(day.getDay(), List.of()).stream()
+                                .map(t -> new DailySalesDTO.TaxTotal(t.getTaxRateId(),
+                                        rateNames.getOrDefault(t.getTaxRateId(), "Tax"), t.getTax()))
+                                .toList())
+                        .build())
+                .toList();
+    }
+
+    private LocalDate dayOf(OffsetDateTime time) {
+        return time.atZoneSameInstant(zone).toLocalDate();
+    }
+
+    private static BigDecimal cents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private static BigDecimal nonNull(BigDecimal amount) {
+        return amount != null ? amount : BigDecimal.ZERO;
+    }
+}
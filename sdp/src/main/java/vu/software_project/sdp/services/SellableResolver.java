@@ -0,0 +1,121 @@
+package vu.software_project.sdp.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import vu.software_project.sdp.entities.Product;
+import vu.software_project.sdp.entities.ProductVariation;
+import vu.software_project.sdp.entities.TaxRate;
+import vu.software_project.sdp.events.CatalogChangedEvent;
+import vu.software_project.sdp.repositories.ProductRepository;
+import vu.software_project.sdp.repositories.ProductVariationRepository;
+import vu.software_project.sdp.repositories.TaxRateRepository;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * What order lines need to know about a merchant's products: price, tax rate and variations,
+ * as immutable records. Loaded per merchant in three queries and kept until a newer catalog
+ * change commits; product, variation and tax rate writes all bump the catalog version, so
+ * adding a line to an order costs no catalog queries while the catalog is unchanged.
+ */
+@Component
+public class SellableResolver {
+
+    private final CatalogService catalogService;
+    private final ProductRepository productRepository;
+    private final ProductVariationRepository variationRepository;
+    private final TaxRateRepository taxRateRepository;
+    private final int maxCachedMerchants;
+
+    private final ConcurrentHashMap<Long, Catalog> catalogs = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Long> committedVersions = new ConcurrentHashMap<>();
+
+    public SellableResolver(
+            CatalogService catalogService,
+            ProductRepository productRepository,
+            ProductVariationRepository variationRepository,
+            TaxRateRepository taxRateRepository,
+            @Value("${catalog.sellables.max-cached-merchants:1000}") int maxCachedMerchants
+    ) {
+        this.catalogService = catalogService;
+        this.productRepository = productRepository;
+        this.variationRepository = variationRepository;
+        this.taxRateRepository = taxRateRepository;
+        this.maxCachedMerchants = maxCachedMerchants;
+    }
+
+    public record Sellable(Long productId, String name, BigDecimal price, Rate taxRate, Map<Long, Variation> variations) {
+    }
+
+    public record Variation(Long id, String name, BigDecimal priceOffset) {
+    }
+
+    public record Rate(String id, String name, BigDecimal rate) {
+    }
+
+    private record Catalog(long version, Map<Long, Sellable> products, Map<String, Rate> taxRates) {
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        committedVersions.merge(event.getMerchantId(), event.getVersion(), Math::max);
+    }
+
+    public Sellable getProduct(Long merchantId, Long productId) {
+        Sellable sellable = load(merchantId).products().get(productId);
+        if (sellable == null) {
+            throw new IllegalArgumentException("Product not found or access denied");
+        }
+        return sellable;
+    }
+
+    public Optional<Rate> getTaxRate(Long merchantId, String taxRateId) {
+        return Optional.ofNullable(taxRateId).map(id -> load(merchantId).taxRates().get(id));
+    }
+
+    private Catalog load(Long merchantId) {
+        Catalog cached = catalogs.get(merchantId);
+        if (cached != null && cached.version() >= committedVersions.getOrDefault(merchantId, 0L)) {
+            return cached;
+        }
+        Catalog built = build(merchantId);
+        if (catalogs.size() >= maxCachedMerchants && !catalogs.containsKey(merchantId)) {
+            catalogs.clear();
+        }
+        return catalogs.merge(merchantId, built, (old, fresh) -> fresh.version() >= old.version() ? fresh : old);
+    }
+
+    // The version is read before the rows, so the records are at least as new as the version says
+    private Catalog build(Long merchantId) {
+        long version = catalogService.getVersion(merchantId);
+
+        // Inactive rates stay resolvable; lines keep the rate their product points at
+        Map<String, Rate> taxRates = new HashMap<>();
+        for (TaxRate rate : taxRateRepository.findByMerchantId(merchantId)) {
+            taxRates.put(rate.getId(), new Rate(rate.getId(), rate.getName(), rate.getRate()));
+        }
+
+        List<Product> products = productRepository.findByMerchantId(merchantId);
+        Map<Long, List<ProductVariation>> variationsByProduct = variationRepository
+                .findByProductIdIn(products.stream().map(Product::getId).toList())
+                .stream()
+                .collect(Collectors.groupingBy(ProductVariation::getProductId));
+
+        Map<Long, Sellable> sellables = new HashMap<>(products.size() * 2);
+        for (Product p : products) {
+            Map<Long, Variation> variations = new HashMap<>();
+            for (ProductVariation v : variationsByProduct.getOrDefault(p.getId(), List.of())) {
+                variations.put(v.getId(), new Variation(v.getId(), v.getName(),
+                        v.getPriceOffset() != null ? v.getPriceOffset() : BigDecimal.ZERO));
+            }
+            Rate rate = p.getTaxRateId() != null ? taxRates.get(p.getTaxRateId()) : null;
+            sellables.put(p.getId(), new Sellable(p.getId(), p.getName(), p.getPrice(), rate, Map.copyOf(variations)));
+        }
+        return new Catalog(version, Map.copyOf(sellables), Map.copyOf(taxRates));
+    }
+}
@@ -3,19 +3,23 @@ package vu.software_project.sdp.services;
 import vu.software_project.sdp.DTOs.item.ItemCreateRequestDTO;
 import vu.software_project.sdp.DTOs.item.ItemResponseDTO;
 import vu.software_project.sdp.DTOs.item.ItemUpdateRequestDTO;
+import vu.software_project.sdp.entities.CatalogChange;
 import vu.software_project.sdp.entities.ServiceItem;
 import vu.software_project.sdp.repositories.ServiceItemRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import java.util.Collection;
 import java.util.List;
 import java.util.stream.Collectors;
 
 @Service
 public class ServiceItemService {
     private final ServiceItemRepository serviceItemRepository;
+    private final CatalogService catalogService;
 
-    public ServiceItemService(ServiceItemRepository serviceItemRepository) {
+    public ServiceItemService(ServiceItemRepository serviceItemRepository, CatalogService catalogService) {
         this.serviceItemRepository = serviceItemRepository;
+        this.catalogService = catalogService;
     }
 
     @Transactional
@@ -25,8 +29,12 @@ public class ServiceItemService {
         serviceItem.setPrice(request.getPrice());
         serviceItem.setMerchantId(merchantId);
         serviceItem.setTaxRateId(request.getTaxRateId());
+        if (request.getDurationMinutes() != null) {
+            serviceItem.setDurationMinutes(validDuration(request.getDurationMinutes()));
+        }
 
         ServiceItem saved = serviceItemRepository.save(serviceItem);
+        catalogService.recordChange(merchantId, CatalogChange.EntityType.SERVICE, saved.getId(), false);
         return toResponseDTO(saved);
     }
 
@@ -46,6 +54,15 @@ public class ServiceItemService {
             .collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
+    public List<ItemResponseDTO> getServiceItemsByIds(Collection<Long> ids, Long merchantId) {
+        return serviceItemRepository.findAllById(ids)
+            .stream()
+            .filter(s -> s.getMerchantId().equals(merchantId))
+            .map(this::toResponseDTO)
+            .collect(Collectors.toList());
+    }
+
     @Transactional
     public ItemResponseDTO updateServiceItem(Long id, ItemUpdateRequestDTO request, Long merchantId) {
         ServiceItem serviceItem = serviceItemRepository.findByIdAndMerchantId(id, merchantId)
@@ -55,8 +72,12 @@ public class ServiceItemService {
         serviceItem.setName(request.getName());
         serviceItem.setPrice(request.getPrice());
         serviceItem.setTaxRateId(request.getTaxRateId());
+        if (request.getDurationMinutes() != null) {
+            serviceItem.setDurationMinutes(validDuration(request.getDurationMinutes()));
+        }
 
         ServiceItem updated = serviceItemRepository.save(serviceItem);
+        catalogService.recordChange(merchantId, CatalogChange.EntityType.SERVICE, id, false);
         return toResponseDTO(updated);
     }
 
@@ -66,6 +87,7 @@ public class ServiceItemService {
             throw new IllegalArgumentException("Service item not found or access denied");
         }
         serviceItemRepository.deleteById(id);
+        catalogService.recordChange(merchantId, CatalogChange.EntityType.SERVICE, id, true);
     }
 
     private ItemResponseDTO toResponseDTO(ServiceItem serviceItem) {
@@ -75,7 +97,17 @@ public class ServiceItemService {
             serviceItem.getPrice(),
             "SERVICE_ITEM",
             serviceItem.getTaxRateId(),
+            null,
+            serviceItem.getDurationMinutes(),
+            null,
             null
         );
     }
+
+    private int validDuration(int minutes) {
+        if (minutes <= 0 || minutes > 24 * 60) {
+            throw new IllegalArgumentException("Service duration must be between 1 and 1440 minutes");
+        }
+        return minutes;
+    }
 }
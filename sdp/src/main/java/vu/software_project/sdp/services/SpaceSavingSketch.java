@@ -0,0 +1,127 @@
+package vu.software_project.sdp.services;
+
+import java.util.*;
+
+/**
+ * Space-Saving summary of item quantities: at most {@code capacity} counters, and an item that
+ * arrives when all are taken replaces the smallest one, inheriting its count as possible error.
+ * Every item sold more than {@code total / capacity} times is guaranteed a counter, and each
+ * counter's {@code count} overestimates the true quantity by at most its {@code error}.
+ * Not thread-safe.
+ */
+final class SpaceSavingSketch {
+
+    record Item(long itemId, String name, long count, long error) {
+    }
+
+    private static final class Counter {
+        final long itemId;
+        String name;
+        long count;
+        long error;
+
+        Counter(long itemId, String name, long count, long error) {
+            this.itemId = itemId;
+            this.name = name;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    private static final Comparator<Counter> BY_COUNT =
+            Comparator.<Counter>comparingLong(c -> c.count).thenComparingLong(c -> c.itemId);
+
+    private final int capacity;
+    private final Map<Long, Counter> counters = new HashMap<>();
+    private final TreeSet<Counter> byCount = new TreeSet<>(BY_COUNT);
+
+    SpaceSavingSketch(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive");
+        this.capacity = capacity;
+    }
+
+    // Items are taken as exact counts when they come from the database, or as-is from a checkpoint
+    static SpaceSavingSketch of(int capacity, Collection<Item> items) {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(capacity);
+        items.stream()
+                .sorted(Comparator.comparingLong(Item::count).reversed())
+                .limit(capacity)
+                .forEach(i -> sketch.put(new Counter(i.itemId(), i.name(), i.count(), i.error())));
+        return sketch;
+    }
+
+    void add(long itemId, String name, long quantity) {
+        if (quantity <= 0) return;
+        Counter counter = counters.get(itemId);
+        if (counter != null) {
+            byCount.remove(counter);
+            counter.count += quantity;
+            if (name != null) counter.name = name;
+            byCount.add(counter);
+        } else if (counters.size() < capacity) {
+            put(new Counter(itemId, name, quantity, 0));
+        } else {
+            Counter smallest = byCount.pollFirst();
+            counters.remove(smallest.itemId);
+            put(new Counter(itemId, name, smallest.count + quantity, smallest.count));
+        }
+    }
+
+    /**
+     * Combines summaries of disjoint streams, e.g. the days of a week. An item missing from a full
+     * summary may still have sold up to that summary's smallest count there, which is added to its
+     * count and error; the {@code capacity} largest results are kept.
+     */
+    static SpaceSavingSketch merge(int capacity, Collection<SpaceSavingSketch> sketches) {
+        Map<Long, Counter> merged = new HashMap<>();
+        for (SpaceSavingSketch sketch : sketches) {
+            for (Counter c : sketch.counters.values()) {
+                merged.merge(c.itemId, new Counter(c.itemId, c.name, c.count, c.error), (a, b) -> {
+                    a.count += b.count;
+                    a.error += b.error;
+                    if (a.name == null) a.name = b.name;
+                    return a;
+                });
+            }
+        }
+        for (SpaceSavingSketch sketch : sketches) {
+            long floor = sketch.minCount();
+            if (floor == 0) continue;
+            for (Counter c : merged.values()) {
+                if (!sketch.counters.containsKey(c.itemId)) {
+                    c.count += floor;
+                    c.error += floor;
+                }
+            }
+        }
+        return of(capacity, merged.values().stream().map(c -> new Item(c.itemId, c.name, c.count, c.error)).toList());
+    }
+
+    // Largest counts first
+    List<Item> top(int k) {
+        List<Item> items = new ArrayList<>(Math.min(k, counters.size()));
+        for (Iterator<Counter> it = byCount.descendingIterator(); it.hasNext() && items.size() < k; ) {
+            Counter c = it.next();
+            items.add(new Item(c.itemId, c.name, c.count, c.error));
+        }
+        return items;
+    }
+
+    List<Item> items() {
+        return top(counters.size());
+    }
+
+    // Smallest count once every counter is taken; below it nothing is known about an item
+    long minCount() {
+        return counters.size() < capacity || byCount.isEmpty() ? 0 : byCount.first().count;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    private void put(Counter counter) {
+        counters.put(counter.itemId, counter);
+        byCount.add(counter);
+    }
+}
@@ -0,0 +1,31 @@
+package vu.software_project.sdp.services;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import vu.software_project.sdp.entities.User;
+
+/**
+ * Drops a merchant's cached availability whenever one of its users is added, changed (role,
+ * merchant) or removed, however that happens. The old merchant of a user who moves is evicted by
+ * the caller, since only the new state reaches this listener.
+ */
+public class StaffChangeListener {
+
+    // Resolved on use; Hibernate creates the listener while the repositories the engine needs are still being built
+    private final ObjectProvider<AvailabilityEngine> availabilityEngine;
+
+    public StaffChangeListener(ObjectProvider<AvailabilityEngine> availabilityEngine) {
+        this.availabilityEngine = availabilityEngine;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    void staffChanged(User user) {
+        if (user.getMerchantId() != null) {
+            availabilityEngine.getObject().evictMerchant(user.getMerchantId());
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package vu.software_project.sdp.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import vu.software_project.sdp.entities.CatalogChange;
+import vu.software_project.sdp.entities.TaxRate;
+import vu.software_project.sdp.repositories.TaxRateRepository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Service
+@RequiredArgsConstructor
+public class TaxRateService {
+
+    private final TaxRateRepository taxRateRepository;
+    private final CatalogService catalogService;
+
+    @Transactional(readOnly = true)
+    public List<TaxRate> getByMerchant(Long merchantId) {
+        return taxRateRepository.findByMerchantId(merchantId);
+    }
+
+    @Transactional(readOnly = true)
+    public List<TaxRate> getByIds(Collection<String> ids, Long merchantId) {
+        return taxRateRepository.findAllById(ids).stream()
+                .filter(t -> t.getMerchantId().equals(merchantId))
+                .toList();
+    }
+
+    @Transactional
+    public TaxRate create(TaxRate taxRate) {
+        TaxRate saved = taxRateRepository.save(taxRate);
+        catalogService.recordChange(saved.getMerchantId(), CatalogChange.EntityType.TAX_RATE, saved.getId(), false);
+        return saved;
+    }
+
+    @Transactional
+    public Optional<TaxRate> update(String id, TaxRate taxRate) {
+        Optional<TaxRate> existing = taxRateRepository.findById(id);
+        if (existing.isEmpty()) return Optional.empty();
+        Long previousMerchantId = existing.get().getMerchantId();
+
+        taxRate.setId(id);
+        TaxRate saved = taxRateRepository.save(taxRate);
+        catalogService.recordChange(saved.getMerchantId(), CatalogChange.EntityType.TAX_RATE, id, false);
+        if (!saved.getMerchantId().equals(previousMerchantId)) {
+            catalogService.recordChange(previousMerchantId, CatalogChange.EntityType.TAX_RATE, id, true);
+        }
+        return Optional.of(saved);
+    }
+
+    // Tax rates are deactivated rather than deleted, past orders still refer to them
+    @Transactional
+    public void deactivate(String id) {
+        taxRateRepository.findById(id).ifPresent(taxRate -> {
+            taxRate.setActive(false);
+            taxRateRepository.save(taxRate);
+            catalogService.recordChange(taxRate.getMerchantId(), CatalogChange.EntityType.TAX_RATE, id, false);
+        });
+    }
+}
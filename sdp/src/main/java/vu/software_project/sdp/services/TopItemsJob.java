@@ -0,0 +1,50 @@
+package vu.software_project.sdp.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * Keeps the in-memory top items boards durable: restores them on startup, checkpoints them
+ * periodically and reconciles the finished days of the window with exact counts every night.
+ */
+@Component
+@RequiredArgsConstructor
+public class TopItemsJob {
+
+    private final TopItemsService topItemsService;
+    private final SalesRollupService salesRollupService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void restore() {
+        try {
+            topItemsService.restore();
+        } catch (Exception e) {
+            System.err.println("Top items restore failed: " + e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${reports.top-items.checkpoint-interval-ms:60000}")
+    public void checkpoint() {
+        try {
+            topItemsService.checkpoint();
+        } catch (Exception e) {
+            System.err.println("Top items checkpoint failed: " + e.getMessage());
+        }
+    }
+
+    @Scheduled(cron = "${reports.top-items.reconcile-cron:0 40 3 * * *}")
+    public void reconcile() {
+        LocalDate today = LocalDate.now(salesRollupService.getZone());
+        try {
+            topItemsService.reconcile(today.minusDays(TopItemsService.WINDOW_DAYS - 1), today.minusDays(1));
+            topItemsService.checkpoint();
+        } catch (Exception e) {
+            System.err.println("Top items reconciliation failed: " + e.getMessage());
+        }
+    }
+}
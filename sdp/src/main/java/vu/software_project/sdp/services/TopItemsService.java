@@ -0,0 +1,293 @@
+package vu.software_project.sdp.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import vu.software_project.sdp.DTOs.reports.TopItemDTO;
+import vu.software_project.sdp.events.SalesRecordedEvent;
+
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Live "top sellers" board per merchant. Paid orders feed one {@link SpaceSavingSketch} per merchant
+ * and day, so the board for today or the last seven days is answered from memory without grouping
+ * {@code order_items}. Dirty days are checkpointed periodically and restored on startup, and
+ * finished days are replaced nightly with exact counts from the orders.
+ * <p>
+ * Beyond {@code reports.top-items.max-merchants} merchants are not tracked; their board is
+ * grouped from the orders on request.
+ */
+@Service
+public class TopItemsService {
+
+    public enum Period { TODAY, WEEK }
+
+    public static final int MAX_LIMIT = 50;
+    static final int WINDOW_DAYS = 7;
+
+    private static final String EXACT_SALES = """
+            WITH sold AS (
+                SELECT o.merchant_id, (o.paid_at AT TIME ZONE ?)::date AS day, oi.item_id,
+                       max(oi.name) AS name, SUM(oi.quantity) AS quantity
+                FROM orders o
+                JOIN order_items oi ON oi.order_id = o.id
+                WHERE o.paid_at >= ? AND o.paid_at < ? AND oi.item_id IS NOT NULL
+                GROUP BY 1, 2, 3
+            )
+            SELECT merchant_id, day, item_id, name, quantity
+            FROM (
+                SELECT sold.*, row_number() OVER (PARTITION BY merchant_id, day ORDER BY quantity DESC, item_id) AS position
+                FROM sold
+            ) ranked
+            WHERE position <= ?
+            ORDER BY merchant_id, day, position
+            """;
+
+    private static final int FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final ZoneId zone;
+    private final int capacity;
+    private final int maxMerchants;
+
+    private final ConcurrentHashMap<Long, MerchantItems> merchants = new ConcurrentHashMap<>();
+
+    public TopItemsService(
+            JdbcTemplate jdbcTemplate,
+            ObjectMapper objectMapper,
+            SalesRollupService salesRollupService,
+            @Value("${reports.top-items.capacity:200}") int capacity,
+            @Value("${reports.top-items.max-merchants:5000}") int maxMerchants
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.zone = salesRollupService.getZone();
+        this.capacity = capacity;
+        this.maxMerchants = maxMerchants;
+    }
+
+    // Guarded by its own monitor; checkouts of different merchants never wait on each other
+    private final class MerchantItems {
+        final TreeMap<LocalDate, SpaceSavingSketch> days = new TreeMap<>();
+        final Set<LocalDate> dirty = new HashSet<>();
+
+        SpaceSavingSketch day(LocalDate day) {
+            return days.computeIfAbsent(day, d -> new SpaceSavingSketch(capacity));
+        }
+
+        void dropBefore(LocalDate first) {
+            days.headMap(first).clear();
+            dirty.removeIf(d -> d.isBefore(first));
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onSalesRecorded(SalesRecordedEvent event) {
+        if (event.getItems().isEmpty()) return;
+        MerchantItems items = tracked(event.getMerchantId());
+        if (items == null) return;
+        synchronized (items) {
+            SpaceSavingSketch sketch = items.day(event.getDay());
+            for (SalesRecordedEvent.ItemSold sold : event.getItems()) {
+                sketch.add(sold.getItemId(), sold.getName(), sold.getQuantity());
+            }
+            items.dirty.add(event.getDay());
+        }
+    }
+
+    public List<TopItemDTO> getTopItems(Long merchantId, Period period, int limit) {
+        if (limit <= 0 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        }
+        LocalDate today = LocalDate.now(zone);
+        LocalDate from = period == Period.TODAY ? today : today.minusDays(WINDOW_DAYS - 1);
+
+        MerchantItems items = merchants.get(merchantId);
+        if (items == null) {
+            // Untracked only once the limit is reached; below it the merchant simply sold nothing yet
+            return merchants.size() >= maxMerchants ? exactTopItems(merchantId, from, today, limit) : List.of();
+        }
+
+        List<SpaceSavingSketch.Item> top;
+        synchronized (items) {
+            Collection<SpaceSavingSketch> window = items.days.subMap(from, true, today, true).values();
+            if (window.isEmpty()) {
+                top = List.of();
+            } else if (window.size() == 1) {
+                top = window.iterator().next().top(limit);
+            } else {
+                top = SpaceSavingSketch.merge(capacity, window).top(limit);
+            }
+        }
+        return top.stream()
+                .map(i -> new TopItemDTO(i.itemId(), i.name(), i.count(), i.count() - i.error()))
+                .toList();
+    }
+
+    /**
+     * Saves the days that changed since the last checkpoint and forgets days that left the window.
+     * A day whose save fails stays dirty for the next run.
+     */
+    public void checkpoint() {
+        LocalDate first = LocalDate.now(zone).minusDays(WINDOW_DAYS - 1);
+        OffsetDateTime now = OffsetDateTime.now();
+
+        for (Map.Entry<Long, MerchantItems> entry : merchants.entrySet()) {
+            MerchantItems items = entry.getValue();
+            Map<LocalDate, List<SpaceSavingSketch.Item>> snapshot = new TreeMap<>();
+            synchronized (items) {
+                items.dropBefore(first);
+                for (LocalDate day : items.dirty) {
+                    snapshot.put(day, items.days.get(day).items());
+                }
+                items.dirty.clear();
+            }
+            if (snapshot.isEmpty()) continue;
+
+            try {
+                List<Object[]> rows = new ArrayList<>();
+                for (Map.Entry<LocalDate, List<SpaceSavingSketch.Item>> day : snapshot.entrySet()) {
+                    rows.add(new Object[]{entry.getKey(), day.getKey(), write(day.getValue()), now});
+                }
+                jdbcTemplate.batchUpdate("""
+                        INSERT INTO top_item_checkpoints (merchant_id, day, items, saved_at)
+                        VALUES (?, ?, ?, ?)
+                        ON CONFLICT (merchant_id, day) DO UPDATE SET items = EXCLUDED.items, saved_at = EXCLUDED.saved_at
+                        """, rows);
+            } catch (RuntimeException e) {
+                System.err.println("Top items checkpoint failed for merchant " + entry.getKey() + ": " + e.getMessage());
+                synchronized (items) {
+                    items.dirty.addAll(snapshot.keySet());
+                }
+            }
+        }
+        jdbcTemplate.update("DELETE FROM top_item_checkpoints WHERE day < ?", first);
+    }
+
+    /**
+     * Loads the checkpoints of the current window. Sales recorded since startup are a separate
+     * stream from the checkpointed ones, so the two summaries are merged rather than replaced.
+     */
+    public void restore() {
+        LocalDate first = LocalDate.now(zone).minusDays(WINDOW_DAYS - 1);
+        jdbcTemplate.query("SELECT merchant_id, day, items FROM top_item_checkpoints WHERE day >= ?", rs -> {
+            long merchantId = rs.getLong("merchant_id");
+            LocalDate day = rs.getObject("day", LocalDate.class);
+            MerchantItems items = tracked(merchantId);
+            if (items == null) return;
+            SpaceSavingSketch restored = SpaceSavingSketch.of(capacity, read(rs.getString("items")));
+            synchronized (items) {
+                SpaceSavingSketch live = items.days.get(day);
+                items.days.put(day, live == null ? restored : SpaceSavingSketch.merge(capacity, List.of(restored, live)));
+                if (live != null) items.dirty.add(day);
+            }
+        }, first);
+    }
+
+    /**
+     * Replaces the summaries of {@code from}..{@code to} with exact quantities grouped from the
+     * paid orders, read through a cursor. Meant for finished days; an order paid on a reconciled
+     * day after the query ran would be lost until the next reconciliation.
+     */
+    @Transactional(readOnly = true)
+    public void reconcile(LocalDate from, LocalDate to) {
+        Map<LocalDate, List<SpaceSavingSketch.Item>> current = new HashMap<>();
+        long[] currentMerchant = {Long.MIN_VALUE};
+
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(EXACT_SALES);
+            ps.setFetchSize(FETCH_SIZE);
+            ps.setString(1, zone.getId());
+            ps.setObject(2, startOf(from));
+            ps.setObject(3, startOf(to.plusDays(1)));
+            ps.setInt(4, capacity);
+            return ps;
+        }, rs -> {
+            long merchantId = rs.getLong("merchant_id");
+            if (merchantId != currentMerchant[0]) {
+                replace(currentMerchant[0], current);
+                current.clear();
+                currentMerchant[0] = merchantId;
+            }
+            current.computeIfAbsent(rs.getObject("day", LocalDate.class), d -> new ArrayList<>())
+                    .add(new SpaceSavingSketch.Item(rs.getLong("item_id"), rs.getString("name"), rs.getLong("quantity"), 0));
+        });
+        replace(currentMerchant[0], current);
+    }
+
+    private void replace(long merchantId, Map<LocalDate, List<SpaceSavingSketch.Item>> exact) {
+        if (exact.isEmpty()) return;
+        MerchantItems items = tracked(merchantId);
+        if (items == null) return;
+        synchronized (items) {
+            exact.forEach((day, sold) -> {
+                items.days.put(day, SpaceSavingSketch.of(capacity, sold));
+                items.dirty.add(day);
+            });
+        }
+    }
+
+    private List<TopItemDTO> exactTopItems(Long merchantId, LocalDate from, LocalDate to, int limit) {
+        return jdbcTemplate.query("""
+                        SELECT oi.item_id, max(oi.name) AS name, SUM(oi.quantity) AS quantity
+                        FROM orders o
+                        JOIN order_items oi ON oi.order_id = o.id
+                        WHERE o.merchant_id = ? AND o.paid_at >= ? AND o.paid_at < ? AND oi.item_id IS NOT NULL
+                        GROUP BY oi.item_id
+                        ORDER BY quantity DESC, oi.item_id
+                        LIMIT ?
+                        """,
+                (rs, n) -> new TopItemDTO(rs.getLong("item_id"), rs.getString("name"), rs.getLong("quantity"), rs.getLong("quantity")),
+                merchantId,
+                startOf(from),
+                startOf(to.plusDays(1)),
+                limit);
+    }
+
+    private OffsetDateTime startOf(LocalDate day) {
+        return day.atStartOfDay(zone).toOffsetDateTime();
+    }
+
+    // Null once maxMerchants others are tracked
+    private MerchantItems tracked(long merchantId) {
+        MerchantItems items = merchants.get(merchantId);
+        if (items != null || merchants.size() >= maxMerchants) return items;
+        return merchants.computeIfAbsent(merchantId, id -> new MerchantItems());
+    }
+
+    private String write(List<SpaceSavingSketch.Item> items) {
+        List<Object[]> rows = items.stream()
+                .map(i -> new Object[]{i.itemId(), i.name(), i.count(), i.error()})
+                .toList();
+        try {
+            return objectMapper.writeValueAsString(rows);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize top items", e);
+        }
+    }
+
+    private List<SpaceSavingSketch.Item> read(String json) {
+        try {
+            List<List<Object>> rows = objectMapper.readValue(json, new TypeReference<>() {});
+            return rows.stream()
+                    .map(r -> new SpaceSavingSketch.Item(((Number) r.get(0)).longValue(), (String) r.get(1),
+                            ((Number) r.get(2)).longValue(), ((Number) r.get(3)).longValue()))
+                    .toList();
+        } catch (JsonProcessingException e) {
+            System.err.println("Skipping unreadable top items checkpoint: " + e.getMessage());
+            return List.of();
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package vu.software_project.sdp.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import vu.software_project.sdp.DTOs.reports.ZReportDTO;
+import vu.software_project.sdp.entities.Payment;
+import vu.software_project.sdp.entities.ZReport;
+import vu.software_project.sdp.repositories.ZReportRepository;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * Closes out a merchant's shift or day into an immutable {@link ZReport}. The figures come from a
+ * few grouped queries over the orders, payments and refunds of the period rather than from loading
+ * them; reading a closed report later only reads its snapshot.
+ */
+@Service
+@RequiredArgsConstructor
+public class ZReportService {
+
+    // Orders paid in the period; same line arithmetic as the daily sales rollups
+    private static final String PAID_LINES = """
+            WITH paid AS (
+                SELECT o.id, COALESCE(o.applied_discount_amount, 0) AS order_discount
+                FROM orders o
+                WHERE o.merchant_id = :merchantId AND o.paid_at >= :fromTs AND o.paid_at < :toTs
+            ),
+            lines AS (
+                SELECT oi.order_id, oi.tax_rate_id,
+                       (oi.price + COALESCE(v.offsets, 0)) * oi.quantity AS gross,
+                       COALESCE(oi.applied_discount_amount, 0) AS discount,
+                       COALESCE(oi.applied_tax_rate, 0) AS rate
+                FROM paid
+                JOIN order_items oi ON oi.order_id = paid.id
+                LEFT JOIN LATERAL (
+                    SELECT SUM(price_offset) AS offsets FROM order_item_variations WHERE order_item_id = oi.id
+                ) v ON true
+            )
+            """;
+
+    private static final String SALES = PAID_LINES + """
+            , order_totals AS (
+                SELECT ROUND(COALESCE(SUM(l.gross), 0), 2) AS gross,
+                       ROUND(COALESCE(SUM(l.discount), 0) + paid.order_discount, 2) AS discounts,
+                       ROUND(COALESCE(SUM((l.gross - l.discount) * l.rate), 0), 2) AS tax
+                FROM paid
+                LEFT JOIN lines l ON l.order_id = paid.id
+                GROUP BY paid.id, paid.order_discount
+            )
+            SELECT COUNT(*) AS orders, COALESCE(SUM(gross), 0) AS gross,
+                   COALESCE(SUM(discounts), 0) AS discounts, COALESCE(SUM(tax), 0) AS tax
+            FROM order_totals
+            """;
+
+    private static final String TAXES = PAID_LINES + """
+            , order_taxes AS (
+                SELECT l.tax_rate_id, ROUND(SUM(l.gross - l.discount), 2) AS taxable,
+                       ROUND(SUM((l.gross - l.discount) * l.rate), 2) AS tax
+                FROM lines l
+                WHERE l.tax_rate_id IS NOT NULL
+                GROUP BY l.order_id, l.tax_rate_id
+            )
+            SELECT ot.tax_rate_id, COALESCE(max(t.name), 'Tax') AS name, COALESCE(max(t.rate), 0) AS rate,
+                   SUM(ot.taxable) AS taxable, SUM(ot.tax) AS tax
+            FROM order_taxes ot
+            LEFT JOIN tax_rates t ON t.id = ot.tax_rate_id
+            GROUP BY ot.tax_rate_id
+            ORDER BY ot.tax_rate_id
+            """;
+
+    // Money taken in the period, whatever later happened to the order. A card payment counts when
+    // it succeeded, not when the terminal started it
+    private static final String TENDERS = """
+            SELECT p.payment_type, COUNT(*) AS payments, SUM(p.amount) AS amount, SUM(p.tip) AS tips,
+                   COALESCE(SUM(p.cash_received), 0) AS received
+            FROM payments p
+            JOIN orders o ON o.id = p.order_id
+            WHERE o.merchant_id = :merchantId AND p.succeeded_at >= :fromTs AND p.succeeded_at < :toTs
+              AND p.status IN ('SUCCEEDED', 'REFUNDED')
+            GROUP BY p.payment_type
+            """;
+
+    // The row with a null payment type is the total over all tenders
+    private static final String REFUNDS = """
+            SELECT l.payment_type, COUNT(DISTINCT r.id) AS refunds, SUM(l.amount) AS amount
+            FROM refunds r
+            JOIN orders o ON o.id = r.order_id
+            JOIN refund_legs l ON l.refund_id = r.id
+            WHERE o.merchant_id = :merchantId AND r.status = 'COMPLETED'
+              AND r.completed_at >= :fromTs AND r.completed_at < :toTs AND l.status = 'COMPLETED'
+            GROUP BY GROUPING SETS ((l.payment_type), ())
+            """;
+
+    private final ZReportRepository zReportRepository;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final SalesRollupService salesRollupService;
+
+    @Value("${reports.z-report.settle-lag-ms:60000}")
+    private long settleLagMillis;
+
+    /**
+     * Closes everything since the merchant's previous close-out, or since the start of today for
+     * the first one, up to the settle lag before now. Payments, orders and refunds are stamped
+     * before their transaction commits; stopping short of now leaves those still committing for
+     * the next close-out instead of out of both. Two close-outs racing for the same period fail
+     * on the unique period start.
+     */
+    @Transactional
+    public ZReportDTO closeOut(Long merchantId, Long userId) {
+        ZoneId zone = salesRollupService.getZone();
+        OffsetDateTime now = OffsetDateTime.now();
+        OffsetDateTime periodEnd = now.minus(Duration.ofMillis(settleLagMillis));
+        OffsetDateTime periodStart = zReportRepository.findFirstByMerchantIdOrderByPeriodEndDesc(merchantId)
+                .map(ZReport::getPeriodEnd)
+                .orElseGet(() -> LocalDate.now(zone).atStartOfDay(zone).toOffsetDateTime());
+        if (!periodEnd.isAfter(periodStart)) {
+            throw new IllegalStateException("Nothing to close yet: the previous close-out is too recent");
+        }
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("merchantId", merchantId)
+                .addValue("fromTs", periodStart)
+                .addValue("toTs", periodEnd);
+
+        ZReport report = new ZReport();
+        report.setMerchantId(merchantId);
+        report.setBusinessDay(periodEnd.atZoneSameInstant(zone).toLocalDate());
+        report.setPeriodStart(periodStart);
+        report.setPeriodEnd(periodEnd);
+        report.setClosedBy(userId);
+        report.setCreatedAt(now);
+
+        namedJdbcTemplate.query(SALES, params, rs -> {
+            report.setOrdersPaid(rs.getInt("orders"));
+            report.setGrossSales(rs.getBigDecimal("gross"));
+            report.setDiscounts(rs.getBigDecimal("discounts"));
+            report.setTax(rs.getBigDecimal("tax"));
+        });
+
+        report.setTaxes(namedJdbcTemplate.query(TAXES, params, (rs, n) -> new ZReport.TaxLine(
+                rs.getString("tax_rate_id"), rs.getString("name"), rs.getBigDecimal("rate"),
+                rs.getBigDecimal("taxable"), rs.getBigDecimal("tax"))));
+
+        report.setCashReceived(BigDecimal.ZERO);
+        report.setChangeGiven(BigDecimal.ZERO);
+        report.setCashTips(BigDecimal.ZERO);
+        report.setCardTotal(BigDecimal.ZERO);
+        report.setCardTips(BigDecimal.ZERO);
+        report.setGiftCardRedemptions(BigDecimal.ZERO);
+        namedJdbcTemplate.query(TENDERS, params, rs -> {
+            int payments = rs.getInt("payments");
+            BigDecimal amount = rs.getBigDecimal("amount");
+            BigDecimal tips = rs.getBigDecimal("tips");
+            switch (Payment.PaymentType.valueOf(rs.getString("payment_type"))) {
+                case CASH -> {
+                    BigDecimal received = rs.getBigDecimal("received");
+                    report.setCashPayments(payments);
+                    report.setCashReceived(received);
+                    report.setChangeGiven(received.subtract(amount));
+                    report.setCashTips(tips);
+                }
+                case CARD -> {
+                    report.setCardPayments(payments);
+                    report.setCardTotal(amount);
+                    report.setCardTips(tips);
+                }
+                case GIFT_CARD -> {
+                    report.setGiftCardPayments(payments);
+                    report.setGiftCardRedemptions(amount);
+                }
+            }
+        });
+
+        report.setRefunds(BigDecimal.ZERO);
+        report.setCashRefunds(BigDecimal.ZERO);
+        namedJdbcTemplate.query(REFUNDS, params, rs -> {
+            String paymentType = rs.getString("payment_type");
+            if (paymentType == null) {
+                report.setRefundsCount(rs.getInt("refunds"));
+                report.setRefunds(rs.getBigDecimal("amount"));
+            } else if (Payment.PaymentType.valueOf(paymentType) == Payment.PaymentType.CASH) {
+                report.setCashRefunds(rs.getBigDecimal("amount"));
+            }
+        });
+
+        report.setCashExpected(report.getCashReceived().subtract(report.getChangeGiven()).subtract(report.getCashRefunds()));
+
+        try {
+            return toDTO(zReportRepository.saveAndFlush(report));
+        } catch (DataIntegrityViolationException e) {
+            throw new IllegalStateException("This period is already being closed");
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public List<ZReportDTO> getReports(Long merchantId, LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        if (from.plusDays(SalesRollupService.MAX_REPORT_DAYS).isBefore(to)) {
+            throw new IllegalArgumentException("At most " + SalesRollupService.MAX_REPORT_DAYS + " days can be requested at once");
+        }
+        return zReportRepository.findByMerchantIdAndBusinessDayBetweenOrderByPeriodStartAsc(merchantId, from, to).stream()
+                .map(this::toDTO)
+                .toList();
+    }
+
+    @Transactional(readOnly = true)
+    public ZReportDTO getReport(Long id) {
+        return zReportRepository.findById(id)
+                .map(this::toDTO)
+                .orElseThrow(() -> new IllegalArgumentException("Z-report not found"));
+    }
+
+    private ZReportDTO toDTO(ZReport report) {
+        return ZReportDTO.builder()
+                .id(report.getId())
+                .merchantId(report.getMerchantId())
+                .businessDay(report.getBusinessDay())
+                .periodStart(report.getPeriodStart())
+                .periodEnd(report.getPeriodEnd())
+                .closedBy(report.getClosedBy())
+                .ordersPaid(report.getOrdersPaid())
+                .grossSales(report.getGrossSales())
+                .discounts(report.getDiscounts())
+                .netSales(report.getGrossSales().subtract(report.getDiscounts()))
+                .tax(report.getTax())
+                .tips(report.getCashTips().add(report.getCardTips()))
+                .cashPayments(report.getCashPayments())
+                .cashReceived(report.getCashReceived())
+                .changeGiven(report.getChangeGiven())
+                .cashTips(report.getCashTips())
+                .cashRefunds(report.getCashRefunds())
+                .cashExpected(report.getCashExpected())
+                .cardPayments(report.getCardPayments())
+                .cardTotal(report.getCardTotal())
+                .cardTips(report.getCardTips())
+                .giftCardPayments(report.getGiftCardPayments())
+                .giftCardRedemptions(report.getGiftCardRedemptions())
+                .refundsCount(report.getRefundsCount())
+                .refunds(report.getRefunds())
+                .taxes(report.getTaxes().stream()
+                        .map(t -> new ZReportDTO.TaxLiability(t.getTaxRateId(), t.getName(), t.getRate(), t.getTaxable(), t.getTax()))
+                        .toList())
+                .build();
+    }
+}
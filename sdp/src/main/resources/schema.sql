@@ -0,0 +1,117 @@
+-- Runs after Hibernate's schema update (spring.jpa.defer-datasource-initialization).
+-- Only objects Hibernate cannot derive from the entities belong here; every statement must be idempotent.
+-- Statements end with ^; (spring.sql.init.separator) so that DO blocks can contain plain semicolons.
+
+-- Gift card codes are derived from this sequence, see GiftCardCodeGenerator
+CREATE SEQUENCE IF NOT EXISTS gift_card_code_seq^;
+
+-- The ledger of a card sums to its balance. Cards issued before the ledger existed have no entries,
+-- so they get one opening ISSUE entry for their balance at the time of the upgrade.
+INSERT INTO gift_card_transactions (id, gift_card_code, merchant_id, type, amount, created_at)
+SELECT nextval('gift_card_transactions_seq'), g.code, g.merchant_id, 'ISSUE', g.current_balance, now()
+FROM gift_cards g
+WHERE NOT EXISTS (SELECT 1 FROM gift_card_transactions t WHERE t.gift_card_code = g.code)^;
+
+-- Reservations are time ranges; one employee cannot have two CONFIRMED ranges that overlap.
+-- Startup fails if existing data already overlaps, rather than running without the check.
+CREATE EXTENSION IF NOT EXISTS btree_gist^;
+
+UPDATE reservations r
+SET end_time = r.appointment_time + make_interval(mins => COALESCE(s.duration_minutes, 60))
+FROM services s
+WHERE r.end_time IS NULL AND s.id = r.service_id^;
+
+UPDATE reservations
+SET end_time = appointment_time + interval '60 minutes'
+WHERE end_time IS NULL^;
+
+ALTER TABLE reservations ALTER COLUMN end_time SET NOT NULL^;
+
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'reservations_no_overlap') THEN
+        ALTER TABLE reservations ADD CONSTRAINT reservations_no_overlap
+            EXCLUDE USING gist (employee_id WITH =, tsrange(appointment_time, end_time) WITH &&)
+            WHERE (status = 'CONFIRMED');
+    END IF;
+EXCEPTION WHEN exclusion_violation THEN
+    -- The constraint is the only double-booking check, so refuse to start without it
+    RAISE EXCEPTION 'reservations_no_overlap could not be created: existing CONFIRMED reservations overlap'
+        USING HINT = 'Cancel or reschedule the overlapping reservations of each employee, then restart.';
+END
+$$^;
+
+-- Calendar ETags are derived from updated_at; rows from before it existed count as changed at creation
+UPDATE reservations SET updated_at = created_at WHERE updated_at IS NULL^;
+
+-- Products and services share item_id_seq (pooled by 50). Move it past every id handed out by the
+-- old per-table identity columns; GREATEST keeps reruns from moving it backwards. The identities
+-- themselves are dropped so that nothing can insert from their stale counters.
+ALTER TABLE products ALTER COLUMN id DROP IDENTITY IF EXISTS^;
+ALTER TABLE services ALTER COLUMN id DROP IDENTITY IF EXISTS^;
+
+SELECT setval('item_id_seq', GREATEST(
+        (SELECT COALESCE(max(id), 1) FROM products),
+        (SELECT COALESCE(max(id), 1) FROM services),
+        (SELECT last_value FROM item_id_seq)))^;
+
+-- Catalog changes moved from an identity column to catalog_changes_seq (pooled by 50) so the import
+-- can hand out ids itself. Move the sequence past the existing rows so plain JDBC inserts through
+-- IdAllocator never see the fresh-sequence value 1.
+ALTER TABLE catalog_changes ALTER COLUMN id DROP IDENTITY IF EXISTS^;
+SELECT setval('catalog_changes_seq', GREATEST(
+        (SELECT COALESCE(max(id), 1) FROM catalog_changes),
+        (SELECT last_value FROM catalog_changes_seq)))^;
+
+-- These tables used identity columns before moving to pooled sequences (allocationSize 50) for
+-- insert batching. Drop the identity so nothing can insert from its stale counter, and move each
+-- sequence past the existing ids.
+DO $$
+DECLARE
+    t text;
+BEGIN
+    FOREACH t IN ARRAY ARRAY['orders', 'order_items', 'order_item_variations', 'payments', 'product_variations',
+                             'reservations', 'reservation_series', 'refunds'] LOOP
+        EXECUTE format('ALTER TABLE %I ALTER COLUMN id DROP IDENTITY IF EXISTS', t);
+        EXECUTE format('SELECT setval(%L, GREATEST((SELECT COALESCE(max(id), 1) FROM %I), (SELECT last_value FROM %I)))',
+                       t || '_seq', t, t || '_seq');
+    END LOOP;
+END
+$$^;
+
+-- A scanned SKU or barcode must name one product of the merchant. ProductService checks products and
+-- variations together under the merchant row lock; these indexes are the backstop for products.
+-- Startup fails if existing products already share a code, rather than running without the check.
+DROP INDEX IF EXISTS idx_products_merchant_sku^;
+DROP INDEX IF EXISTS idx_products_merchant_barcode^;
+
+DO $$
+BEGIN
+    CREATE UNIQUE INDEX IF NOT EXISTS ux_products_merchant_sku ON products (merchant_id, sku) WHERE sku IS NOT NULL;
+    CREATE UNIQUE INDEX IF NOT EXISTS ux_products_merchant_barcode ON products (merchant_id, barcode) WHERE barcode IS NOT NULL;
+EXCEPTION WHEN unique_violation THEN
+    RAISE EXCEPTION 'Unique SKU and barcode indexes could not be created: products of one merchant share a code'
+        USING HINT = 'Change or clear the duplicated SKUs and barcodes, then restart.';
+END
+$$^;
+
+-- Item name search falls back to these while a merchant's in-memory index is being built
+CREATE EXTENSION IF NOT EXISTS pg_trgm^;
+
+CREATE INDEX IF NOT EXISTS idx_products_name_trgm ON products USING gin (name gin_trgm_ops)^;
+CREATE INDEX IF NOT EXISTS idx_product_variations_name_trgm ON product_variations USING gin (name gin_trgm_ops)^;
+CREATE INDEX IF NOT EXISTS idx_services_name_trgm ON services USING gin (name gin_trgm_ops)^;
+
+-- Daily sales rollups count orders on the day they were paid or cancelled. Orders closed before
+-- those columns existed get the time of their last payment, or of their last update.
+UPDATE orders o
+SET paid_at = COALESCE((SELECT max(p.created_at) FROM payments p WHERE p.order_id = o.id), o.updated_at)
+WHERE o.paid_at IS NULL AND o.status IN ('PAID', 'REFUNDED')^;
+
+UPDATE orders SET cancelled_at = updated_at WHERE cancelled_at IS NULL AND status = 'CANCELLED'^;
+
+-- Z-reports count tenders when the money was taken. Payments from before succeeded_at existed get
+-- their last update, which for a succeeded card payment is its confirmation; refunded ones were
+-- last updated by the refund, so they fall back to their creation.
+UPDATE payments SET succeeded_at = updated_at WHERE succeeded_at IS NULL AND status = 'SUCCEEDED'^;
+UPDATE payments SET succeeded_at = created_at WHERE succeeded_at IS NULL AND status = 'REFUNDED'^;
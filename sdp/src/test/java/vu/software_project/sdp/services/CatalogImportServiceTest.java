@@ -0,0 +1,164 @@
+package vu.software_project.sdp.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import vu.software_project.sdp.DTOs.item.CatalogImportResultDTO;
+import vu.software_project.sdp.repositories.MerchantRepository;
+import vu.software_project.sdp.repositories.ProductRepository;
+import vu.software_project.sdp.repositories.TaxRateRepository;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * CSV record reading and chunk failure handling of the catalog import. Runs without the
+ * application context or a database; chunk writes go to a transaction template that fails on
+ * demand.
+ */
+class CatalogImportServiceTest {
+
+    private static final Long MERCHANT_ID = 39L;
+
+    @Test
+    void splitsQuotedValuesWithCommasEscapedQuotesAndLineBreaks() {
+        assertEquals(List.of("PRODUCT", "Latte", "3.50"), CatalogImportService.splitCsv("PRODUCT,Latte,3.50"));
+        assertEquals(List.of("PRODUCT", "Milk, oat", "1"), CatalogImportService.splitCsv("PRODUCT,\"Milk, oat\",1"));
+        assertEquals(List.of("PRODUCT", "The \"big\" one", "1"), CatalogImportService.splitCsv("PRODUCT,\"The \"\"big\"\" one\",1"));
+        assertEquals(List.of("PRODUCT", "Two\nlines", "1"), CatalogImportService.splitCsv("PRODUCT,\"Two\nlines\",1"));
+        assertEquals(List.of("PRODUCT", "", "1", "", ""), CatalogImportService.splitCsv("PRODUCT,,1,,"));
+    }
+
+    @Test
+    void rejectsUnterminatedQuotedValue() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> CatalogImportService.splitCsv("PRODUCT,\"Latte,3.50"));
+        assertEquals("Unterminated quoted value", e.getMessage());
+    }
+
+    @Test
+    void joinsTheLinesOfOneRecordAndCountsPhysicalLines() throws IOException {
+        CatalogImportService.RecordReader records = new CatalogImportService.RecordReader(reader(
+                "type,name,price",
+                "PRODUCT,\"First",
+                "second \"\"quoted\"\"",
+                "third\",1.00",
+                "PRODUCT,Plain,2.00"), true);
+
+        assertEquals("type,name,price", records.next());
+        assertEquals(1, records.recordLine());
+        assertEquals("PRODUCT,\"First\nsecond \"\"quoted\"\"\nthird\",1.00", records.next());
+        assertEquals(2, records.recordLine());
+        assertEquals("PRODUCT,Plain,2.00", records.next());
+        assertEquals(5, records.recordLine());
+        assertNull(records.next());
+    }
+
+    @Test
+    void jsonLinesAreNeverJoined() throws IOException {
+        CatalogImportService.RecordReader records = new CatalogImportService.RecordReader(reader(
+                "{\"name\": \"\\\"odd\"}",
+                "{\"name\": \"next\"}"), false);
+
+        assertEquals("{\"name\": \"\\\"odd\"}", records.next());
+        assertEquals("{\"name\": \"next\"}", records.next());
+        assertEquals(2, records.recordLine());
+    }
+
+    @Test
+    void stopsJoiningAtTheRecordLimit() throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("PRODUCT,\"Never closed");
+        String filler = "x".repeat(1_000);
+        for (int i = 0; i < 200; i++) {
+            lines.add(filler);
+        }
+        CatalogImportService.RecordReader records = new CatalogImportService.RecordReader(reader(lines.toArray(String[]::new)), true);
+
+        String record = records.next();
+        assertTrue(record.length() <= 64 * 1024 + filler.length() + 1, "Record grew to " + record.length() + " characters");
+        assertThrows(IllegalArgumentException.class, () -> CatalogImportService.splitCsv(record));
+        assertNotNull(records.next());
+    }
+
+    @Test
+    void failedChunkIsReportedAndGivesItsCodesBack() throws IOException {
+        FailingTransactions transactions = new FailingTransactions(1);
+        CatalogImportService service = service(transactions);
+
+        // 1000 rows fill the first chunk, which fails; the next row reuses a code from it
+        StringBuilder csv = new StringBuilder("type,name,price,sku\n");
+        for (int i = 0; i < 1_000; i++) {
+            csv.append("PRODUCT,Item ").append(i).append(",1.00,SKU-").append(i).append('\n');
+        }
+        csv.append("PRODUCT,Retry,1.00,SKU-0\n");
+
+        CatalogImportResultDTO result = service.importCatalog(MERCHANT_ID, ExportFormat.CSV, new BufferedReader(new StringReader(csv.toString())));
+
+        assertEquals(1_001, result.getRowsRead());
+        assertEquals(1, result.getProductsCreated());
+        assertEquals(1_000, result.getErrorCount());
+        assertEquals(2, result.getErrors().get(0).getLine());
+        assertEquals(1_001, result.getErrors().get(999).getLine());
+        assertTrue(result.getErrors().stream().allMatch(e -> e.getMessage().equals("Not imported: chunk rejected")),
+                "Unexpected error: " + result.getErrors().stream().filter(e -> !e.getMessage().startsWith("Not imported")).findFirst());
+        assertEquals(2, transactions.calls);
+    }
+
+    @Test
+    void codesOfCommittedChunksStayTaken() throws IOException {
+        CatalogImportService service = service(new FailingTransactions(0));
+
+        CatalogImportResultDTO result = service.importCatalog(MERCHANT_ID, ExportFormat.CSV, new BufferedReader(reader(
+                "type,name,price,sku,barcode",
+                "PRODUCT,First,1.00,A,100",
+                "PRODUCT,Second,1.00,A,",
+                "PRODUCT,Third,1.00,,100")));
+
+        assertEquals(1, result.getProductsCreated());
+        assertEquals(List.of("SKU already in use: A", "Barcode already in use: 100"),
+                result.getErrors().stream().map(CatalogImportResultDTO.RowError::getMessage).toList());
+    }
+
+    private static CatalogImportService service(TransactionTemplate transactions) {
+        MerchantRepository merchantRepository = mock(MerchantRepository.class);
+        ProductRepository productRepository = mock(ProductRepository.class);
+        TaxRateRepository taxRateRepository = mock(TaxRateRepository.class);
+        when(merchantRepository.existsById(MERCHANT_ID)).thenReturn(true);
+        when(productRepository.findCodes(MERCHANT_ID)).thenReturn(List.of());
+        when(taxRateRepository.findByMerchantId(MERCHANT_ID)).thenReturn(List.of());
+        return new CatalogImportService(null, transactions, null, null,
+                merchantRepository, productRepository, taxRateRepository, new ObjectMapper());
+    }
+
+    private static BufferedReader reader(String... lines) {
+        return new BufferedReader(new StringReader(String.join("\n", lines) + "\n"));
+    }
+
+    // Fails the first `failures` chunks and pretends to commit the rest without writing anything
+    private static final class FailingTransactions extends TransactionTemplate {
+
+        private final int failures;
+        int calls;
+
+        FailingTransactions(int failures) {
+            this.failures = failures;
+        }
+
+        @Override
+        public void executeWithoutResult(Consumer<TransactionStatus> action) {
+            if (calls++ < failures) {
+                throw new IllegalStateException("chunk rejected");
+            }
+        }
+    }
+}
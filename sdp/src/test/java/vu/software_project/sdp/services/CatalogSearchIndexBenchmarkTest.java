@@ -0,0 +1,117 @@
+package vu.software_project.sdp.services;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import vu.software_project.sdp.DTOs.item.ItemSearchResultDTO;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the ranking of the in-memory item search and measures query latency over a merchant
+ * with 50k indexed names. Runs without the application context or a database; the latency gate
+ * is tagged and only runs with {@code -Pbenchmark}.
+ */
+class CatalogSearchIndexBenchmarkTest {
+
+    private static final int ENTRIES = 50_000;
+    private static final int ROUNDS = 20_000;
+    private static final int LIMIT = 20;
+
+    private static final String[] WORDS = {
+            "coffee", "latte", "espresso", "cappuccino", "tea", "green", "black", "iced", "hot", "large",
+            "small", "medium", "croissant", "bagel", "muffin", "chocolate", "vanilla", "caramel", "oat", "almond",
+            "haircut", "beard", "trim", "wash", "colour", "massage", "facial", "manicure", "pedicure", "deluxe",
+            "sandwich", "chicken", "tuna", "cheese", "salad", "soup", "tomato", "basil", "lemon", "ginger"
+    };
+
+    private static final String[] QUERIES = {
+            "c", "co", "cof", "coffee", "latte l", "iced lat", "choc", "chocolate muffin", "cappucino",
+            "espreso", "beard tr", "massge", "almond", "ginger lemon", "xyz", "soup", "late", "ee", "deluxe f"
+    };
+
+    @Test
+    void ranksNamePrefixBeforeWordPrefixSubstringAndTypos() {
+        CatalogSearchIndex index = CatalogSearchIndex.build(1, List.of(
+                entry(1, "Iced Latte"),
+                entry(2, "Latte"),
+                entry(3, "Chocolate Croissant"),
+                entry(4, "Café Crème"),
+                entry(5, "Cappuccino")));
+
+        List<ItemSearchResultDTO> latte = index.search("latte", 10);
+        assertEquals(List.of(2L, 1L), ids(latte));
+
+        assertEquals(List.of(4L), ids(index.search("cafe creme", 10)));
+        assertEquals(List.of(3L), ids(index.search("olate", 10)));
+        assertEquals(List.of(5L), ids(index.search("capucino", 10)));
+        assertTrue(index.search("bagel", 10).isEmpty());
+        assertTrue(index.search("  ", 10).isEmpty());
+        assertEquals(1, index.search("c", 1).size());
+    }
+
+    @Test
+    void normalizesCaseAccentsAndPunctuation() {
+        assertEquals("cafe creme brulee", CatalogSearchIndex.normalize("  Café-Crème   BRÛLÉE! "));
+        assertEquals("", CatalogSearchIndex.normalize(null));
+    }
+
+    @Test
+    @Tag("latency")
+    void searchesFiftyThousandNamesWithinOneMillisecond() {
+        Random random = new Random(42);
+        List<CatalogSearchIndex.Entry> entries = new ArrayList<>(ENTRIES);
+        for (int i = 0; i < ENTRIES; i++) {
+            int words = 1 + random.nextInt(3);
+            StringBuilder name = new StringBuilder(WORDS[random.nextInt(WORDS.length)]);
+            for (int w = 1; w < words; w++) {
+                name.append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            name.append(' ').append(i);
+            entries.add(entry(i, name.toString()));
+        }
+
+        long buildStart = System.nanoTime();
+        CatalogSearchIndex index = CatalogSearchIndex.build(1, entries);
+        long buildTime = System.nanoTime() - buildStart;
+        assertEquals(ENTRIES, index.size());
+
+        int found = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            found += index.search(QUERIES[round % QUERIES.length], LIMIT).size();
+        }
+
+        long[] samples = new long[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            String query = QUERIES[round % QUERIES.length];
+            long start = System.nanoTime();
+            found += index.search(query, LIMIT).size();
+            samples[round] = System.nanoTime() - start;
+        }
+
+        Arrays.sort(samples);
+        long p50 = samples[ROUNDS / 2];
+        long p99 = samples[ROUNDS * 99 / 100];
+        System.out.printf("%d names indexed in %.1f ms%n", ENTRIES, buildTime / 1_000_000.0);
+        System.out.printf("Type-ahead query: p50 %.1f us, p99 %.1f us%n", p50 / 1000.0, p99 / 1000.0);
+
+        assertFalse(index.search("coffee", LIMIT).isEmpty());
+        assertTrue(found > 0);
+        assertTrue(p99 < 1_000_000, "p99 search latency " + p99 / 1000 + " us is over 1 ms");
+    }
+
+    private static CatalogSearchIndex.Entry entry(long id, String name) {
+        return new CatalogSearchIndex.Entry("PRODUCT", id, null, name, BigDecimal.ONE);
+    }
+
+    private static List<Long> ids(List<ItemSearchResultDTO> results) {
+        return results.stream().map(ItemSearchResultDTO::getId).toList();
+    }
+}
@@ -0,0 +1,112 @@
+package vu.software_project.sdp.services;
+
+import org.junit.jupiter.api.Test;
+import vu.software_project.sdp.entities.Discount;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Evaluates a large cart against a merchant with 1000 automatic discounts and reports latency.
+ * Runs without the application context or a database.
+ */
+class DiscountRulesBenchmarkTest {
+
+    private static final int RULES = 1000;
+    private static final int PRODUCTS = 200;
+    private static final int LINES = 50;
+    private static final int ROUNDS = 20_000;
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 6, 1, 12, 0);
+
+    @Test
+    void picksTheLargestValidDiscount() {
+        Discount tenPercent = discount(Discount.Scope.PRODUCT, 1L, Discount.Type.PERCENTAGE, "10", true);
+        Discount flatThree = discount(Discount.Scope.PRODUCT, 1L, Discount.Type.FIXED_AMOUNT, "3", true);
+        Discount expired = discount(Discount.Scope.PRODUCT, 1L, Discount.Type.PERCENTAGE, "90", true);
+        expired.setValidTo(NOW.minusDays(1));
+        Discount manual = discount(Discount.Scope.PRODUCT, 1L, Discount.Type.PERCENTAGE, "50", false);
+        Discount orderWide = discount(Discount.Scope.ORDER, null, Discount.Type.FIXED_AMOUNT, "500", true);
+
+        DiscountRules rules = DiscountRules.compile(List.of(tenPercent, flatThree, expired, manual, orderWide));
+
+        DiscountRules.Applied line = rules.bestForLine(1L, null, new BigDecimal("20.00"), NOW).orElseThrow();
+        assertEquals(flatThree.getId(), line.rule().id());
+        assertEquals(new BigDecimal("3"), line.amount());
+
+        DiscountRules.Applied entered = rules.bestForLine(1L, manual.getId(), new BigDecimal("20.00"), NOW).orElseThrow();
+        assertEquals(manual.getId(), entered.rule().id());
+
+        assertTrue(rules.bestForLine(2L, manual.getId(), new BigDecimal("20.00"), NOW).isEmpty());
+
+        DiscountRules.Applied order = rules.bestForOrder(null, new BigDecimal("120.00"), NOW).orElseThrow();
+        assertEquals(new BigDecimal("120.00"), order.amount());
+    }
+
+    @Test
+    void evaluatesLargeCartAgainstThousandRules() {
+        List<Discount> discounts = new ArrayList<>();
+        for (int i = 0; i < RULES; i++) {
+            boolean orderWide = i % 100 == 0;
+            Discount d = discount(
+                    orderWide ? Discount.Scope.ORDER : Discount.Scope.PRODUCT,
+                    orderWide ? null : (long) (i % PRODUCTS),
+                    i % 2 == 0 ? Discount.Type.PERCENTAGE : Discount.Type.FIXED_AMOUNT,
+                    String.valueOf(1 + i % 30),
+                    true);
+            if (i % 7 == 0) d.setValidFrom(NOW.plusDays(1));
+            discounts.add(d);
+        }
+
+        long compileStart = System.nanoTime();
+        DiscountRules rules = DiscountRules.compile(discounts);
+        long compileTime = System.nanoTime() - compileStart;
+
+        BigDecimal lineGross = new BigDecimal("42.50");
+        long[] samples = new long[ROUNDS];
+        BigDecimal sink = BigDecimal.ZERO;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            BigDecimal subtotal = BigDecimal.ZERO;
+            for (int line = 0; line < LINES; line++) {
+                long productId = (round + line * 13L) % PRODUCTS;
+                BigDecimal discount = rules.bestForLine(productId, null, lineGross, NOW)
+                        .map(DiscountRules.Applied::amount)
+                        .orElse(BigDecimal.ZERO);
+                subtotal = subtotal.add(lineGross.subtract(discount));
+            }
+            BigDecimal orderDiscount = rules.bestForOrder(null, subtotal, NOW)
+                    .map(DiscountRules.Applied::amount)
+                    .orElse(BigDecimal.ZERO);
+            sink = subtotal.subtract(orderDiscount);
+            samples[round] = System.nanoTime() - start;
+        }
+
+        Arrays.sort(samples);
+        System.out.printf("%d automatic discounts compiled in %.2f ms%n", RULES, compileTime / 1_000_000.0);
+        System.out.printf("Full evaluation of a %d-line cart: p50 %.1f us, p99 %.1f us%n",
+                LINES, samples[ROUNDS / 2] / 1000.0, samples[ROUNDS * 99 / 100] / 1000.0);
+
+        assertTrue(sink.signum() >= 0);
+    }
+
+    private static Discount discount(Discount.Scope scope, Long productId, Discount.Type type, String value, boolean automatic) {
+        Discount d = new Discount();
+        d.setId(UUID.randomUUID().toString());
+        d.setCode("D-" + d.getId());
+        d.setScope(scope);
+        d.setProductId(productId);
+        d.setType(type);
+        d.setValue(new BigDecimal(value));
+        d.setMerchantId(1L);
+        d.setAutomatic(automatic);
+        return d;
+    }
+}
@@ -0,0 +1,137 @@
+package vu.software_project.sdp.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import vu.software_project.sdp.entities.GiftCard;
+import vu.software_project.sdp.repositories.GiftCardRepository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Hammers a single gift card from many threads and checks that every cent is accounted for.
+ * Needs the same Postgres instance as the application.
+ */
+@SpringBootTest
+class GiftCardServiceConcurrencyTest {
+
+    private static final Long MERCHANT_ID = -26L;
+    private static final int THREADS = 16;
+
+    @Autowired
+    private GiftCardService giftCardService;
+
+    @Autowired
+    private GiftCardRepository giftCardRepository;
+
+    private final List<String> createdCodes = new ArrayList<>();
+
+    @AfterEach
+    void cleanUp() {
+        createdCodes.forEach(giftCardRepository::deleteById);
+    }
+
+    @Test
+    void concurrentRedemptionsNeverOverdrawTheCard() throws Exception {
+        GiftCard card = issue(new BigDecimal("500.00"));
+        BigDecimal unit = new BigDecimal("1.00");
+
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        runConcurrently(2000, () -> {
+            try {
+                giftCardService.deduct(MERCHANT_ID, card.getCode(), unit, null);
+                succeeded.incrementAndGet();
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                rejected.incrementAndGet();
+            }
+        });
+
+        GiftCard after = giftCardRepository.findById(card.getCode()).orElseThrow();
+        assertEquals(500, succeeded.get());
+        assertEquals(1500, rejected.get());
+        assertEquals(0, after.getCurrentBalance().signum());
+        assertFalse(after.getActive());
+    }
+
+    @Test
+    void partialRedemptionsDrainExactlyTheBalance() throws Exception {
+        GiftCard card = issue(new BigDecimal("100.00"));
+        BigDecimal[] charged = {BigDecimal.ZERO};
+
+        runConcurrently(500, () -> {
+            try {
+                BigDecimal amount = giftCardService.redeem(MERCHANT_ID, card.getCode(), new BigDecimal("0.70"), null).getCharged();
+                synchronized (charged) {
+                    charged[0] = charged[0].add(amount);
+                }
+            } catch (IllegalArgumentException | IllegalStateException ignored) {
+                // card ran dry
+            }
+        });
+
+        GiftCard after = giftCardRepository.findById(card.getCode()).orElseThrow();
+        assertEquals(0, charged[0].compareTo(new BigDecimal("100.00")));
+        assertEquals(0, after.getCurrentBalance().signum());
+    }
+
+    @Test
+    void hotCardThroughput() throws Exception {
+        int redemptions = 5000;
+        GiftCard card = issue(new BigDecimal("1000000.00"));
+        BigDecimal unit = new BigDecimal("0.01");
+
+        long started = System.nanoTime();
+        runConcurrently(redemptions, () -> giftCardService.deduct(MERCHANT_ID, card.getCode(), unit, null));
+        double seconds = (System.nanoTime() - started) / 1_000_000_000.0;
+
+        GiftCard after = giftCardRepository.findById(card.getCode()).orElseThrow();
+        assertEquals(0, after.getCurrentBalance().compareTo(new BigDecimal("999950.00")));
+        System.out.printf("Hot gift card: %d redemptions on %d threads in %.2fs (%.0f redemptions/s)%n",
+                redemptions, THREADS, seconds, redemptions / seconds);
+    }
+
+    private GiftCard issue(BigDecimal amount) {
+        GiftCard card = giftCardService.createGiftCard(MERCHANT_ID, amount);
+        createdCodes.add(card.getCode());
+        return card;
+    }
+
+    // Fails the test if any task threw or the pool did not drain in time
+    private void runConcurrently(int tasks, Runnable task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>(tasks);
+        for (int i = 0; i < tasks; i++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                task.run();
+                return null;
+            }));
+        }
+        start.countDown();
+        pool.shutdown();
+        try {
+            assertTrue(pool.awaitTermination(2, TimeUnit.MINUTES), "Tasks did not finish in time");
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
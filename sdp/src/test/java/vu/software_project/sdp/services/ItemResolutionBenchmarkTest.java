@@ -0,0 +1,131 @@
+package vu.software_project.sdp.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import vu.software_project.sdp.DTOs.item.ItemResponseDTO;
+import vu.software_project.sdp.entities.Product;
+import vu.software_project.sdp.entities.ServiceItem;
+import vu.software_project.sdp.repositories.ProductRepository;
+import vu.software_project.sdp.repositories.ServiceItemRepository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares resolving service items through the old product-first fallback with the single
+ * item-type lookup. Needs the same Postgres instance as the application.
+ */
+@SpringBootTest
+class ItemResolutionBenchmarkTest {
+
+    private static final Long MERCHANT_ID = -38L;
+    private static final int ITEMS = 200;
+    private static final int ROUNDS = 5;
+
+    @Autowired
+    private ItemService itemService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ServiceItemService serviceItemService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ServiceItemRepository serviceItemRepository;
+
+    private final List<Long> serviceIds = new ArrayList<>();
+    private Long productId;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < ITEMS; i++) {
+            ServiceItem service = new ServiceItem();
+            service.setName("Benchmark service " + i);
+            service.setPrice(new BigDecimal("10.00"));
+            service.setMerchantId(MERCHANT_ID);
+            serviceIds.add(serviceItemRepository.save(service).getId());
+        }
+        Product product = new Product();
+        product.setName("Benchmark product");
+        product.setPrice(new BigDecimal("5.00"));
+        product.setMerchantId(MERCHANT_ID);
+        productId = productRepository.save(product).getId();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        serviceItemRepository.deleteAllById(serviceIds);
+        productRepository.deleteById(productId);
+    }
+
+    @Test
+    void productsAndServicesNeverShareAnId() {
+        Set<Long> allocated = new HashSet<>(serviceIds);
+        allocated.add(productId);
+        assertEquals(ITEMS + 1, allocated.size());
+
+        assertFalse(serviceItemRepository.existsById(productId));
+        assertEquals("PRODUCT", itemService.getItem(productId, MERCHANT_ID, null).getType());
+        for (Long id : serviceIds) {
+            assertFalse(productRepository.existsById(id), "Service item id " + id + " is also a product id");
+            assertEquals("SERVICE_ITEM", itemService.getItem(id, MERCHANT_ID, null).getType());
+        }
+    }
+
+    @Test
+    void singleLookupBeatsExceptionFallback() {
+        long fallback = Long.MAX_VALUE;
+        long lookup = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            fallback = Math.min(fallback, time(this::resolveWithFallback));
+            lookup = Math.min(lookup, time(this::resolveWithLookup));
+        }
+
+        System.out.printf("Service item resolution, best of %d rounds over %d items:%n", ROUNDS, ITEMS);
+        System.out.printf("  product-first fallback: %8.1f us/item%n", fallback / 1_000.0 / ITEMS);
+        System.out.printf("  item type lookup:       %8.1f us/item%n", lookup / 1_000.0 / ITEMS);
+
+        // One query against a failed query, an exception and a second query
+        assertTrue(lookup < fallback, "Single lookup took " + lookup / 1_000 + " us, fallback " + fallback / 1_000 + " us");
+    }
+
+    // The path ItemController used before: try products, catch, then try services
+    private void resolveWithFallback() {
+        for (Long id : serviceIds) {
+            ItemResponseDTO item;
+            try {
+                item = productService.getProductById(id, MERCHANT_ID);
+            } catch (IllegalArgumentException e) {
+                item = serviceItemService.getServiceItemById(id, MERCHANT_ID);
+            }
+            assertEquals(id, item.getId());
+        }
+    }
+
+    private void resolveWithLookup() {
+        for (Long id : serviceIds) {
+            ItemResponseDTO item = itemService.getItem(id, MERCHANT_ID, null);
+            assertEquals(id, item.getId());
+        }
+    }
+
+    private static long time(Runnable body) {
+        long start = System.nanoTime();
+        body.run();
+        return System.nanoTime() - start;
+    }
+}
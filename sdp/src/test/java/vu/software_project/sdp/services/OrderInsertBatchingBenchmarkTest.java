@@ -0,0 +1,118 @@
+package vu.software_project.sdp.services;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import vu.software_project.sdp.entities.Order;
+import vu.software_project.sdp.entities.OrderItem;
+import vu.software_project.sdp.entities.OrderItemVariation;
+import vu.software_project.sdp.repositories.OrderRepository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Persists large orders with and without JDBC batching and reports statements sent and latency.
+ * Batching off ({@code jdbc batch size 1}) is what every insert looked like while the order tables
+ * used identity columns. Needs the same Postgres instance as the application.
+ */
+@SpringBootTest
+class OrderInsertBatchingBenchmarkTest {
+
+    private static final Long MERCHANT_ID = -40L;
+    private static final int LINES = 30;
+    private static final int VARIATIONS_PER_LINE = 2;
+    private static final int ROUNDS = 5;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    private final List<Long> orderIds = new ArrayList<>();
+
+    @AfterEach
+    void cleanUp() {
+        orderRepository.deleteAllById(orderIds);
+    }
+
+    @Test
+    void batchedInsertsNeedFewerStatements() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+
+        long unbatchedTime = Long.MAX_VALUE, batchedTime = Long.MAX_VALUE;
+        long unbatchedStatements = 0, batchedStatements = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            statistics.clear();
+            unbatchedTime = Math.min(unbatchedTime, time(() -> persistOrder(1)));
+            unbatchedStatements = statistics.getPrepareStatementCount();
+
+            statistics.clear();
+            batchedTime = Math.min(batchedTime, time(() -> persistOrder(null)));
+            batchedStatements = statistics.getPrepareStatementCount();
+        }
+
+        System.out.printf("Persisting an order with %d lines and %d variations, best of %d rounds:%n",
+                LINES, LINES * VARIATIONS_PER_LINE, ROUNDS);
+        System.out.printf("  unbatched: %4d statements, %8.2f ms%n", unbatchedStatements, unbatchedTime / 1_000_000.0);
+        System.out.printf("  batched:   %4d statements, %8.2f ms%n", batchedStatements, batchedTime / 1_000_000.0);
+
+        assertTrue(batchedStatements < unbatchedStatements);
+    }
+
+    // batchSize null keeps the configured hibernate.jdbc.batch_size
+    private void persistOrder(Integer batchSize) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (batchSize != null) {
+                entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+            }
+            Order order = new Order();
+            order.setMerchantId(MERCHANT_ID);
+            order.setStatus(Order.Status.OPEN);
+            for (int i = 0; i < LINES; i++) {
+                OrderItem item = new OrderItem();
+                item.setOrder(order);
+                item.setItemId((long) i);
+                item.setName("Benchmark line " + i);
+                item.setPrice(new BigDecimal("4.50"));
+                item.setQuantity(1L);
+                for (int v = 0; v < VARIATIONS_PER_LINE; v++) {
+                    OrderItemVariation variation = new OrderItemVariation();
+                    variation.setOrderItem(item);
+                    variation.setName("Option " + v);
+                    variation.setPriceOffset(new BigDecimal("0.50"));
+                    item.getVariations().add(variation);
+                }
+                order.getItems().add(item);
+            }
+            entityManager.persist(order);
+            entityManager.flush();
+            orderIds.add(order.getId());
+        });
+    }
+
+    private static long time(Runnable body) {
+        long start = System.nanoTime();
+        body.run();
+        return System.nanoTime() - start;
+    }
+}
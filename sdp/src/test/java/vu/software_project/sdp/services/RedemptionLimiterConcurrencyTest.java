@@ -0,0 +1,138 @@
+package vu.software_project.sdp.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Several limiter nodes sharing one in-memory lease store, redeeming from hundreds of threads at
+ * once. Runs without the application context or a database.
+ */
+class RedemptionLimiterConcurrencyTest {
+
+    private static final String DISCOUNT_ID = "promo";
+    private static final LocalDate DAY = LocalDate.of(2025, 6, 1);
+    private static final int NODES = 4;
+    private static final int THREADS = 64;
+    private static final int ATTEMPTS = 800;
+
+    @Test
+    void parallelRedemptionsNeverExceedTheTotalLimit() throws Exception {
+        assertRedeemsExactly(500, null, 500);
+    }
+
+    @Test
+    void parallelRedemptionsNeverExceedTheDailyLimit() throws Exception {
+        assertRedeemsExactly(500, 300, 300);
+    }
+
+    @Test
+    void releasedRedemptionIsAvailableAgain() {
+        InMemoryLeaseSource source = new InMemoryLeaseSource();
+        ExecutorService leaseExecutor = Executors.newSingleThreadExecutor();
+        RedemptionLimiter limiter = new RedemptionLimiter(source, leaseExecutor, 20, 0, 10_000);
+        try {
+            assertTrue(limiter.tryRedeem(DISCOUNT_ID, 1, null, DAY));
+            assertFalse(limiter.tryRedeem(DISCOUNT_ID, 1, null, DAY));
+            assertTrue(limiter.isExhausted(DISCOUNT_ID, 1, null, DAY));
+
+            limiter.release(DISCOUNT_ID, 1, null, DAY);
+            assertTrue(limiter.tryRedeem(DISCOUNT_ID, 1, null, DAY));
+
+            limiter.reconcile(true);
+            assertEquals(1, source.redeemed(DISCOUNT_ID, null));
+            assertEquals(1, source.leased(DISCOUNT_ID, null));
+        } finally {
+            leaseExecutor.shutdownNow();
+        }
+    }
+
+    private void assertRedeemsExactly(int maxTotal, Integer maxPerDay, int expected) throws Exception {
+        InMemoryLeaseSource source = new InMemoryLeaseSource();
+        ExecutorService leaseExecutor = Executors.newFixedThreadPool(2);
+        List<RedemptionLimiter> nodes = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            nodes.add(new RedemptionLimiter(source, leaseExecutor, 20, 0, 10_000));
+        }
+
+        AtomicInteger redeemed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            // Nodes that ran out while another still held a lease get it back after reconciling
+            int round = 0;
+            int redeemedInRound;
+            do {
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Boolean>> attempts = new ArrayList<>();
+                for (int i = 0; i < ATTEMPTS; i++) {
+                    RedemptionLimiter node = nodes.get(i % NODES);
+                    attempts.add(executor.submit(() -> {
+                        start.await();
+                        return node.tryRedeem(DISCOUNT_ID, maxTotal, maxPerDay, DAY);
+                    }));
+                }
+                start.countDown();
+                redeemedInRound = 0;
+                for (Future<Boolean> attempt : attempts) {
+                    if (attempt.get(30, TimeUnit.SECONDS)) redeemedInRound++;
+                }
+                redeemed.addAndGet(redeemedInRound);
+                assertTrue(redeemed.get() <= expected, "Redeemed " + redeemed.get() + " of " + expected);
+                nodes.forEach(node -> node.reconcile(true));
+                round++;
+            } while (redeemedInRound > 0 && round < 10);
+        } finally {
+            executor.shutdownNow();
+            leaseExecutor.shutdownNow();
+        }
+
+        System.out.printf("%d redemptions over %d nodes with %d lease calls%n", redeemed.get(), NODES, source.leaseCalls.get());
+
+        assertEquals(expected, redeemed.get());
+        assertEquals(expected, source.redeemed(DISCOUNT_ID, maxPerDay != null ? DAY : null));
+        assertEquals(expected, source.leased(DISCOUNT_ID, maxPerDay != null ? DAY : null));
+        assertTrue(source.leaseCalls.get() < expected / 2, "Expected far fewer lease calls than redemptions");
+    }
+
+    private static final class InMemoryLeaseSource implements RedemptionLeaseSource {
+
+        private final Map<String, int[]> counters = new HashMap<>();
+        final AtomicInteger leaseCalls = new AtomicInteger();
+
+        @Override
+        public synchronized int lease(String discountId, LocalDate day, int cap, int wanted) {
+            leaseCalls.incrementAndGet();
+            int[] counter = counters.computeIfAbsent(key(discountId, day), k -> new int[2]);
+            int granted = Math.max(0, Math.min(wanted, cap - counter[0]));
+            counter[0] += granted;
+            return granted;
+        }
+
+        @Override
+        public synchronized void settle(String discountId, LocalDate day, int redeemed, int released) {
+            int[] counter = counters.computeIfAbsent(key(discountId, day), k -> new int[2]);
+            counter[0] -= released;
+            counter[1] += redeemed;
+        }
+
+        synchronized int leased(String discountId, LocalDate day) {
+            return counters.getOrDefault(key(discountId, day), new int[2])[0];
+        }
+
+        synchronized int redeemed(String discountId, LocalDate day) {
+            return counters.getOrDefault(key(discountId, day), new int[2])[1];
+        }
+
+        private static String key(String discountId, LocalDate day) {
+            return discountId + ":" + day;
+        }
+    }
+}
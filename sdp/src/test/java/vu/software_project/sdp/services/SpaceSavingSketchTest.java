@@ -0,0 +1,99 @@
+package vu.software_project.sdp.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Skewed item streams through small summaries, checked against exact counts.
+ */
+class SpaceSavingSketchTest {
+
+    private static final int CAPACITY = 200;
+    private static final int ITEMS = 5_000;
+
+    @Test
+    void findsHeavyHittersWithinBounds() {
+        Random random = new Random(42);
+        SpaceSavingSketch sketch = new SpaceSavingSketch(CAPACITY);
+        Map<Long, Long> exact = new HashMap<>();
+        feed(sketch, exact, random, 100_000);
+
+        assertBounds(sketch, exact);
+        assertEquals(topIds(exact, 10), sketch.top(10).stream().map(SpaceSavingSketch.Item::itemId).toList());
+
+        // Every item above total / capacity must hold a counter
+        long total = exact.values().stream().mapToLong(Long::longValue).sum();
+        Set<Long> tracked = new HashSet<>(sketch.items().stream().map(SpaceSavingSketch.Item::itemId).toList());
+        exact.forEach((itemId, count) -> {
+            if (count > total / CAPACITY) assertTrue(tracked.contains(itemId), "Lost heavy hitter " + itemId);
+        });
+    }
+
+    @Test
+    void mergedDaysKeepBoundsAndTopItems() {
+        Random random = new Random(7);
+        Map<Long, Long> exact = new HashMap<>();
+        List<SpaceSavingSketch> days = new ArrayList<>();
+        for (int d = 0; d < 7; d++) {
+            SpaceSavingSketch day = new SpaceSavingSketch(CAPACITY);
+            feed(day, exact, random, 20_000);
+            days.add(day);
+        }
+
+        SpaceSavingSketch week = SpaceSavingSketch.merge(CAPACITY, days);
+
+        assertBounds(week, exact);
+        assertEquals(topIds(exact, 5), week.top(5).stream().map(SpaceSavingSketch.Item::itemId).toList());
+    }
+
+    @Test
+    void exactItemsStayExact() {
+        SpaceSavingSketch sketch = SpaceSavingSketch.of(3, List.of(
+                new SpaceSavingSketch.Item(1, "Latte", 10, 0),
+                new SpaceSavingSketch.Item(2, "Tea", 4, 0),
+                new SpaceSavingSketch.Item(3, "Bagel", 7, 0),
+                new SpaceSavingSketch.Item(4, "Water", 1, 0)));
+
+        assertEquals(List.of(1L, 3L, 2L), sketch.items().stream().map(SpaceSavingSketch.Item::itemId).toList());
+        assertEquals(4, sketch.minCount());
+
+        sketch.add(2, "Tea", 5);
+        assertEquals(new SpaceSavingSketch.Item(2, "Tea", 9, 0), sketch.top(2).get(1));
+    }
+
+    // Zipf-like: item n is picked with probability proportional to 1/n
+    private static void feed(SpaceSavingSketch sketch, Map<Long, Long> exact, Random random, int sales) {
+        double[] cumulative = new double[ITEMS];
+        double sum = 0;
+        for (int i = 0; i < ITEMS; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+        for (int s = 0; s < sales; s++) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            long itemId = (index >= 0 ? index : -index - 1) + 1;
+            long quantity = 1 + random.nextInt(3);
+            sketch.add(itemId, "Item " + itemId, quantity);
+            exact.merge(itemId, quantity, Long::sum);
+        }
+    }
+
+    private static void assertBounds(SpaceSavingSketch sketch, Map<Long, Long> exact) {
+        for (SpaceSavingSketch.Item item : sketch.items()) {
+            long truth = exact.getOrDefault(item.itemId(), 0L);
+            assertTrue(item.count() >= truth, "Count below truth for " + item);
+            assertTrue(item.count() - item.error() <= truth, "Lower bound above truth for " + item);
+        }
+    }
+
+    private static List<Long> topIds(Map<Long, Long> exact, int k) {
+        return exact.entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(k)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+}